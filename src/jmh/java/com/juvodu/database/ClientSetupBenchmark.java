@@ -0,0 +1,69 @@
+package com.juvodu.database;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.juvodu.database.model.Device;
+import com.juvodu.database.model.Favorite;
+import com.juvodu.database.model.Spot;
+import com.juvodu.database.model.Subscription;
+import com.juvodu.database.model.User;
+import com.juvodu.service.DeviceService;
+import com.juvodu.service.FavoriteService;
+import com.juvodu.service.SpotService;
+import com.juvodu.service.SubscriptionService;
+import com.juvodu.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the setup cost of the five services created by DeleteUserHandler per invocation, each with its own
+ * client and mapper as before the registry, with services sharing the client and mappers of the registry.
+ * Creating a client does not open connections, the cost of the first TLS handshake per connection pool
+ * comes on top of the new client case on every invocation.
+ *
+ * Run with: gradle jmh
+ *
+ * @author Juvodu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClientSetupBenchmark {
+
+    @Benchmark
+    public void newClientPerService(Blackhole blackhole){
+
+        blackhole.consume(withNewClient(Spot.class));
+        blackhole.consume(withNewClient(Device.class));
+        blackhole.consume(withNewClient(User.class));
+        blackhole.consume(withNewClient(Favorite.class));
+        blackhole.consume(withNewClient(Subscription.class));
+    }
+
+    @Benchmark
+    public void sharedRegistry(Blackhole blackhole){
+
+        blackhole.consume(new SpotService<>(Spot.class));
+        blackhole.consume(new DeviceService<>(Device.class));
+        blackhole.consume(new UserService<>(User.class));
+        blackhole.consume(new FavoriteService<>(Favorite.class));
+        blackhole.consume(new SubscriptionService<>(Subscription.class));
+    }
+
+    /**
+     * Setup of a service before the registry, a new client and mapper which reflects the table model on first use
+     */
+    private Object withNewClient(Class<?> persistenceClass){
+
+        AmazonDynamoDB dynamoDB = DatabaseHelper.createDynamoDB();
+        Object tableModel = DynamoDBRegistry.createMapper(dynamoDB, DynamoDBMapperConfig.SaveBehavior.UPDATE)
+                .getTableModel(persistenceClass);
+        dynamoDB.shutdown();
+        return tableModel;
+    }
+}
@@ -0,0 +1,143 @@
+package com.juvodu.database;
+
+import com.juvodu.database.model.GeoKeyRange;
+import com.juvodu.database.model.Position;
+import com.juvodu.util.GeoHelper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the geohash (Z-order) and the Hilbert encoding of the spatial key for the same radius searches.
+ * Spots are clustered along a coastline like strip, the key index is simulated by a sorted key array.
+ * Besides the planning time the counters report the totals of searches, range queries, items scanned and
+ * items returned of an iteration, divide by searches to compare both encodings.
+ *
+ * Run with: gradle jmh
+ *
+ * @author Juvodu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SpatialKeyBenchmark {
+
+    private static final int SPOTS = 100000;
+    private static final int SEARCHES = 1024;
+
+    @Param({"geohash", "hilbert"})
+    private String encoding;
+
+    @Param({"10", "50", "200"})
+    private int radiusKm;
+
+    private GeoQueryPlanner planner;
+    private Position[] spots;
+    private Position[] centers;
+    private int[] inRadius;
+    private long[] keys;
+    private int next;
+
+    /**
+     * Counters per search, reported next to the average time
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long searches;
+        public long queries;
+        public long itemsScanned;
+        public long itemsReturned;
+
+        @Setup(Level.Iteration)
+        public void reset(){
+            searches = 0;
+            queries = 0;
+            itemsScanned = 0;
+            itemsReturned = 0;
+        }
+    }
+
+    @Setup
+    public void setup(){
+
+        SpatialKeyEncoder encoder = DatabaseHelper.getSpatialKeyEncoder(encoding);
+        planner = new GeoQueryPlanner(encoder, 20, 64, 4);
+
+        // spots along a strip from the bay of biscay to the north sea, searches centered on spots
+        Random random = new Random(42);
+        spots = new Position[SPOTS];
+        for(int i = 0; i < SPOTS; i++){
+            double t = random.nextDouble();
+            spots[i] = new Position(43 + t * 12 + random.nextGaussian() * 0.2, -2 + t * 10 + random.nextGaussian() * 0.2);
+        }
+        centers = new Position[SEARCHES];
+        for(int i = 0; i < SEARCHES; i++){
+            centers[i] = spots[random.nextInt(SPOTS)];
+        }
+
+        // items returned do not depend on the encoding and are counted up front
+        inRadius = new int[SEARCHES];
+        for(int i = 0; i < SEARCHES; i++){
+            for(Position spot : spots){
+                if(Math.abs(spot.getLatitude() - centers[i].getLatitude()) < 2 && GeoHelper.getDistance(centers[i], spot) <= radiusKm * 1000){
+                    inRadius[i]++;
+                }
+            }
+        }
+
+        // keys in unsigned order, the sign bit is flipped to sort them as signed values
+        keys = new long[SPOTS];
+        for(int i = 0; i < SPOTS; i++){
+            keys[i] = Long.parseUnsignedLong(encoder.encode(spots[i]), 16) ^ Long.MIN_VALUE;
+        }
+        Arrays.sort(keys);
+    }
+
+    @Benchmark
+    public int radiusSearch(Counters counters){
+
+        int search = next++ & (SEARCHES - 1);
+        Position center = centers[search];
+        int radiusMeter = radiusKm * 1000;
+        List<GeoKeyRange> ranges = planner.planRadius(center, radiusMeter);
+
+        int scanned = 0;
+        for(GeoKeyRange range : ranges){
+            long first = Long.parseUnsignedLong(range.getFirstKey(), 16) ^ Long.MIN_VALUE;
+            long last = Long.parseUnsignedLong(range.getLastKey(), 16) ^ Long.MIN_VALUE;
+            scanned += search(last, false) - search(first, true);
+        }
+
+        counters.searches++;
+        counters.queries += ranges.size();
+        counters.itemsScanned += scanned;
+        counters.itemsReturned += inRadius[search];
+        return scanned;
+    }
+
+    /**
+     * @return index of the first key greater than the given key, or greater or equal if inclusive
+     */
+    private int search(long key, boolean inclusive){
+
+        int low = 0;
+        int high = keys.length;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(keys[middle] < key || (!inclusive && keys[middle] == key)){
+                low = middle + 1;
+            }else{
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
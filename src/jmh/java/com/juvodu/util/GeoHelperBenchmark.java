@@ -0,0 +1,70 @@
+package com.juvodu.util;
+
+import com.juvodu.database.model.Position;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per spot distance calculation on Position objects with the batch distance kernel
+ * on primitive arrays, candidates are spread over europe and filtered by a 50 km radius.
+ *
+ * Run with: gradle jmh
+ *
+ * @author Juvodu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GeoHelperBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int candidates;
+
+    private final Position center = new Position(43.671223, -1.441445);
+    private final int maxDistance = 50 * 1000;
+
+    private List<Position> positions;
+    private double[] latitudes;
+    private double[] longitudes;
+    private int[] indexes;
+    private int[] distances;
+
+    @Setup
+    public void setup(){
+
+        Random random = new Random(42);
+        positions = new ArrayList<>(candidates);
+        latitudes = new double[candidates];
+        longitudes = new double[candidates];
+        for(int i = 0; i < candidates; i++){
+            latitudes[i] = 35 + random.nextDouble() * 25;
+            longitudes[i] = -10 + random.nextDouble() * 40;
+            positions.add(new Position(latitudes[i], longitudes[i]));
+        }
+        indexes = new int[candidates];
+        distances = new int[candidates];
+    }
+
+    @Benchmark
+    public long getDistance(){
+
+        return positions.stream()
+                .mapToInt(position -> GeoHelper.getDistance(center, position))
+                .filter(distance -> distance <= maxDistance)
+                .count();
+    }
+
+    @Benchmark
+    public int filterByDistance(){
+
+        return GeoHelper.filterByDistance(center.getLatitude(), center.getLongitude(), latitudes, longitudes,
+                0, candidates, maxDistance, indexes, distances);
+    }
+}
@@ -0,0 +1,81 @@
+package com.juvodu.database;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.BatchLoadContext;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry strategy for unprocessed keys and items of batch requests. Unlike the default load strategy of the mapper,
+ * which only waits if no key of a batch was processed at all, every retry waits for an exponential backoff with
+ * full jitter, partially throttled batches therefore do not hammer the table.
+ *
+ * @author Juvodu
+ */
+public class BatchRetryStrategy implements DynamoDBMapperConfig.BatchLoadRetryStrategy,
+        DynamoDBMapperConfig.BatchWriteRetryStrategy {
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * Ctor
+     *
+     * @param maxRetries
+     *              max number of retries of the unprocessed keys or items of a batch
+     * @param baseDelayMillis
+     *              upper bound of the delay before the first retry
+     * @param maxDelayMillis
+     *              upper bound of the delay before any retry
+     */
+    public BatchRetryStrategy(int maxRetries, long baseDelayMillis, long maxDelayMillis){
+
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    @Override
+    public boolean shouldRetry(BatchLoadContext batchLoadContext) {
+
+        // the mapper asks after every request, also if all keys were processed
+        Map<String, KeysAndAttributes> unprocessedKeys = batchLoadContext.getBatchGetItemResult().getUnprocessedKeys();
+        return unprocessedKeys != null && !unprocessedKeys.isEmpty() && batchLoadContext.getRetriesAttempted() < maxRetries;
+    }
+
+    @Override
+    public long getDelayBeforeNextRetry(BatchLoadContext batchLoadContext) {
+
+        return getDelay(batchLoadContext.getRetriesAttempted());
+    }
+
+    @Override
+    public int getMaxRetryOnUnprocessedItems(Map<String, List<WriteRequest>> batchWriteItemInput) {
+
+        return maxRetries;
+    }
+
+    @Override
+    public long getDelayBeforeRetryUnprocessedItems(Map<String, List<WriteRequest>> unprocessedItems, int retriesAttempted) {
+
+        return getDelay(retriesAttempted);
+    }
+
+    /**
+     * Calculate the delay before a retry
+     *
+     * @param retriesAttempted
+     *              number of retries done so far
+     * @return random delay in milliseconds between 0 and the capped exponential backoff
+     */
+    long getDelay(int retriesAttempted){
+
+        long backoff = Math.min(maxDelayMillis, baseDelayMillis << Math.min(retriesAttempted, 20));
+        return ThreadLocalRandom.current().nextLong(backoff + 1);
+    }
+}
@@ -1,14 +1,23 @@
 package com.juvodu.database;
 
 import ch.hsr.geohash.GeoHash;
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperFieldModel;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.juvodu.database.model.Position;
+import com.juvodu.util.Constants;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -19,14 +28,71 @@ import java.util.Map;
  */
 public class DatabaseHelper<T> {
 
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** projection of the attributes of the target model, null to read all attributes */
+    private final String projectionExpression;
+    private final Map<String, String> projectionNames;
+
+    /**
+     * Ctor, queries read all attributes of the items
+     */
+    public DatabaseHelper(){
+
+        this.projectionExpression = null;
+        this.projectionNames = null;
+    }
+
+    /**
+     * Ctor, queries only read the attributes mapped by the target model. Models of list views such as BaseSpot
+     * map a part of the item, the attributes left out are neither returned nor counted as read capacity.
+     *
+     * @param tableModel
+     *          the model of the query results
+     */
+    public DatabaseHelper(DynamoDBMapperTableModel<T> tableModel){
+
+        // attribute names are aliased, the models use reserved words such as name or position
+        Map<String, String> names = new HashMap<>();
+        StringBuilder expression = new StringBuilder();
+        for(DynamoDBMapperFieldModel<T, Object> field : tableModel.fields()){
+            String alias = "#p" + names.size();
+            names.put(alias, field.name());
+            expression.append(expression.length() > 0 ? "," : "").append(alias);
+        }
+        this.projectionExpression = expression.toString();
+        this.projectionNames = names;
+    }
+
     /**
      * Get the dynamo db client, situated in eu_central_1 (frankfurt) region
-     * @return
+     *
+     * @return the client shared by all services of this container
      */
     public static AmazonDynamoDB getDynamoDB(){
 
+        return DynamoDBRegistry.getDynamoDB();
+    }
+
+    /**
+     * Create a new dynamo db client in eu_central_1 (frankfurt) region, connection pool and timeouts are
+     * configured by the DYNAMODB_* environment variables
+     *
+     * @return a new client with its own connection pool
+     */
+    public static AmazonDynamoDB createDynamoDB(){
+
+        ClientConfiguration clientConfiguration = new ClientConfiguration()
+                .withMaxConnections(Constants.DYNAMODB_MAX_CONNECTIONS)
+                .withConnectionTimeout(Constants.DYNAMODB_CONNECTION_TIMEOUT)
+                .withSocketTimeout(Constants.DYNAMODB_SOCKET_TIMEOUT)
+                .withRequestTimeout(Constants.DYNAMODB_REQUEST_TIMEOUT)
+                .withConnectionMaxIdleMillis(Constants.DYNAMODB_CONNECTION_MAX_IDLE)
+                .withTcpKeepAlive(Constants.DYNAMODB_TCP_KEEP_ALIVE);
+
         return AmazonDynamoDBClientBuilder.standard()
                 .withRegion(Regions.EU_CENTRAL_1)
+                .withClientConfiguration(clientConfiguration)
                 .build();
     }
 
@@ -45,7 +111,132 @@ public class DatabaseHelper<T> {
     }
 
     /**
-     * Create a query expression on a table
+     * Get the encoder of a spatial key
+     *
+     * @param encoding
+     *          "hilbert" for the Hilbert curve, otherwise the Z-order of the geohash
+     *
+     * @return the encoder
+     */
+    public static SpatialKeyEncoder getSpatialKeyEncoder(String encoding){
+
+        return "hilbert".equalsIgnoreCase(encoding) ? new HilbertKeyEncoder() : new GeohashKeyEncoder();
+    }
+
+    /**
+     * Creates a compact geohash key for the position, the 64 bit geohash as 16 hex digits.
+     * Keys sort in the same order as the binary geohash, a geohash cell is a continuous key range.
+     *
+     * @param position
+     *          for which the geokey will be created
+     *
+     * @return geokey as a string of 16 lower case hex digits
+     */
+    public static String createGeokey(Position position){
+
+        GeoHash geoHash = GeoHash.withBitPrecision(position.getLatitude(), position.getLongitude(), 64);
+        return createGeokey(geoHash.longValue());
+    }
+
+    /**
+     * Creates the range of geokeys of all positions within a geohash cell
+     *
+     * @param cell
+     *          the geohash cell
+     *
+     * @return array with the first and the last geokey of the cell, both inclusive
+     */
+    public static String[] createGeokeyRange(GeoHash cell){
+
+        // significant bits are left aligned, the remaining bits of the first key are zero
+        long first = cell.longValue();
+        int significantBits = cell.significantBits();
+        long last = significantBits == 64 ? first : first | (-1L >>> significantBits);
+        return new String[]{createGeokey(first), createGeokey(last)};
+    }
+
+    /**
+     * Format 64 geohash bits as zero padded hex digits, lexicographic order equals the unsigned order of the bits
+     *
+     * @param bits
+     *          the geohash bits, left aligned
+     *
+     * @return geokey as a string of 16 lower case hex digits
+     */
+    public static String createGeokey(long bits){
+
+        String hex = Long.toHexString(bits);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * Create an opaque page token from the last evaluated key of a query, the token is URL safe
+     *
+     * @param lastEvaluatedKey
+     *          the key attributes of the last item of a page, string and number attributes are supported
+     *
+     * @return base64 encoded JSON of the key attributes, null if there is no further page
+     */
+    public static String createPageToken(Map<String, AttributeValue> lastEvaluatedKey){
+
+        if(lastEvaluatedKey == null){
+            return null;
+        }
+
+        // attribute name -> {type -> value}
+        Map<String, Map<String, String>> key = new HashMap<>();
+        for(Map.Entry<String, AttributeValue> attribute : lastEvaluatedKey.entrySet()){
+            Map<String, String> value = new HashMap<>();
+            if(attribute.getValue().getN() != null){
+                value.put("N", attribute.getValue().getN());
+            }else{
+                value.put("S", attribute.getValue().getS());
+            }
+            key.put(attribute.getKey(), value);
+        }
+
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(key);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create page token", e);
+        }
+    }
+
+    /**
+     * Parse a page token created by createPageToken
+     *
+     * @param pageToken
+     *          the token passed by the client
+     *
+     * @return the exclusive start key of the next page
+     * @throws IllegalArgumentException
+     *          if the token is malformed
+     */
+    public static Map<String, AttributeValue> parsePageToken(String pageToken){
+
+        Map<String, Map<String, String>> key;
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(pageToken.getBytes(StandardCharsets.US_ASCII));
+            key = objectMapper.readValue(json, new TypeReference<Map<String, Map<String, String>>>(){});
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token", e);
+        }
+
+        Map<String, AttributeValue> exclusiveStartKey = new HashMap<>();
+        for(Map.Entry<String, Map<String, String>> attribute : key.entrySet()){
+            Map<String, String> value = attribute.getValue();
+            if(value == null || (value.get("S") == null && value.get("N") == null)){
+                throw new IllegalArgumentException("Invalid page token");
+            }
+            exclusiveStartKey.put(attribute.getKey(), value.get("N") != null
+                    ? new AttributeValue().withN(value.get("N")) : new AttributeValue().withS(value.get("S")));
+        }
+        return exclusiveStartKey;
+    }
+
+    /**
+     * Create a query expression on a table, with a target model only its attributes are read
      *
      * @param partitionKey
      *          the partition key to filter for
@@ -74,6 +265,11 @@ public class DatabaseHelper<T> {
                 .withExpressionAttributeValues(eav)
                 .withLimit(limit);
 
+        if(projectionExpression != null){
+            queryExpression.withProjectionExpression(projectionExpression)
+                    .withExpressionAttributeNames(new HashMap<>(projectionNames));
+        }
+
         return queryExpression;
     }
 
@@ -103,4 +299,30 @@ public class DatabaseHelper<T> {
 
         return queryExpression;
     }
+
+    /**
+     * Create a range query expression on an index table
+     *
+     * @param partitionKey
+     *          the partition key to filter for
+     * @param sortKeyFrom
+     *          lower bound of the sort key, bound to :val2
+     * @param sortKeyTo
+     *          upper bound of the sort key, bound to :val3
+     * @param index
+     *          name of index table on which query will run
+     * @param conditionExpression
+     *          contains the actual operators used for filtering, e.g. "key between :val2 and :val3"
+     * @param limit
+     *          max amount of results
+     *
+     * @return prepared query to run on dynamo db table
+     */
+    public DynamoDBQueryExpression<T> createIndexRangeQueryExpression(String partitionKey, String sortKeyFrom, String sortKeyTo,
+                                                                      String index, String conditionExpression, int limit){
+
+        DynamoDBQueryExpression<T> queryExpression = createIndexQueryExpression(partitionKey, sortKeyFrom, index, conditionExpression, limit);
+        queryExpression.getExpressionAttributeValues().put(":val3", new AttributeValue().withS(sortKeyTo));
+        return queryExpression;
+    }
 }
@@ -0,0 +1,94 @@
+package com.juvodu.database;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.juvodu.database.memory.InMemoryDynamoDB;
+import com.juvodu.util.Constants;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Process wide registry of the dynamo db client and the mappers. The client owns a connection pool and the mappers
+ * cache the reflected table models, both are thread safe and created once per container on first use, warm lambda
+ * invocations reuse them instead of opening new connections.
+ *
+ * @author Juvodu
+ */
+public final class DynamoDBRegistry {
+
+    private static volatile AmazonDynamoDB dynamoDB;
+    private static final Map<DynamoDBMapperConfig.SaveBehavior, DynamoDBMapper> mappers =
+            new EnumMap<>(DynamoDBMapperConfig.SaveBehavior.class);
+
+    private static final RecordCache recordCache = Constants.RECORD_CACHE_ENABLED
+            ? new RecordCache(Constants.RECORD_CACHE_MAX_ENTRIES, Constants.RECORD_CACHE_TTL) : null;
+
+    private DynamoDBRegistry(){}
+
+    /**
+     * Get the read-through cache of items loaded by hash key, shared by all services using the shared client
+     *
+     * @return the cache of this container, null if disabled by Constants.RECORD_CACHE_ENABLED
+     */
+    public static RecordCache getRecordCache(){
+
+        return recordCache;
+    }
+
+    /**
+     * Get the shared client, created on first access. With Constants.STORAGE_BACKEND "memory" the client is an
+     * in-memory backend holding the tables of the service.
+     *
+     * @return the dynamo db client of this container
+     */
+    public static AmazonDynamoDB getDynamoDB(){
+
+        AmazonDynamoDB client = dynamoDB;
+        if(client == null){
+            synchronized (DynamoDBRegistry.class){
+                client = dynamoDB;
+                if(client == null){
+                    // the in-memory backend holds the production and the test tables
+                    client = "memory".equalsIgnoreCase(Constants.STORAGE_BACKEND)
+                            ? InMemoryDynamoDB.withTables("", "_test") : DatabaseHelper.createDynamoDB();
+                    dynamoDB = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Get the shared mapper of a save behavior, created on first access
+     *
+     * @param saveBehavior
+     *              defines overwrite/null behaviour of the mapper
+     * @return mapper on the shared client
+     */
+    public static DynamoDBMapper getMapper(DynamoDBMapperConfig.SaveBehavior saveBehavior){
+
+        synchronized (mappers){
+            return mappers.computeIfAbsent(saveBehavior, behavior -> createMapper(getDynamoDB(), behavior));
+        }
+    }
+
+    /**
+     * Create a mapper with a save behavior
+     *
+     * @param dynamoDB
+     *              the client used by the mapper
+     * @param saveBehavior
+     *              defines overwrite/null behaviour of the mapper
+     * @return a new mapper
+     */
+    public static DynamoDBMapper createMapper(AmazonDynamoDB dynamoDB, DynamoDBMapperConfig.SaveBehavior saveBehavior){
+
+        DynamoDBMapperConfig mapperConfig = new DynamoDBMapperConfig.Builder()
+                .withSaveBehavior(saveBehavior)
+                .build();
+
+        return new DynamoDBMapper(dynamoDB, mapperConfig);
+    }
+}
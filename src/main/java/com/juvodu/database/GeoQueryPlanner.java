@@ -0,0 +1,270 @@
+package com.juvodu.database;
+
+import ch.hsr.geohash.GeoHash;
+import ch.hsr.geohash.WGS84Point;
+import com.juvodu.database.model.BoundingBox;
+import com.juvodu.database.model.GeoKeyRange;
+import com.juvodu.database.model.Position;
+import com.juvodu.util.GeoHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plans the key ranges queried by spatial searches. The search area is covered by the cells of a grid level,
+ * cells outside of the area are dropped and the key ranges of cells adjacent along the curve of the
+ * SpatialKeyEncoder are merged into a single range which is answered by one BETWEEN query. The planner picks
+ * the finest grid level whose merged ranges do not exceed a max amount of queries, so small areas are read
+ * with small cells and less items.
+ *
+ * @author Juvodu
+ */
+public class GeoQueryPlanner {
+
+    private final SpatialKeyEncoder encoder;
+    private final int maxLevel;
+    private final int maxCells;
+    private final int maxRanges;
+
+    /**
+     * Ctor
+     *
+     * @param encoder
+     *              encoding of the queried keys
+     * @param maxLevel
+     *              finest grid level of a plan, a level has 2^level x 2^level cells
+     * @param maxCells
+     *              max amount of cells covering a search area before merging, bounds the planning effort
+     * @param maxRanges
+     *              max amount of key ranges, i.e. queries, of a plan
+     */
+    public GeoQueryPlanner(SpatialKeyEncoder encoder, int maxLevel, int maxCells, int maxRanges){
+
+        this.encoder = encoder;
+        this.maxLevel = maxLevel;
+        this.maxCells = maxCells;
+        this.maxRanges = maxRanges;
+    }
+
+    public SpatialKeyEncoder getEncoder() {
+        return encoder;
+    }
+
+    /**
+     * Plan the key ranges of a radius search
+     *
+     * @param position
+     *          center of the search circle
+     * @param radiusMeter
+     *          radius of the search circle in meter
+     *
+     * @return merged key ranges ordered by key
+     */
+    public List<GeoKeyRange> planRadius(Position position, int radiusMeter){
+
+        return plan(GeoHelper.getBoundingBoxes(position, radiusMeter), position, radiusMeter);
+    }
+
+    /**
+     * Plan the key ranges of a bounding box search
+     *
+     * @param box
+     *          the area to search in
+     *
+     * @return merged key ranges ordered by key
+     */
+    public List<GeoKeyRange> planBoundingBox(BoundingBox box){
+
+        List<BoundingBox> boxes = new ArrayList<>(1);
+        boxes.add(box);
+        return plan(boxes, null, 0);
+    }
+
+    /**
+     * Plan the key ranges of a geohash cell, e.g. a cell of the rings of a nearest search
+     *
+     * @param cell
+     *          the geohash cell, cells with an odd number of bits are split into their two halves
+     *
+     * @return merged key ranges ordered by key
+     */
+    public List<GeoKeyRange> planCell(GeoHash cell){
+
+        List<GeoHash> cells = new ArrayList<>(2);
+        if(cell.significantBits() % 2 == 0){
+            cells.add(cell);
+        }else{
+            cells.add(GeoHash.fromBinaryString(cell.toBinaryString() + "0"));
+            cells.add(GeoHash.fromBinaryString(cell.toBinaryString() + "1"));
+        }
+
+        List<long[]> bounds = new ArrayList<>(cells.size());
+        for(GeoHash evenCell : cells){
+            int level = evenCell.significantBits() / 2;
+            WGS84Point center = evenCell.getBoundingBoxCenterPoint();
+            long x = (long) Math.floor((center.getLongitude() + 180) / 360 * (1L << level));
+            long y = (long) Math.floor((center.getLatitude() + 90) / 180 * (1L << level));
+            bounds.add(encoder.getCellRange(level, x, y));
+        }
+        return mergeRanges(bounds);
+    }
+
+    /**
+     * Find the finest level with an acceptable plan, finer cells cover a subset of the area of coarser cells
+     *
+     * @param boxes
+     *          the area to cover
+     * @param position
+     *          optional center of a search circle, cells not intersecting the circle are dropped
+     * @param radiusMeter
+     *          radius of the search circle in meter
+     *
+     * @return merged key ranges ordered by key
+     */
+    private List<GeoKeyRange> plan(List<BoundingBox> boxes, Position position, int radiusMeter){
+
+        for(int level = maxLevel; ; level--){
+
+            // a grid level equals the geohash cells with twice as many bits
+            int precision = 2 * level;
+            if(level > 1 && countCells(boxes, precision) > maxCells){
+                continue;
+            }
+
+            double cellSize = 180.0 / (1 << level);
+            List<long[]> bounds = new ArrayList<>();
+            for(BoundingBox box : boxes){
+                int[] range = getCellRange(box, precision);
+                for(int row = range[0]; row <= range[1]; row++){
+                    for(int column = range[2]; column <= range[3]; column++){
+
+                        // cells in the corners of the bounding boxes might not intersect the circle
+                        if(position != null){
+                            BoundingBox cellBox = new BoundingBox(-90 + row * cellSize, -180 + column * 2 * cellSize,
+                                    -90 + (row + 1) * cellSize, -180 + (column + 1) * 2 * cellSize);
+                            if(GeoHelper.getMinDistance(position, cellBox) > radiusMeter){
+                                continue;
+                            }
+                        }
+                        bounds.add(encoder.getCellRange(level, column, row));
+                    }
+                }
+            }
+
+            List<GeoKeyRange> ranges = mergeRanges(bounds);
+            if(level == 1 || ranges.size() <= maxRanges){
+                return ranges;
+            }
+        }
+    }
+
+    /**
+     * Cover bounding boxes with geohash cells of the highest precision not exceeding the max amount of cells
+     *
+     * @param boxes
+     *          the areas to cover, e.g. the two halves of an area crossing the antimeridian
+     * @param maxPrecision
+     *          max number of geohash bits of a cell
+     * @param maxCells
+     *          max amount of cells for all boxes
+     *
+     * @return cells covering the boxes
+     */
+    public static List<GeoHash> getCoveringCells(List<BoundingBox> boxes, int maxPrecision, int maxCells){
+
+        int precision = maxPrecision;
+        while(precision > 1 && countCells(boxes, precision) > maxCells){
+            precision--;
+        }
+
+        double latSize = 180.0 / (1 << (precision / 2));
+        double lonSize = 360.0 / (1 << ((precision + 1) / 2));
+        List<GeoHash> cells = new ArrayList<>();
+        for(BoundingBox box : boxes){
+            int[] range = getCellRange(box, precision);
+            for(int row = range[0]; row <= range[1]; row++){
+                for(int column = range[2]; column <= range[3]; column++){
+                    cells.add(GeoHash.withBitPrecision(-90 + (row + 0.5) * latSize, -180 + (column + 0.5) * lonSize, precision));
+                }
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Count the geohash cells of a precision covering bounding boxes
+     *
+     * @param boxes
+     *          the areas to cover
+     * @param precision
+     *          number of geohash bits of a cell
+     *
+     * @return amount of cells
+     */
+    private static long countCells(List<BoundingBox> boxes, int precision){
+
+        long cellCount = 0;
+        for(BoundingBox box : boxes){
+            int[] range = getCellRange(box, precision);
+            cellCount += (long) (range[1] - range[0] + 1) * (range[3] - range[2] + 1);
+        }
+        return cellCount;
+    }
+
+    /**
+     * Get the rows and columns of the geohash cells of a precision covering a bounding box
+     *
+     * @param box
+     *          the area to cover
+     * @param precision
+     *          number of geohash bits of a cell
+     *
+     * @return first row, last row, first column and last column
+     */
+    private static int[] getCellRange(BoundingBox box, int precision){
+
+        // geohash bits alternate between longitude and latitude starting with longitude
+        int latRows = 1 << (precision / 2);
+        int lonColumns = 1 << ((precision + 1) / 2);
+        double latSize = 180.0 / latRows;
+        double lonSize = 360.0 / lonColumns;
+        int firstRow = Math.max(0, (int) Math.floor((box.getMinLatitude() + 90) / latSize));
+        int lastRow = Math.min(latRows - 1, (int) Math.floor((box.getMaxLatitude() + 90) / latSize));
+        int firstColumn = Math.max(0, (int) Math.floor((box.getMinLongitude() + 180) / lonSize));
+        int lastColumn = Math.min(lonColumns - 1, (int) Math.floor((box.getMaxLongitude() + 180) / lonSize));
+        return new int[]{firstRow, lastRow, firstColumn, lastColumn};
+    }
+
+    /**
+     * Merge key ranges which are adjacent or overlapping
+     *
+     * @param bounds
+     *          first and last key bits of each range, unsigned
+     *
+     * @return merged key ranges ordered by key
+     */
+    private static List<GeoKeyRange> mergeRanges(List<long[]> bounds){
+
+        bounds.sort((a, b) -> Long.compareUnsigned(a[0], b[0]));
+
+        List<GeoKeyRange> ranges = new ArrayList<>();
+        int i = 0;
+        while(i < bounds.size()){
+            long first = bounds.get(i)[0];
+            long last = bounds.get(i)[1];
+            int cellCount = 1;
+            i++;
+
+            // extend while the next range starts within or right after the current range, the highest key ends all
+            while(i < bounds.size() && (last == -1L || Long.compareUnsigned(bounds.get(i)[0], last + 1) <= 0)){
+                if(Long.compareUnsigned(bounds.get(i)[1], last) > 0){
+                    last = bounds.get(i)[1];
+                }
+                cellCount++;
+                i++;
+            }
+            ranges.add(new GeoKeyRange(DatabaseHelper.createGeokey(first), DatabaseHelper.createGeokey(last), cellCount));
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,41 @@
+package com.juvodu.database;
+
+import com.juvodu.database.model.Position;
+import com.juvodu.util.Constants;
+
+/**
+ * Z-order (geohash) encoding of the geokey, bits alternate between longitude and latitude. Keys equal the
+ * 64 bit geohash of DatabaseHelper.createGeokey.
+ *
+ * @author Juvodu
+ */
+public class GeohashKeyEncoder implements SpatialKeyEncoder {
+
+    @Override
+    public String getAttributeName() {
+        return "geokey";
+    }
+
+    @Override
+    public String getIndexName() {
+        return Constants.CONTINENT_GEOKEY_INDEX;
+    }
+
+    @Override
+    public long getCurveIndex(int level, long x, long y) {
+
+        // interleave starting with longitude in the highest bit
+        long index = 0;
+        for(int bit = level - 1; bit >= 0; bit--){
+            index = (index << 2) | (((x >>> bit) & 1) << 1) | ((y >>> bit) & 1);
+        }
+        return index;
+    }
+
+    @Override
+    public String encode(Position position) {
+
+        // bisection of the geohash library, identical to the stored geokeys
+        return DatabaseHelper.createGeokey(position);
+    }
+}
@@ -0,0 +1,45 @@
+package com.juvodu.database;
+
+import com.juvodu.util.Constants;
+
+/**
+ * Hilbert curve encoding of the spatial key. Consecutive keys are always adjacent cells, in contrast to the
+ * Z-order of the geohash which jumps at the borders of its quadrants, so areas split into less key ranges.
+ *
+ * @author Juvodu
+ */
+public class HilbertKeyEncoder implements SpatialKeyEncoder {
+
+    @Override
+    public String getAttributeName() {
+        return "hilbertkey";
+    }
+
+    @Override
+    public String getIndexName() {
+        return Constants.CONTINENT_HILBERTKEY_INDEX;
+    }
+
+    @Override
+    public long getCurveIndex(int level, long x, long y) {
+
+        // quadrants from the highest bit down, each quadrant is rotated to continue the curve
+        long n = 1L << level;
+        long index = 0;
+        for(long s = n >>> 1; s > 0; s >>>= 1){
+            long rx = (x & s) != 0 ? 1 : 0;
+            long ry = (y & s) != 0 ? 1 : 0;
+            index += s * s * ((3 * rx) ^ ry);
+            if(ry == 0){
+                if(rx == 1){
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                long swap = x;
+                x = y;
+                y = swap;
+            }
+        }
+        return index;
+    }
+}
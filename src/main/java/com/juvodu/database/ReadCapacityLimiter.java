@@ -0,0 +1,89 @@
+package com.juvodu.database;
+
+/**
+ * Token bucket limiting the read capacity consumed by background jobs such as full table scans. The bucket refills
+ * at the configured rate and holds at most one second of capacity. A request waits until the bucket is not empty,
+ * the capacity it actually consumed is taken afterwards and may overdraw the bucket, which delays the next requests
+ * of all threads sharing the limiter. A rate of 0 or less disables the limit.
+ *
+ * @author Juvodu
+ */
+public class ReadCapacityLimiter {
+
+    private final double unitsPerSecond;
+    private double available;
+    private long refilledAtNanos;
+
+    /**
+     * Ctor
+     *
+     * @param unitsPerSecond
+     *              max read capacity units consumed per second, 0 or less for no limit
+     */
+    public ReadCapacityLimiter(double unitsPerSecond){
+
+        this.unitsPerSecond = unitsPerSecond;
+        this.available = unitsPerSecond;
+        this.refilledAtNanos = System.nanoTime();
+    }
+
+    /**
+     * Wait until capacity is available for the next request
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+
+        if(unitsPerSecond <= 0){
+            return;
+        }
+
+        long waitMillis;
+        while((waitMillis = getWaitMillis()) > 0){
+            Thread.sleep(waitMillis);
+        }
+    }
+
+    /**
+     * Take the capacity consumed by a request from the bucket
+     *
+     * @param units
+     *              read capacity units consumed by the request
+     */
+    public synchronized void consume(double units){
+
+        if(unitsPerSecond > 0){
+            refill();
+            available -= units;
+        }
+    }
+
+    /**
+     * @return the max read capacity units consumed per second, 0 or less if not limited
+     */
+    public double getUnitsPerSecond(){
+        return unitsPerSecond;
+    }
+
+    /**
+     * @return the read capacity units currently available, negative if overdrawn
+     */
+    public synchronized double getAvailable(){
+
+        refill();
+        return available;
+    }
+
+    private synchronized long getWaitMillis(){
+
+        refill();
+        return available > 0 ? 0 : (long) Math.ceil(-available * 1000 / unitsPerSecond) + 1;
+    }
+
+    private void refill(){
+
+        long now = System.nanoTime();
+        available = Math.min(unitsPerSecond, available + (now - refilledAtNanos) * unitsPerSecond / 1e9);
+        refilledAtNanos = now;
+    }
+}
@@ -0,0 +1,177 @@
+package com.juvodu.database;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded LRU cache of items read by their key, entries expire after a time to live. Items are stored as their
+ * attribute values and not as model instances, every hit is unconverted into a new instance which the caller may
+ * modify. Models sharing a table such as BaseSpot and Spot hold different attributes, an item is only a hit for the
+ * model class it was read with. Writes of the same process invalidate the entries of the written keys, writes of
+ * other containers become visible after the time to live at the latest.
+ *
+ * @author Juvodu
+ */
+public class RecordCache {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+    private long invalidations;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Ctor
+     *
+     * @param maxEntries
+     *              max number of cached items, the least recently used item is evicted first
+     * @param ttlMillis
+     *              time to live of an item in milliseconds
+     */
+    public RecordCache(int maxEntries, long ttlMillis){
+
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+
+        // access order moves an item to the tail on every get
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                boolean evict = size() > RecordCache.this.maxEntries;
+                if(evict){
+                    evictions++;
+                }
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Get a cached item
+     *
+     * @param tableName
+     *              the table of the item
+     * @param hashKey
+     *              the hash key of the item
+     * @param modelClass
+     *              the model class the item is read with
+     * @return the attribute values of the item, null if it is not cached, expired or cached for another model class
+     */
+    public synchronized Map<String, AttributeValue> get(String tableName, String hashKey, Class<?> modelClass){
+
+        String key = createKey(tableName, hashKey);
+        Entry entry = entries.get(key);
+        if(entry != null && entry.expiresAtNanos - System.nanoTime() <= 0){
+            entries.remove(key);
+            entry = null;
+        }
+
+        if(entry == null || entry.modelClass != modelClass){
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.item;
+    }
+
+    /**
+     * Get the version to pass to put for an item read after this call
+     *
+     * @return the number of invalidations so far
+     */
+    public synchronized long getVersion(){
+
+        return invalidations;
+    }
+
+    /**
+     * Cache an item, the item is dropped if any key was invalidated since the version was taken as the read might
+     * have returned the item before the write
+     *
+     * @param tableName
+     *              the table of the item
+     * @param hashKey
+     *              the hash key of the item
+     * @param modelClass
+     *              the model class the item was read with
+     * @param item
+     *              the attribute values of the item, must not be modified afterwards
+     * @param version
+     *              the version taken by getVersion before the item was read
+     */
+    public synchronized void put(String tableName, String hashKey, Class<?> modelClass, Map<String, AttributeValue> item,
+                                 long version){
+
+        if(maxEntries > 0 && version == invalidations){
+            entries.put(createKey(tableName, hashKey), new Entry(modelClass, item, System.nanoTime() + ttlMillis * 1000000L));
+        }
+    }
+
+    /**
+     * Remove an item after it was saved or deleted
+     *
+     * @param tableName
+     *              the table of the item
+     * @param hashKey
+     *              the hash key of the item
+     */
+    public synchronized void invalidate(String tableName, String hashKey){
+
+        invalidations++;
+        entries.remove(createKey(tableName, hashKey));
+    }
+
+    /**
+     * Remove all items and reset the counters
+     */
+    public synchronized void clear(){
+
+        invalidations++;
+        entries.clear();
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    public synchronized long getHits(){
+        return hits;
+    }
+
+    public synchronized long getMisses(){
+        return misses;
+    }
+
+    public synchronized long getEvictions(){
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "size=" + entries.size() + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions;
+    }
+
+    private String createKey(String tableName, String hashKey){
+        return tableName + '/' + hashKey;
+    }
+
+    private static final class Entry {
+
+        private final Class<?> modelClass;
+        private final Map<String, AttributeValue> item;
+        private final long expiresAtNanos;
+
+        private Entry(Class<?> modelClass, Map<String, AttributeValue> item, long expiresAtNanos){
+            this.modelClass = modelClass;
+            this.item = item;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.juvodu.database;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lazy iterator over a full table scan split into parallel segments. Each segment is paged through by its own worker,
+ * pages are handed over in a bounded queue so at most a few pages per segment are held in memory and the workers
+ * pause while the consumer is busy. Every page request waits for the read capacity limiter and pages are sized to
+ * its rate. Records are returned in no particular order. The workers start on the first call to hasNext and stop
+ * when the scan is exhausted, fails or is closed.
+ *
+ * @author Juvodu
+ */
+public class SegmentedScan<T> implements Iterator<T>, AutoCloseable {
+
+    /** number of pages per segment buffered ahead of the consumer */
+    private static final int PAGES_PER_SEGMENT = 2;
+
+    /** marks the end of a segment in the page queue */
+    private static final List<Object> END_OF_SEGMENT = Collections.emptyList();
+
+    private static final AtomicInteger SCAN_COUNTER = new AtomicInteger();
+
+    /** items of up to 4 KB read per read capacity unit by eventually consistent scans */
+    private static final int ITEMS_PER_READ_UNIT = 2;
+
+    private final DynamoDBMapper mapper;
+    private final Class<T> persistenceClass;
+    private final int segments;
+    private final ReadCapacityLimiter limiter;
+    private final Integer pageLimit;
+    private final BlockingQueue<List<?>> pages;
+
+    private ExecutorService workers;
+    private Iterator<?> page = Collections.emptyIterator();
+    private int finishedSegments;
+    private volatile RuntimeException failure;
+    private volatile boolean closed;
+
+    /**
+     * Ctor
+     *
+     * @param mapper
+     *              used to scan the table
+     * @param persistenceClass
+     *              representing the table to be scanned
+     * @param segments
+     *              number of segments scanned in parallel, at least 1
+     * @param limiter
+     *              limits the read capacity consumed by all segments together
+     */
+    public SegmentedScan(DynamoDBMapper mapper, Class<T> persistenceClass, int segments, ReadCapacityLimiter limiter){
+
+        if(segments < 1){
+            throw new IllegalArgumentException("Segments must be at least 1: " + segments);
+        }
+        this.mapper = mapper;
+        this.persistenceClass = persistenceClass;
+        this.segments = segments;
+        this.limiter = limiter;
+        this.pages = new ArrayBlockingQueue<>(segments * PAGES_PER_SEGMENT);
+
+        // a page reads about one second of the capacity of its segment instead of up to 1 MB, which would overdraw
+        // the limiter by minutes on tables with little capacity
+        double unitsPerSecond = limiter.getUnitsPerSecond();
+        this.pageLimit = unitsPerSecond > 0 ? Math.max(1, (int) (unitsPerSecond * ITEMS_PER_READ_UNIT / segments)) : null;
+    }
+
+    @Override
+    public boolean hasNext() {
+
+        if(closed){
+            return false;
+        }
+        if(workers == null){
+            start();
+        }
+
+        try {
+            while(!page.hasNext() && finishedSegments < segments){
+                List<?> next = pages.take();
+                if(next == END_OF_SEGMENT){
+                    finishedSegments++;
+                }
+                page = next.iterator();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IllegalStateException("Interrupted while waiting for scan results", e);
+        }
+
+        if(failure != null){
+            close();
+            throw failure;
+        }
+        if(!page.hasNext()){
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+
+        if(!hasNext()){
+            throw new NoSuchElementException();
+        }
+        return persistenceClass.cast(page.next());
+    }
+
+    /**
+     * Stop the workers, pages not yet consumed are discarded
+     */
+    @Override
+    public void close() {
+
+        closed = true;
+        if(workers != null){
+            workers.shutdownNow();
+        }
+        pages.clear();
+    }
+
+    private void start(){
+
+        int scan = SCAN_COUNTER.incrementAndGet();
+        AtomicInteger thread = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(segments, runnable -> {
+            Thread worker = new Thread(runnable, "scan-" + scan + "-segment-" + thread.getAndIncrement());
+            worker.setDaemon(true);
+            return worker;
+        });
+        for(int segment = 0; segment < segments; segment++){
+            int scanSegment = segment;
+            workers.execute(() -> scanSegment(scanSegment));
+        }
+        workers.shutdown();
+    }
+
+    private void scanSegment(int segment){
+
+        try {
+
+            Map<String, AttributeValue> startKey = null;
+            do {
+
+                limiter.acquire();
+                DynamoDBScanExpression scanExpression = new DynamoDBScanExpression()
+                        .withSegment(segment)
+                        .withTotalSegments(segments)
+                        .withExclusiveStartKey(startKey)
+                        .withLimit(pageLimit)
+                        .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+
+                ScanResultPage<T> result = mapper.scanPage(persistenceClass, scanExpression);
+                if(result.getConsumedCapacity() != null){
+                    limiter.consume(result.getConsumedCapacity().getCapacityUnits());
+                }
+                if(!result.getResults().isEmpty()){
+                    pages.put(result.getResults());
+                }
+                startKey = result.getLastEvaluatedKey();
+
+            } while(startKey != null && !closed);
+
+        } catch (InterruptedException e) {
+            // closed by the consumer
+            return;
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+
+        try {
+            pages.put(END_OF_SEGMENT);
+        } catch (InterruptedException e) {
+            // closed by the consumer
+        }
+    }
+}
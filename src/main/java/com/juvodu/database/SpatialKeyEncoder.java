@@ -0,0 +1,87 @@
+package com.juvodu.database;
+
+import com.juvodu.database.model.Position;
+
+/**
+ * Encodes positions as keys along a space filling curve over a grid of 2^32 x 2^32 cells. Each cell of a
+ * coarser grid level is a continuous range of keys, which allows to query areas with BETWEEN conditions.
+ * Keys are stored as 16 hex digits in the sort key attribute of a continent partitioned index.
+ *
+ * @author Juvodu
+ */
+public interface SpatialKeyEncoder {
+
+    /** grid level of the stored keys, keys have 2 * ORDER bits */
+    int ORDER = 32;
+
+    /**
+     * @return name of the attribute storing the key
+     */
+    String getAttributeName();
+
+    /**
+     * @return name of the index with the key as sort key
+     */
+    String getIndexName();
+
+    /**
+     * Get the position of a grid cell along the curve
+     *
+     * @param level
+     *          grid level, the grid has 2^level x 2^level cells
+     * @param x
+     *          column of the cell, counted from longitude -180
+     * @param y
+     *          row of the cell, counted from latitude -90
+     * @return index of the cell along the curve of the level, unsigned
+     */
+    long getCurveIndex(int level, long x, long y);
+
+    /**
+     * Encode a position as key of the finest grid level
+     *
+     * @param position
+     *          the position to encode
+     * @return key as a string of 16 lower case hex digits
+     */
+    default String encode(Position position){
+
+        long x = toGrid(position.getLongitude() + 180, 360);
+        long y = toGrid(position.getLatitude() + 90, 180);
+        return DatabaseHelper.createGeokey(getCurveIndex(ORDER, x, y));
+    }
+
+    /**
+     * Get the first and the last key of a grid cell, the cells of every level are continuous key ranges
+     *
+     * @param level
+     *          grid level of the cell
+     * @param x
+     *          column of the cell
+     * @param y
+     *          row of the cell
+     * @return first and last key bits, both inclusive
+     */
+    default long[] getCellRange(int level, long x, long y){
+
+        int shift = 2 * (ORDER - level);
+        long first = getCurveIndex(level, x, y) << shift;
+        long last = shift == 64 ? -1L : first | ((1L << shift) - 1);
+        return new long[]{first, last};
+    }
+
+    /**
+     * Convert a coordinate to a cell of the finest grid level
+     *
+     * @param offset
+     *          coordinate relative to the grid origin
+     * @param extent
+     *          size of the grid in degree
+     * @return column or row of the cell
+     */
+    static long toGrid(double offset, double extent){
+
+        long cell = (long) Math.floor(offset / extent * (1L << ORDER));
+        return Math.max(0, Math.min((1L << ORDER) - 1, cell));
+    }
+}
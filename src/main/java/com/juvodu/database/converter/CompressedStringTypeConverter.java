@@ -0,0 +1,106 @@
+package com.juvodu.database.converter;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTypeConverter;
+import com.juvodu.util.Constants;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressing converter for large text attributes, opt-in per field with
+ * {@code @DynamoDBTypeConverted(converter = CompressedStringTypeConverter.class)}. Texts above the threshold are stored
+ * as raw deflate data in base64 behind a prefix, smaller texts and texts which do not get smaller are stored as they
+ * are. The attribute stays a string, items written before the field was converted are read unchanged.
+ *
+ * @author Juvodu
+ */
+public class CompressedStringTypeConverter implements DynamoDBTypeConverter<String, String> {
+
+    /** prefix of compressed values, plain texts starting with it are always compressed to stay readable */
+    public static final String PREFIX = "~z:";
+
+    @Override
+    public String convert(String text) {
+
+        if(!isCompressible(text)){
+            return text;
+        }
+
+        // the compressed value is ascii, its length is its size
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        String value = PREFIX + Base64.getEncoder().encodeToString(deflate(bytes));
+        return value.length() < bytes.length || text.startsWith(PREFIX) ? value : text;
+    }
+
+    @Override
+    public String unconvert(String value) {
+
+        if(value == null || !value.startsWith(PREFIX)){
+            return value;
+        }
+
+        byte[] compressed = Base64.getDecoder().decode(value.substring(PREFIX.length()));
+        return new String(inflate(compressed), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Check if a text is stored compressed, depends on Constants.ATTRIBUTE_COMPRESSION_ENABLED and the threshold
+     *
+     * @param text
+     *          the text of the attribute
+     * @return true if the text is compressed on save
+     */
+    public static boolean isCompressible(String text){
+
+        if(text == null){
+            return false;
+        }
+        return text.startsWith(PREFIX) || (Constants.ATTRIBUTE_COMPRESSION_ENABLED
+                && text.length() >= Constants.ATTRIBUTE_COMPRESSION_THRESHOLD);
+    }
+
+    private static byte[] deflate(byte[] bytes){
+
+        // raw deflate without the zlib header and checksum, base64 keeps the value a valid string
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()){
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes){
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(bytes);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 3);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()){
+                int length = inflater.inflate(buffer);
+                if(length == 0 && (inflater.needsInput() || inflater.needsDictionary())){
+                    throw new IllegalArgumentException("Truncated compressed attribute");
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Invalid compressed attribute", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
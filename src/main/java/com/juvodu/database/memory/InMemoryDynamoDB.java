@@ -0,0 +1,599 @@
+package com.juvodu.database.memory;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.*;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.function.Predicate;
+
+/**
+ * In-memory storage backend implementing the DynamoDB client used by the mapper, so that the services run and can be
+ * profiled without an AWS account. Tables are created with their key schema and secondary indexes, reads and writes
+ * are thread safe and items are copied on every access.
+ *
+ * Supported are single item reads and writes with condition expressions or expected values, update expressions with
+ * SET, REMOVE and ADD, queries on tables and indexes with key conditions (=, <, <=, >, >=, between, begins_with),
+ * filter and projection expressions, page limits and start keys, parallel scans and batch reads and writes.
+ * Capacity is computed from the item sizes as DynamoDB bills it and summed up for profiling.
+ *
+ * @author Juvodu
+ */
+public class InMemoryDynamoDB extends AbstractAmazonDynamoDB {
+
+    private final Map<String, MemoryTable> tables = new ConcurrentHashMap<>();
+    private final DoubleAdder consumedReadCapacity = new DoubleAdder();
+    private final DoubleAdder consumedWriteCapacity = new DoubleAdder();
+
+    /**
+     * Create a backend with the tables and indexes of the service
+     *
+     * @param suffixes
+     *          suffixes of the table names, "" for the production tables and "_test" for the test tables
+     * @return backend with empty tables
+     */
+    public static InMemoryDynamoDB withTables(String... suffixes){
+
+        InMemoryDynamoDB dynamoDB = new InMemoryDynamoDB();
+        for(String suffix : suffixes){
+            for(CreateTableRequest request : StorageSchema.getTables(suffix)){
+                dynamoDB.createTable(request);
+            }
+        }
+        return dynamoDB;
+    }
+
+    /**
+     * @return read capacity units consumed by all requests so far
+     */
+    public double getConsumedReadCapacity(){
+        return consumedReadCapacity.sum();
+    }
+
+    /**
+     * @return write capacity units consumed by all requests so far
+     */
+    public double getConsumedWriteCapacity(){
+        return consumedWriteCapacity.sum();
+    }
+
+    public void resetConsumedCapacity(){
+        consumedReadCapacity.reset();
+        consumedWriteCapacity.reset();
+    }
+
+    @Override
+    public CreateTableResult createTable(CreateTableRequest request) {
+
+        MemoryTable table = new MemoryTable(request);
+        if(tables.putIfAbsent(request.getTableName(), table) != null){
+            throw new ResourceInUseException("Table already exists: " + request.getTableName());
+        }
+        return new CreateTableResult().withTableDescription(table.describe());
+    }
+
+    @Override
+    public DeleteTableResult deleteTable(DeleteTableRequest request) {
+
+        MemoryTable table = tables.remove(request.getTableName());
+        if(table == null){
+            throw new ResourceNotFoundException("Requested resource not found: Table: " + request.getTableName() + " not found");
+        }
+        return new DeleteTableResult().withTableDescription(table.describe());
+    }
+
+    @Override
+    public DescribeTableResult describeTable(DescribeTableRequest request) {
+
+        return new DescribeTableResult().withTable(getTable(request.getTableName()).describe());
+    }
+
+    @Override
+    public ListTablesResult listTables(ListTablesRequest request) {
+
+        return new ListTablesResult().withTableNames(new TreeSet<>(tables.keySet()));
+    }
+
+    @Override
+    public GetItemResult getItem(GetItemRequest request) {
+
+        MemoryTable table = getTable(request.getTableName());
+        Map<String, AttributeValue> item = table.get(request.getKey());
+        double capacity = readCapacity(MemoryTable.itemSize(item), Boolean.TRUE.equals(request.getConsistentRead()));
+
+        return new GetItemResult()
+                .withItem(item != null ? project(item, request.getProjectionExpression(),
+                        request.getExpressionAttributeNames(), request.getAttributesToGet()) : null)
+                .withConsumedCapacity(consumedCapacity(table, capacity, request.getReturnConsumedCapacity()));
+    }
+
+    @Override
+    public PutItemResult putItem(PutItemRequest request) {
+
+        MemoryTable table = getTable(request.getTableName());
+        Predicate<Map<String, AttributeValue>> condition = createCondition(request.getConditionExpression(),
+                request.getExpressionAttributeNames(), request.getExpressionAttributeValues(), request.getExpected(),
+                request.getConditionalOperator());
+        Map<String, AttributeValue> item = new HashMap<>(request.getItem());
+        List<Map<String, AttributeValue>> written = table.write(item, condition, current -> item);
+        double capacity = writeCapacity(written);
+
+        return new PutItemResult()
+                .withAttributes(ReturnValue.ALL_OLD.toString().equals(request.getReturnValues()) ? written.get(0) : null)
+                .withConsumedCapacity(consumedCapacity(table, capacity, request.getReturnConsumedCapacity()));
+    }
+
+    @Override
+    public UpdateItemResult updateItem(UpdateItemRequest request) {
+
+        MemoryTable table = getTable(request.getTableName());
+        Predicate<Map<String, AttributeValue>> condition = createCondition(request.getConditionExpression(),
+                request.getExpressionAttributeNames(), request.getExpressionAttributeValues(), request.getExpected(),
+                request.getConditionalOperator());
+        List<Map<String, AttributeValue>> written = table.write(request.getKey(), condition, item -> {
+            if(request.getUpdateExpression() != null){
+                applyUpdateExpression(item, request.getUpdateExpression(), request.getExpressionAttributeNames(),
+                        request.getExpressionAttributeValues());
+            }else if(request.getAttributeUpdates() != null){
+                applyAttributeUpdates(item, request.getAttributeUpdates());
+            }
+            return item;
+        });
+        double capacity = writeCapacity(written);
+
+        String returnValues = request.getReturnValues();
+        Map<String, AttributeValue> attributes = null;
+        if(ReturnValue.ALL_NEW.toString().equals(returnValues) || ReturnValue.UPDATED_NEW.toString().equals(returnValues)){
+            attributes = written.get(1);
+        }else if(ReturnValue.ALL_OLD.toString().equals(returnValues) || ReturnValue.UPDATED_OLD.toString().equals(returnValues)){
+            attributes = written.get(0);
+        }
+        return new UpdateItemResult().withAttributes(attributes)
+                .withConsumedCapacity(consumedCapacity(table, capacity, request.getReturnConsumedCapacity()));
+    }
+
+    @Override
+    public DeleteItemResult deleteItem(DeleteItemRequest request) {
+
+        MemoryTable table = getTable(request.getTableName());
+        Predicate<Map<String, AttributeValue>> condition = createCondition(request.getConditionExpression(),
+                request.getExpressionAttributeNames(), request.getExpressionAttributeValues(), request.getExpected(),
+                request.getConditionalOperator());
+        List<Map<String, AttributeValue>> written = table.write(request.getKey(), condition, item -> null);
+        double capacity = writeCapacity(written);
+
+        return new DeleteItemResult()
+                .withAttributes(ReturnValue.ALL_OLD.toString().equals(request.getReturnValues()) ? written.get(0) : null)
+                .withConsumedCapacity(consumedCapacity(table, capacity, request.getReturnConsumedCapacity()));
+    }
+
+    @Override
+    public QueryResult query(QueryRequest request) {
+
+        MemoryTable table = getTable(request.getTableName());
+        if(request.getQueryFilter() != null){
+            throw validationError("Legacy query filters are not supported, use a filter expression");
+        }
+
+        // key conditions of the mapper's hash key values are converted into predicates
+        List<MemoryExpression.Predicate> keyConditions = new ArrayList<>();
+        if(request.getKeyConditionExpression() != null){
+            keyConditions.addAll(MemoryExpression.parse(request.getKeyConditionExpression(),
+                    request.getExpressionAttributeNames(), request.getExpressionAttributeValues()).getConjuncts());
+        }else if(request.getKeyConditions() != null){
+            for(Map.Entry<String, Condition> entry : request.getKeyConditions().entrySet()){
+                ExpectedAttributeValue expected = new ExpectedAttributeValue()
+                        .withComparisonOperator(entry.getValue().getComparisonOperator())
+                        .withAttributeValueList(entry.getValue().getAttributeValueList());
+                keyConditions.addAll(createExpectedCondition(entry.getKey(), expected).getConjuncts());
+            }
+        }
+
+        // the hash key condition selects the partition, the range key condition the items of the partition
+        String[] keyNames = table.getKeyNames(request.getIndexName());
+        AttributeValue hashValue = null;
+        MemoryExpression.Predicate rangeCondition = null;
+        for(MemoryExpression.Predicate predicate : keyConditions){
+            if(keyNames[0].equals(predicate.getAttributeName()) && "=".equals(predicate.getOperator()) && hashValue == null){
+                hashValue = predicate.getValue(1);
+            }else if(predicate.getAttributeName() != null && predicate.getAttributeName().equals(keyNames[1])
+                    && rangeCondition == null && !"<>".equals(predicate.getOperator()) && !"in".equals(predicate.getOperator())){
+                rangeCondition = predicate;
+            }else{
+                throw validationError("Query key condition not supported on attribute: " + predicate.getAttributeName());
+            }
+        }
+        if(hashValue == null){
+            throw validationError("Query condition missed key schema element: " + keyNames[0]);
+        }
+
+        MemoryTable.Page page = table.query(request.getIndexName(), hashValue, rangeCondition, request.getExclusiveStartKey(),
+                !Boolean.FALSE.equals(request.getScanIndexForward()), getLimit(request.getLimit()));
+
+        return createQueryResult(table, page, request.getFilterExpression(), request.getProjectionExpression(),
+                request.getExpressionAttributeNames(), request.getExpressionAttributeValues(), request.getAttributesToGet(),
+                request.getSelect(), Boolean.TRUE.equals(request.getConsistentRead()), request.getReturnConsumedCapacity());
+    }
+
+    @Override
+    public ScanResult scan(ScanRequest request) {
+
+        MemoryTable table = getTable(request.getTableName());
+        if(request.getScanFilter() != null){
+            throw validationError("Legacy scan filters are not supported, use expressions");
+        }
+
+        MemoryTable.Page page = table.scan(request.getIndexName(), request.getSegment(), request.getTotalSegments(),
+                request.getExclusiveStartKey(), getLimit(request.getLimit()));
+
+        QueryResult result = createQueryResult(table, page, request.getFilterExpression(), request.getProjectionExpression(),
+                request.getExpressionAttributeNames(), request.getExpressionAttributeValues(), request.getAttributesToGet(),
+                request.getSelect(), Boolean.TRUE.equals(request.getConsistentRead()), request.getReturnConsumedCapacity());
+        return new ScanResult().withItems(result.getItems()).withCount(result.getCount())
+                .withScannedCount(result.getScannedCount()).withLastEvaluatedKey(result.getLastEvaluatedKey())
+                .withConsumedCapacity(result.getConsumedCapacity());
+    }
+
+    @Override
+    public BatchGetItemResult batchGetItem(BatchGetItemRequest request) {
+
+        Map<String, List<Map<String, AttributeValue>>> responses = new HashMap<>();
+        List<ConsumedCapacity> consumedCapacities = new ArrayList<>();
+        for(Map.Entry<String, KeysAndAttributes> entry : request.getRequestItems().entrySet()){
+
+            MemoryTable table = getTable(entry.getKey());
+            KeysAndAttributes keysAndAttributes = entry.getValue();
+            List<Map<String, AttributeValue>> items = new ArrayList<>();
+            double capacity = 0;
+            for(Map<String, AttributeValue> key : keysAndAttributes.getKeys()){
+                Map<String, AttributeValue> item = table.get(key);
+                capacity += readCapacity(MemoryTable.itemSize(item), Boolean.TRUE.equals(keysAndAttributes.getConsistentRead()));
+                if(item != null){
+                    items.add(project(item, keysAndAttributes.getProjectionExpression(),
+                            keysAndAttributes.getExpressionAttributeNames(), keysAndAttributes.getAttributesToGet()));
+                }
+            }
+            responses.put(entry.getKey(), items);
+            ConsumedCapacity consumedCapacity = consumedCapacity(table, capacity, request.getReturnConsumedCapacity());
+            if(consumedCapacity != null){
+                consumedCapacities.add(consumedCapacity);
+            }
+        }
+        return new BatchGetItemResult().withResponses(responses).withUnprocessedKeys(new HashMap<>())
+                .withConsumedCapacity(consumedCapacities.isEmpty() ? null : consumedCapacities);
+    }
+
+    @Override
+    public BatchWriteItemResult batchWriteItem(BatchWriteItemRequest request) {
+
+        List<ConsumedCapacity> consumedCapacities = new ArrayList<>();
+        for(Map.Entry<String, List<WriteRequest>> entry : request.getRequestItems().entrySet()){
+
+            MemoryTable table = getTable(entry.getKey());
+            double capacity = 0;
+            for(WriteRequest write : entry.getValue()){
+                List<Map<String, AttributeValue>> written;
+                if(write.getPutRequest() != null){
+                    Map<String, AttributeValue> item = new HashMap<>(write.getPutRequest().getItem());
+                    written = table.write(item, null, current -> item);
+                }else{
+                    written = table.write(write.getDeleteRequest().getKey(), null, current -> null);
+                }
+                capacity += writeCapacity(written);
+            }
+            ConsumedCapacity consumedCapacity = consumedCapacity(table, capacity, request.getReturnConsumedCapacity());
+            if(consumedCapacity != null){
+                consumedCapacities.add(consumedCapacity);
+            }
+        }
+        return new BatchWriteItemResult().withUnprocessedItems(new HashMap<>())
+                .withConsumedCapacity(consumedCapacities.isEmpty() ? null : consumedCapacities);
+    }
+
+    /**
+     * Create a validation error as returned by DynamoDB for malformed requests
+     *
+     * @param message
+     *          the error message
+     * @return the exception to throw
+     */
+    static AmazonDynamoDBException validationError(String message){
+
+        AmazonDynamoDBException exception = new AmazonDynamoDBException(message);
+        exception.setErrorCode("ValidationException");
+        exception.setErrorType(AmazonServiceException.ErrorType.Client);
+        exception.setStatusCode(400);
+        return exception;
+    }
+
+    private MemoryTable getTable(String tableName){
+
+        MemoryTable table = tables.get(tableName);
+        if(table == null){
+            throw new ResourceNotFoundException("Requested resource not found: Table: " + tableName + " not found");
+        }
+        return table;
+    }
+
+    private static int getLimit(Integer limit){
+
+        return limit != null ? limit : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Filter and project the evaluated items of a query or scan page, capacity is consumed by all evaluated items
+     */
+    private QueryResult createQueryResult(MemoryTable table, MemoryTable.Page page, String filterExpression,
+                                          String projectionExpression, Map<String, String> names,
+                                          Map<String, AttributeValue> values, List<String> attributesToGet, String select,
+                                          boolean consistentRead, String returnConsumedCapacity){
+
+        MemoryExpression filter = filterExpression != null ? MemoryExpression.parse(filterExpression, names, values) : null;
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        int size = 0;
+        for(Map<String, AttributeValue> item : page.items){
+            size += MemoryTable.itemSize(item);
+            if(filter == null || filter.test(item)){
+                items.add(project(item, projectionExpression, names, attributesToGet));
+            }
+        }
+
+        // a page is billed on the total size of the evaluated items
+        double capacity = readCapacity(size, consistentRead);
+        QueryResult result = new QueryResult().withCount(items.size()).withScannedCount(page.items.size())
+                .withLastEvaluatedKey(page.lastEvaluatedKey)
+                .withConsumedCapacity(consumedCapacity(table, capacity, returnConsumedCapacity));
+        return Select.COUNT.toString().equals(select) ? result : result.withItems(items);
+    }
+
+    /**
+     * Keep the attributes of a projection expression or of the legacy attributes to get
+     */
+    private static Map<String, AttributeValue> project(Map<String, AttributeValue> item, String projectionExpression,
+                                                       Map<String, String> names, List<String> attributesToGet){
+
+        List<String> attributeNames = attributesToGet;
+        if(projectionExpression != null){
+            attributeNames = new ArrayList<>();
+            for(String path : projectionExpression.split(",")){
+                String attributeName = path.trim();
+                if(attributeName.startsWith("#")){
+                    attributeName = names != null ? names.get(attributeName) : null;
+                    if(attributeName == null){
+                        throw validationError("Undefined expression attribute name: " + path.trim());
+                    }
+                }else if(attributeName.contains(".") || attributeName.contains("[")){
+                    throw validationError("Nested projection paths are not supported: " + attributeName);
+                }
+                attributeNames.add(attributeName);
+            }
+        }
+        if(attributeNames == null){
+            return item;
+        }
+
+        Map<String, AttributeValue> projected = new HashMap<>();
+        for(String attributeName : attributeNames){
+            if(item.get(attributeName) != null){
+                projected.put(attributeName, item.get(attributeName));
+            }
+        }
+        return projected;
+    }
+
+    /**
+     * Create the condition of a write from a condition expression or from the legacy expected values
+     *
+     * @return the condition, null if the write is unconditional
+     */
+    private static Predicate<Map<String, AttributeValue>> createCondition(String conditionExpression, Map<String, String> names,
+                                                                         Map<String, AttributeValue> values,
+                                                                         Map<String, ExpectedAttributeValue> expected,
+                                                                         String conditionalOperator){
+
+        if(conditionExpression != null){
+            return MemoryExpression.parse(conditionExpression, names, values)::test;
+        }
+        if(expected == null || expected.isEmpty()){
+            return null;
+        }
+
+        List<MemoryExpression> conditions = new ArrayList<>();
+        for(Map.Entry<String, ExpectedAttributeValue> entry : expected.entrySet()){
+            conditions.add(createExpectedCondition(entry.getKey(), entry.getValue()));
+        }
+        boolean or = ConditionalOperator.OR.toString().equals(conditionalOperator);
+        return item -> or ? conditions.stream().anyMatch(condition -> condition.test(item))
+                : conditions.stream().allMatch(condition -> condition.test(item));
+    }
+
+    private static MemoryExpression createExpectedCondition(String attributeName, ExpectedAttributeValue expected){
+
+        if(expected.getComparisonOperator() == null){
+            if(Boolean.FALSE.equals(expected.getExists())){
+                return MemoryExpression.of("attribute_not_exists", attributeName, Collections.emptyList());
+            }
+            return MemoryExpression.of("=", attributeName, Collections.singletonList(expected.getValue()));
+        }
+
+        List<AttributeValue> values = expected.getAttributeValueList() != null ? expected.getAttributeValueList()
+                : expected.getValue() != null ? Collections.singletonList(expected.getValue()) : Collections.emptyList();
+        switch (ComparisonOperator.fromValue(expected.getComparisonOperator())){
+            case EQ: return MemoryExpression.of("=", attributeName, values);
+            case NE: return MemoryExpression.of("<>", attributeName, values);
+            case LT: return MemoryExpression.of("<", attributeName, values);
+            case LE: return MemoryExpression.of("<=", attributeName, values);
+            case GT: return MemoryExpression.of(">", attributeName, values);
+            case GE: return MemoryExpression.of(">=", attributeName, values);
+            case BETWEEN: return MemoryExpression.of("between", attributeName, values);
+            case IN: return MemoryExpression.of("in", attributeName, values);
+            case BEGINS_WITH: return MemoryExpression.of("begins_with", attributeName, values);
+            case CONTAINS: return MemoryExpression.of("contains", attributeName, values);
+            case NULL: return MemoryExpression.of("attribute_not_exists", attributeName, values);
+            case NOT_NULL: return MemoryExpression.of("attribute_exists", attributeName, values);
+            default: throw validationError("Comparison operator not supported: " + expected.getComparisonOperator());
+        }
+    }
+
+    /**
+     * Apply an update expression of SET, REMOVE and ADD clauses with plain values, e.g. "SET #a = :v REMOVE b"
+     */
+    private static void applyUpdateExpression(Map<String, AttributeValue> item, String updateExpression,
+                                              Map<String, String> names, Map<String, AttributeValue> values){
+
+        String action = null;
+        for(String token : updateExpression.trim().split("(?i)(?=\\b(?:SET|REMOVE|ADD|DELETE)\\s)|,")){
+            String clause = token.trim();
+            if(clause.isEmpty()){
+                continue;
+            }
+            String[] words = clause.split("\\s+", 2);
+            String keyword = words[0].toUpperCase(Locale.ROOT);
+            if(Arrays.asList("SET", "REMOVE", "ADD", "DELETE").contains(keyword) && words.length == 2){
+                action = keyword;
+                clause = words[1].trim();
+            }
+            if(action == null){
+                throw validationError("Invalid update expression: " + updateExpression);
+            }
+
+            if("REMOVE".equals(action)){
+                item.remove(resolveName(clause, names));
+            }else if("SET".equals(action)){
+                String[] assignment = clause.split("=", 2);
+                if(assignment.length != 2 || !assignment[1].trim().startsWith(":")){
+                    throw validationError("Only assignments of values are supported: " + clause);
+                }
+                item.put(resolveName(assignment[0].trim(), names), resolveValue(assignment[1].trim(), values));
+            }else{
+                String[] operands = clause.split("\\s+", 2);
+                if(operands.length != 2){
+                    throw validationError("Invalid update expression: " + updateExpression);
+                }
+                String attributeName = resolveName(operands[0], names);
+                AttributeValue value = resolveValue(operands[1].trim(), values);
+                AttributeValue updated = "ADD".equals(action) ? add(item.get(attributeName), value) : delete(item.get(attributeName), value);
+                if(updated != null){
+                    item.put(attributeName, updated);
+                }else{
+                    item.remove(attributeName);
+                }
+            }
+        }
+    }
+
+    private static String resolveName(String token, Map<String, String> names){
+
+        if(token.startsWith("#")){
+            String name = names != null ? names.get(token) : null;
+            if(name == null){
+                throw validationError("Undefined expression attribute name: " + token);
+            }
+            return name;
+        }
+        return token;
+    }
+
+    private static AttributeValue resolveValue(String token, Map<String, AttributeValue> values){
+
+        AttributeValue value = values != null ? values.get(token) : null;
+        if(value == null){
+            throw validationError("Undefined expression attribute value: " + token);
+        }
+        return value;
+    }
+
+    /**
+     * Apply the legacy attribute updates used by the mapper, PUT replaces, DELETE removes, ADD adds numbers and sets
+     */
+    private static void applyAttributeUpdates(Map<String, AttributeValue> item, Map<String, AttributeValueUpdate> updates){
+
+        for(Map.Entry<String, AttributeValueUpdate> update : updates.entrySet()){
+            String attributeName = update.getKey();
+            AttributeValue value = update.getValue().getValue();
+            String action = update.getValue().getAction() != null ? update.getValue().getAction() : AttributeAction.PUT.toString();
+            AttributeValue updated;
+            if(AttributeAction.PUT.toString().equals(action)){
+                updated = value;
+            }else if(AttributeAction.ADD.toString().equals(action)){
+                updated = add(item.get(attributeName), value);
+            }else{
+                updated = value != null ? delete(item.get(attributeName), value) : null;
+            }
+            if(updated != null){
+                item.put(attributeName, updated);
+            }else{
+                item.remove(attributeName);
+            }
+        }
+    }
+
+    private static AttributeValue add(AttributeValue current, AttributeValue value){
+
+        if(value.getN() != null){
+            BigDecimal sum = new BigDecimal(value.getN()).add(current != null ? new BigDecimal(current.getN()) : BigDecimal.ZERO);
+            return new AttributeValue().withN(sum.toPlainString());
+        }
+        if(value.getSS() != null){
+            Set<String> set = new LinkedHashSet<>(current != null ? current.getSS() : Collections.emptyList());
+            set.addAll(value.getSS());
+            return new AttributeValue().withSS(set);
+        }
+        if(value.getNS() != null){
+            Set<String> set = new LinkedHashSet<>(current != null ? current.getNS() : Collections.emptyList());
+            set.addAll(value.getNS());
+            return new AttributeValue().withNS(set);
+        }
+        throw validationError("ADD is only supported for numbers and sets");
+    }
+
+    private static AttributeValue delete(AttributeValue current, AttributeValue value){
+
+        if(current == null){
+            return null;
+        }
+        if(value.getSS() != null && current.getSS() != null){
+            Set<String> set = new LinkedHashSet<>(current.getSS());
+            set.removeAll(value.getSS());
+            return set.isEmpty() ? null : new AttributeValue().withSS(set);
+        }
+        if(value.getNS() != null && current.getNS() != null){
+            Set<String> set = new LinkedHashSet<>(current.getNS());
+            set.removeAll(value.getNS());
+            return set.isEmpty() ? null : new AttributeValue().withNS(set);
+        }
+        throw validationError("DELETE is only supported for sets");
+    }
+
+    /**
+     * Read capacity of a read, 4 KB per unit, eventually consistent reads cost half
+     */
+    private double readCapacity(int size, boolean consistentRead){
+
+        double capacity = Math.max(1, Math.ceil(size / 4096.0)) * (consistentRead ? 1 : 0.5);
+        consumedReadCapacity.add(capacity);
+        return capacity;
+    }
+
+    /**
+     * Write capacity of a write, 1 KB per unit of the larger item before and after the write
+     */
+    private double writeCapacity(List<Map<String, AttributeValue>> written){
+
+        int size = Math.max(MemoryTable.itemSize(written.get(0)), MemoryTable.itemSize(written.get(1)));
+        double capacity = Math.max(1, Math.ceil(size / 1024.0));
+        consumedWriteCapacity.add(capacity);
+        return capacity;
+    }
+
+    private static ConsumedCapacity consumedCapacity(MemoryTable table, double capacity, String returnConsumedCapacity){
+
+        if(returnConsumedCapacity == null || ReturnConsumedCapacity.NONE.toString().equals(returnConsumedCapacity)){
+            return null;
+        }
+        return new ConsumedCapacity().withTableName(table.getName()).withCapacityUnits(capacity);
+    }
+}
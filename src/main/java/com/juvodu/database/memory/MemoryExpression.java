@@ -0,0 +1,496 @@
+package com.juvodu.database.memory;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Condition, filter and key condition expressions of the in-memory backend. Supports comparisons, between, in,
+ * and, or, not, parentheses and the functions attribute_exists, attribute_not_exists, begins_with and contains on
+ * top level attributes. Attribute names and values are resolved from the placeholders of the request.
+ *
+ * @author Juvodu
+ */
+final class MemoryExpression {
+
+    private static final Pattern TOKEN = Pattern.compile("\\s*(#?[A-Za-z_][A-Za-z0-9_\\-]*|:[A-Za-z0-9_]+|<>|<=|>=|[=<>(),])");
+    private static final List<String> FUNCTIONS = Arrays.asList("attribute_exists", "attribute_not_exists", "begins_with", "contains");
+    private static final List<String> COMPARATORS = Arrays.asList("=", "<>", "<", "<=", ">", ">=");
+
+    private final Node root;
+
+    private MemoryExpression(Node root){
+        this.root = root;
+    }
+
+    /**
+     * Parse an expression
+     *
+     * @param expression
+     *          the expression of the request
+     * @param names
+     *          expression attribute names, may be null
+     * @param values
+     *          expression attribute values, may be null
+     * @return the parsed expression
+     * @throws com.amazonaws.services.dynamodbv2.model.AmazonDynamoDBException
+     *          a validation error if the expression is malformed or uses unknown placeholders
+     */
+    static MemoryExpression parse(String expression, Map<String, String> names, Map<String, AttributeValue> values){
+
+        Parser parser = new Parser(expression, names, values);
+        Node root = parser.parseOr();
+        if(parser.position < parser.tokens.size()){
+            throw InMemoryDynamoDB.validationError("Invalid expression, unexpected token: " + parser.tokens.get(parser.position));
+        }
+        return new MemoryExpression(root);
+    }
+
+    /**
+     * Create an expression of a single predicate, used for the legacy conditions of a request
+     *
+     * @param operator
+     *          a comparator, "between", "in" or a function name
+     * @param attributeName
+     *          the compared attribute
+     * @param values
+     *          the values the attribute is compared with
+     * @return the expression
+     */
+    static MemoryExpression of(String operator, String attributeName, List<AttributeValue> values){
+
+        List<Operand> operands = new ArrayList<>();
+        operands.add(new Operand(attributeName, null));
+        values.forEach(value -> operands.add(new Operand(null, value)));
+        return new MemoryExpression(new Predicate(operator, operands));
+    }
+
+    /**
+     * Evaluate the expression against an item
+     *
+     * @param item
+     *          the item, empty for a missing item
+     * @return true if the item matches
+     */
+    boolean test(Map<String, AttributeValue> item){
+
+        return root.test(item);
+    }
+
+    /**
+     * Get the predicates of a key condition
+     *
+     * @return the predicates joined by and
+     * @throws com.amazonaws.services.dynamodbv2.model.AmazonDynamoDBException
+     *          a validation error if the expression uses or, not or parentheses around a conjunction
+     */
+    List<Predicate> getConjuncts(){
+
+        List<Predicate> conjuncts = new ArrayList<>();
+        collectConjuncts(root, conjuncts);
+        return conjuncts;
+    }
+
+    private static void collectConjuncts(Node node, List<Predicate> conjuncts){
+
+        if(node instanceof And){
+            collectConjuncts(((And) node).left, conjuncts);
+            collectConjuncts(((And) node).right, conjuncts);
+        }else if(node instanceof Predicate){
+            conjuncts.add((Predicate) node);
+        }else{
+            throw InMemoryDynamoDB.validationError("Invalid key condition, only and is supported");
+        }
+    }
+
+    /**
+     * Compare values of the same scalar type, numbers by value, strings and binaries by their bytes
+     *
+     * @return the order of the values
+     * @throws com.amazonaws.services.dynamodbv2.model.AmazonDynamoDBException
+     *          a validation error if the values are not of the same scalar type
+     */
+    static int compare(AttributeValue a, AttributeValue b){
+
+        if(a.getN() != null && b.getN() != null){
+            return new BigDecimal(a.getN()).compareTo(new BigDecimal(b.getN()));
+        }
+        if(a.getS() != null && b.getS() != null){
+            return a.getS().compareTo(b.getS());
+        }
+        if(a.getB() != null && b.getB() != null){
+            ByteBuffer x = a.getB().duplicate();
+            ByteBuffer y = b.getB().duplicate();
+            while(x.hasRemaining() && y.hasRemaining()){
+                int order = Integer.compare(x.get() & 0xff, y.get() & 0xff);
+                if(order != 0){
+                    return order;
+                }
+            }
+            return Integer.compare(x.remaining(), y.remaining());
+        }
+        throw InMemoryDynamoDB.validationError("Values are not of the same scalar type");
+    }
+
+    private static boolean isComparable(AttributeValue a, AttributeValue b){
+
+        return a != null && b != null && ((a.getN() != null && b.getN() != null)
+                || (a.getS() != null && b.getS() != null) || (a.getB() != null && b.getB() != null));
+    }
+
+    private static boolean isEqual(AttributeValue a, AttributeValue b){
+
+        if(a == null || b == null){
+            return false;
+        }
+        return isComparable(a, b) ? compare(a, b) == 0 : a.equals(b);
+    }
+
+    private interface Node {
+        boolean test(Map<String, AttributeValue> item);
+    }
+
+    private static final class And implements Node {
+
+        private final Node left;
+        private final Node right;
+
+        private And(Node left, Node right){
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Map<String, AttributeValue> item) {
+            return left.test(item) && right.test(item);
+        }
+    }
+
+    private static final class Or implements Node {
+
+        private final Node left;
+        private final Node right;
+
+        private Or(Node left, Node right){
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Map<String, AttributeValue> item) {
+            return left.test(item) || right.test(item);
+        }
+    }
+
+    private static final class Not implements Node {
+
+        private final Node node;
+
+        private Not(Node node){
+            this.node = node;
+        }
+
+        @Override
+        public boolean test(Map<String, AttributeValue> item) {
+            return !node.test(item);
+        }
+    }
+
+    /**
+     * Attribute name or value of a predicate
+     */
+    static final class Operand {
+
+        private final String attributeName;
+        private final AttributeValue value;
+
+        private Operand(String attributeName, AttributeValue value){
+            this.attributeName = attributeName;
+            this.value = value;
+        }
+
+        private AttributeValue resolve(Map<String, AttributeValue> item){
+            return attributeName != null ? item.get(attributeName) : value;
+        }
+    }
+
+    /**
+     * Comparison, between, in or function on an attribute
+     */
+    static final class Predicate implements Node {
+
+        private final String operator;
+        private final List<Operand> operands;
+
+        private Predicate(String operator, List<Operand> operands){
+            this.operator = operator;
+            this.operands = operands;
+        }
+
+        /**
+         * @return the lower case operator or function name
+         */
+        String getOperator() {
+            return operator;
+        }
+
+        /**
+         * @return the attribute the predicate is evaluated on, null if the first operand is a value
+         */
+        String getAttributeName() {
+            return operands.get(0).attributeName;
+        }
+
+        /**
+         * @return the value of an operand, null if the operand is an attribute
+         */
+        AttributeValue getValue(int operand) {
+            return operands.size() > operand ? operands.get(operand).value : null;
+        }
+
+        /**
+         * Get the smallest value of the attribute which can match, used to seek into sorted keys
+         *
+         * @return the lower bound, null if the predicate has none
+         */
+        AttributeValue getLowerBound(){
+
+            switch (operator){
+                case "=":
+                case ">":
+                case ">=":
+                case "between":
+                case "begins_with":
+                    return getValue(1);
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public boolean test(Map<String, AttributeValue> item) {
+
+            AttributeValue a = operands.get(0).resolve(item);
+            AttributeValue b = operands.size() > 1 ? operands.get(1).resolve(item) : null;
+            switch (operator){
+                case "attribute_exists":
+                    return a != null;
+                case "attribute_not_exists":
+                    return a == null;
+                case "begins_with":
+                    if(a != null && b != null && a.getS() != null && b.getS() != null){
+                        return a.getS().startsWith(b.getS());
+                    }
+                    return a != null && b != null && a.getB() != null && b.getB() != null
+                            && a.getB().remaining() >= b.getB().remaining()
+                            && a.getB().duplicate().limit(a.getB().position() + b.getB().remaining()).equals(b.getB());
+                case "contains":
+                    return contains(a, b);
+                case "between":
+                    AttributeValue to = operands.get(2).resolve(item);
+                    return isComparable(a, b) && isComparable(a, to) && compare(a, b) >= 0 && compare(a, to) <= 0;
+                case "in":
+                    for(Operand operand : operands.subList(1, operands.size())){
+                        if(isEqual(a, operand.resolve(item))){
+                            return true;
+                        }
+                    }
+                    return false;
+                case "=":
+                    return isEqual(a, b);
+                case "<>":
+                    return !isEqual(a, b);
+                default:
+                    if(!isComparable(a, b)){
+                        return false;
+                    }
+                    int order = compare(a, b);
+                    return "<".equals(operator) ? order < 0 : "<=".equals(operator) ? order <= 0
+                            : ">".equals(operator) ? order > 0 : order >= 0;
+            }
+        }
+
+        private static boolean contains(AttributeValue a, AttributeValue b){
+
+            if(a == null || b == null){
+                return false;
+            }
+            if(a.getS() != null){
+                return b.getS() != null && a.getS().contains(b.getS());
+            }
+            if(a.getSS() != null){
+                return b.getS() != null && a.getSS().contains(b.getS());
+            }
+            if(a.getNS() != null){
+                return b.getN() != null && a.getNS().stream().anyMatch(n -> new BigDecimal(n).compareTo(new BigDecimal(b.getN())) == 0);
+            }
+            if(a.getL() != null){
+                return a.getL().stream().anyMatch(element -> isEqual(element, b));
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Recursive descent parser, operator precedence from low to high is or, and, not, predicates
+     */
+    private static final class Parser {
+
+        private final List<String> tokens = new ArrayList<>();
+        private final Map<String, String> names;
+        private final Map<String, AttributeValue> values;
+        private int position;
+
+        private Parser(String expression, Map<String, String> names, Map<String, AttributeValue> values){
+
+            this.names = names != null ? names : Collections.emptyMap();
+            this.values = values != null ? values : Collections.emptyMap();
+            Matcher matcher = TOKEN.matcher(expression);
+            int end = 0;
+            while(end < expression.length() && matcher.find(end) && matcher.start() == end){
+                tokens.add(matcher.group(1));
+                end = matcher.end();
+            }
+            if(!expression.substring(end).trim().isEmpty()){
+                throw InMemoryDynamoDB.validationError("Invalid expression, unexpected character at " + end + ": " + expression);
+            }
+        }
+
+        private Node parseOr(){
+
+            Node node = parseAnd();
+            while(accept("or")){
+                node = new Or(node, parseAnd());
+            }
+            return node;
+        }
+
+        private Node parseAnd(){
+
+            Node node = parseNot();
+            while(accept("and")){
+                node = new And(node, parseNot());
+            }
+            return node;
+        }
+
+        private Node parseNot(){
+
+            return accept("not") ? new Not(parseNot()) : parsePrimary();
+        }
+
+        private Node parsePrimary(){
+
+            if(accept("(")){
+                Node node = parseOr();
+                expect(")");
+                return node;
+            }
+
+            String function = peek().toLowerCase(Locale.ROOT);
+            if(FUNCTIONS.contains(function) && "(".equals(peek(1))){
+                position += 2;
+                List<Operand> operands = parseOperands();
+                return new Predicate(function, operands);
+            }
+
+            List<Operand> operands = new ArrayList<>();
+            operands.add(parseOperand());
+            if(accept("between")){
+                operands.add(parseOperand());
+                expect("and");
+                operands.add(parseOperand());
+                return new Predicate("between", operands);
+            }
+            if(accept("in")){
+                expect("(");
+                operands.addAll(parseOperands());
+                return new Predicate("in", operands);
+            }
+
+            String comparator = next();
+            if(!COMPARATORS.contains(comparator)){
+                throw InMemoryDynamoDB.validationError("Invalid expression, expected comparator: " + comparator);
+            }
+            operands.add(parseOperand());
+            return new Predicate(comparator, operands);
+        }
+
+        /**
+         * Parse operands separated by commas up to the closing parenthesis
+         */
+        private List<Operand> parseOperands(){
+
+            List<Operand> operands = new ArrayList<>();
+            do {
+                operands.add(parseOperand());
+            } while(accept(","));
+            expect(")");
+            return operands;
+        }
+
+        private Operand parseOperand(){
+
+            String token = next();
+            if(token.startsWith(":")){
+                AttributeValue value = values.get(token);
+                if(value == null){
+                    throw InMemoryDynamoDB.validationError("Undefined expression attribute value: " + token);
+                }
+                return new Operand(null, value);
+            }
+            if(token.startsWith("#")){
+                String name = names.get(token);
+                if(name == null){
+                    throw InMemoryDynamoDB.validationError("Undefined expression attribute name: " + token);
+                }
+                return new Operand(name, null);
+            }
+            if(!Character.isLetter(token.charAt(0)) && token.charAt(0) != '_'){
+                throw InMemoryDynamoDB.validationError("Invalid expression, expected operand: " + token);
+            }
+            return new Operand(token, null);
+        }
+
+        private String peek(){
+            return peek(0);
+        }
+
+        private String peek(int offset){
+            return position + offset < tokens.size() ? tokens.get(position + offset) : "";
+        }
+
+        private String next(){
+
+            if(position >= tokens.size()){
+                throw InMemoryDynamoDB.validationError("Invalid expression, unexpected end");
+            }
+            return tokens.get(position++);
+        }
+
+        private boolean accept(String token){
+
+            if(peek().equalsIgnoreCase(token)){
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String token){
+
+            if(!accept(token)){
+                throw InMemoryDynamoDB.validationError("Invalid expression, expected " + token + " at: " + peek());
+            }
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package com.juvodu.database.memory;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndex;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.IndexStatus;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.KeyType;
+import com.amazonaws.services.dynamodbv2.model.LocalSecondaryIndex;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputDescription;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.TableStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Table of the in-memory backend. Items are kept in key order for scans, every index including the primary key
+ * holds its partitions as sorted maps so that range conditions seek to their first key. Reads share a lock,
+ * writes update the items and all indexes under an exclusive lock.
+ *
+ * @author Juvodu
+ */
+final class MemoryTable {
+
+    /** keys of sorted maps, lists of scalar values compared element by element */
+    private static final Comparator<List<AttributeValue>> KEY_ORDER = (a, b) -> {
+        for(int i = 0; i < Math.min(a.size(), b.size()); i++){
+            int order = MemoryExpression.compare(a.get(i), b.get(i));
+            if(order != 0){
+                return order;
+            }
+        }
+        return Integer.compare(a.size(), b.size());
+    };
+
+    private final String name;
+    private final CreateTableRequest definition;
+    private final Index primaryIndex;
+    private final Map<String, Index> indexes = new HashMap<>();
+    private final NavigableMap<List<AttributeValue>, Map<String, AttributeValue>> items = new TreeMap<>(KEY_ORDER);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Ctor
+     *
+     * @param request
+     *          definition of the table with its key schema and secondary indexes
+     */
+    MemoryTable(CreateTableRequest request){
+
+        this.name = request.getTableName();
+        this.definition = request;
+        this.primaryIndex = new Index(null, request.getKeySchema(), new Projection().withProjectionType(ProjectionType.ALL),
+                request.getKeySchema());
+        if(request.getGlobalSecondaryIndexes() != null){
+            for(GlobalSecondaryIndex index : request.getGlobalSecondaryIndexes()){
+                indexes.put(index.getIndexName(), new Index(index.getIndexName(), index.getKeySchema(),
+                        index.getProjection(), request.getKeySchema()));
+            }
+        }
+        if(request.getLocalSecondaryIndexes() != null){
+            for(LocalSecondaryIndex index : request.getLocalSecondaryIndexes()){
+                indexes.put(index.getIndexName(), new Index(index.getIndexName(), index.getKeySchema(),
+                        index.getProjection(), request.getKeySchema()));
+            }
+        }
+    }
+
+    /**
+     * @return description of the active table and its indexes
+     */
+    TableDescription describe(){
+
+        lock.readLock().lock();
+        try {
+            List<GlobalSecondaryIndexDescription> globalIndexes = new ArrayList<>();
+            if(definition.getGlobalSecondaryIndexes() != null){
+                for(GlobalSecondaryIndex index : definition.getGlobalSecondaryIndexes()){
+                    globalIndexes.add(new GlobalSecondaryIndexDescription().withIndexName(index.getIndexName())
+                            .withKeySchema(index.getKeySchema()).withProjection(index.getProjection())
+                            .withIndexStatus(IndexStatus.ACTIVE)
+                            .withItemCount((long) indexes.get(index.getIndexName()).size()));
+                }
+            }
+            return new TableDescription().withTableName(name)
+                    .withKeySchema(definition.getKeySchema())
+                    .withAttributeDefinitions(definition.getAttributeDefinitions())
+                    .withGlobalSecondaryIndexes(globalIndexes.isEmpty() ? null : globalIndexes)
+                    .withProvisionedThroughput(definition.getProvisionedThroughput() != null
+                            ? new ProvisionedThroughputDescription()
+                                    .withReadCapacityUnits(definition.getProvisionedThroughput().getReadCapacityUnits())
+                                    .withWriteCapacityUnits(definition.getProvisionedThroughput().getWriteCapacityUnits())
+                            : null)
+                    .withTableStatus(TableStatus.ACTIVE)
+                    .withItemCount((long) items.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Get an item
+     *
+     * @param key
+     *          the key attributes
+     * @return a copy of the item, null if it does not exist
+     */
+    Map<String, AttributeValue> get(Map<String, AttributeValue> key){
+
+        lock.readLock().lock();
+        try {
+            Map<String, AttributeValue> item = items.get(primaryIndex.tableKey(key));
+            return item != null ? new HashMap<>(item) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write an item created from the current item
+     *
+     * @param key
+     *          the key attributes
+     * @param condition
+     *          evaluated on the current item or an empty map, null for unconditional writes
+     * @param writer
+     *          creates the new item from a copy of the current item or of the key, returns null to delete the item
+     * @return the current item before and the item after the write, each null if missing
+     * @throws ConditionalCheckFailedException if the condition is not met
+     */
+    List<Map<String, AttributeValue>> write(Map<String, AttributeValue> key, Predicate<Map<String, AttributeValue>> condition,
+                                            UnaryOperator<Map<String, AttributeValue>> writer){
+
+        List<AttributeValue> tableKey = primaryIndex.tableKey(key);
+        lock.writeLock().lock();
+        try {
+            Map<String, AttributeValue> current = items.get(tableKey);
+            if(condition != null && !condition.test(current != null ? current : Collections.emptyMap())){
+                throw new ConditionalCheckFailedException("The conditional request failed");
+            }
+
+            Map<String, AttributeValue> updated = writer.apply(new HashMap<>(current != null ? current : key));
+            if(updated != null && !primaryIndex.tableKey(updated).equals(tableKey)){
+                throw InMemoryDynamoDB.validationError("Key attributes cannot be updated");
+            }
+
+            if(current != null){
+                items.remove(tableKey);
+                primaryIndex.remove(current);
+                indexes.values().forEach(index -> index.remove(current));
+            }
+            if(updated != null){
+                items.put(tableKey, updated);
+                primaryIndex.add(updated);
+                indexes.values().forEach(index -> index.add(updated));
+            }
+            return Arrays.asList(current, updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Read the items of a partition of the table or of an index in the order of their range key
+     *
+     * @param indexName
+     *          the index, null for the table
+     * @param hashValue
+     *          the partition
+     * @param rangeCondition
+     *          condition on the range key, null for the whole partition
+     * @param exclusiveStartKey
+     *          last evaluated key of the previous page, null for the first page
+     * @param forward
+     *          false to read in descending order
+     * @param limit
+     *          max number of items evaluated
+     * @return page of the items as projected by the index
+     */
+    Page query(String indexName, AttributeValue hashValue, MemoryExpression.Predicate rangeCondition,
+               Map<String, AttributeValue> exclusiveStartKey, boolean forward, int limit){
+
+        lock.readLock().lock();
+        try {
+            Index index = getIndex(indexName);
+            NavigableMap<List<AttributeValue>, Map<String, AttributeValue>> partition =
+                    index.partitions.getOrDefault(hashValue, Collections.emptyNavigableMap());
+
+            // seek to the start key or the lower bound of the range condition
+            AttributeValue lowerBound = rangeCondition != null ? rangeCondition.getLowerBound() : null;
+            NavigableMap<List<AttributeValue>, Map<String, AttributeValue>> view = partition;
+            if(forward){
+                if(exclusiveStartKey != null){
+                    view = view.tailMap(index.sortKey(exclusiveStartKey), false);
+                }else if(lowerBound != null){
+                    view = view.tailMap(Collections.singletonList(lowerBound), true);
+                }
+            }else{
+                view = (exclusiveStartKey != null ? view.headMap(index.sortKey(exclusiveStartKey), false) : view).descendingMap();
+            }
+
+            Page page = new Page();
+            for(Map<String, AttributeValue> item : view.values()){
+                if(rangeCondition != null && !rangeCondition.test(item)){
+
+                    // items above the range precede the matches in descending order, the matches end in ascending order
+                    if(!forward || (lowerBound != null && MemoryExpression.compare(item.get(index.rangeKey), lowerBound) <= 0)){
+                        continue;
+                    }
+                    break;
+                }
+                if(page.items.size() == limit){
+                    page.lastEvaluatedKey = index.lastEvaluatedKey(page.lastItem);
+                    break;
+                }
+                page.items.add(index.project(item));
+                page.lastItem = item;
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read the items of a scan segment in key order, items are assigned to segments by their hash key
+     *
+     * @param indexName
+     *          the index, null for the table
+     * @param segment
+     *          the segment, null for all items
+     * @param totalSegments
+     *          the number of segments, null for all items
+     * @param exclusiveStartKey
+     *          last evaluated key of the previous page, null for the first page
+     * @param limit
+     *          max number of items evaluated
+     * @return page of the items as projected by the index
+     */
+    Page scan(String indexName, Integer segment, Integer totalSegments, Map<String, AttributeValue> exclusiveStartKey, int limit){
+
+        lock.readLock().lock();
+        try {
+            Index index = getIndex(indexName);
+            Page page = new Page();
+            for(Map.Entry<AttributeValue, NavigableMap<List<AttributeValue>, Map<String, AttributeValue>>> partition : index.getPartitionsFrom(exclusiveStartKey)){
+
+                if(totalSegments != null && Math.floorMod(partition.getKey().hashCode(), totalSegments) != segment){
+                    continue;
+                }
+
+                // the start key lies in the first partition
+                Collection<Map<String, AttributeValue>> partitionItems = partition.getValue().values();
+                if(exclusiveStartKey != null && partition.getKey().equals(exclusiveStartKey.get(index.hashKey))){
+                    partitionItems = partition.getValue().tailMap(index.sortKey(exclusiveStartKey), false).values();
+                }
+
+                for(Map<String, AttributeValue> item : partitionItems){
+                    if(page.items.size() == limit){
+                        page.lastEvaluatedKey = index.lastEvaluatedKey(page.lastItem);
+                        return page;
+                    }
+                    page.items.add(index.project(item));
+                    page.lastItem = item;
+                }
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the key schema of the table or an index
+     *
+     * @param indexName
+     *          the index, null for the table
+     * @return the hash key name and the range key name, the range key is null if there is none
+     */
+    String[] getKeyNames(String indexName){
+
+        lock.readLock().lock();
+        try {
+            Index index = getIndex(indexName);
+            return new String[]{index.hashKey, index.rangeKey};
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Index getIndex(String indexName){
+
+        if(indexName == null){
+            return primaryIndex;
+        }
+        Index index = indexes.get(indexName);
+        if(index == null){
+            throw InMemoryDynamoDB.validationError("The table does not have the specified index: " + indexName);
+        }
+        return index;
+    }
+
+    /**
+     * Size of an item as billed by DynamoDB, the UTF-8 length of the names plus the size of the values
+     *
+     * @param item
+     *          the item, null for a missing item
+     * @return size in bytes
+     */
+    static int itemSize(Map<String, AttributeValue> item){
+
+        int size = 0;
+        if(item != null){
+            for(Map.Entry<String, AttributeValue> attribute : item.entrySet()){
+                size += attribute.getKey().getBytes(StandardCharsets.UTF_8).length + valueSize(attribute.getValue());
+            }
+        }
+        return size;
+    }
+
+    private static int valueSize(AttributeValue value){
+
+        if(value.getS() != null){
+            return value.getS().getBytes(StandardCharsets.UTF_8).length;
+        }
+        if(value.getN() != null){
+            return numberSize(value.getN());
+        }
+        if(value.getB() != null){
+            return value.getB().remaining();
+        }
+        if(value.getSS() != null){
+            return value.getSS().stream().mapToInt(s -> s.getBytes(StandardCharsets.UTF_8).length).sum();
+        }
+        if(value.getNS() != null){
+            return value.getNS().stream().mapToInt(MemoryTable::numberSize).sum();
+        }
+        if(value.getBS() != null){
+            return value.getBS().stream().mapToInt(b -> b.remaining()).sum();
+        }
+        if(value.getL() != null){
+            return 3 + value.getL().stream().mapToInt(element -> 1 + valueSize(element)).sum();
+        }
+        if(value.getM() != null){
+            return 3 + value.getM().size() + itemSize(value.getM());
+        }
+        return 1; // boolean and null
+    }
+
+    private static int numberSize(String number){
+
+        // about one byte per two significant digits plus one byte
+        String digits = number.replaceAll("[^0-9]", "").replaceAll("^0+", "").replaceAll("0+$", "");
+        return (digits.length() + 1) / 2 + 1;
+    }
+
+    /**
+     * Items of a page with the key to continue after the page
+     */
+    static final class Page {
+
+        final List<Map<String, AttributeValue>> items = new ArrayList<>();
+        Map<String, AttributeValue> lastEvaluatedKey;
+        private Map<String, AttributeValue> lastItem;
+    }
+
+    /**
+     * Primary key or secondary index, items are held by partition and sorted by range key and table key
+     */
+    private static final class Index {
+
+        private final String name;
+        private final String hashKey;
+        private final String rangeKey;
+        private final String tableHashKey;
+        private final String tableRangeKey;
+        private final Projection projection;
+        private final NavigableMap<AttributeValue, NavigableMap<List<AttributeValue>, Map<String, AttributeValue>>> partitions;
+
+        private Index(String name, List<KeySchemaElement> keySchema, Projection projection, List<KeySchemaElement> tableKeySchema){
+
+            this.name = name;
+            this.hashKey = getKeyName(keySchema, KeyType.HASH);
+            this.rangeKey = getKeyName(keySchema, KeyType.RANGE);
+            this.tableHashKey = getKeyName(tableKeySchema, KeyType.HASH);
+            this.tableRangeKey = getKeyName(tableKeySchema, KeyType.RANGE);
+            this.projection = projection;
+
+            // the order of partitions defines the order of scans
+            this.partitions = new TreeMap<>(MemoryExpression::compare);
+        }
+
+        private static String getKeyName(List<KeySchemaElement> keySchema, KeyType keyType){
+
+            for(KeySchemaElement element : keySchema){
+                if(keyType.toString().equals(element.getKeyType())){
+                    return element.getAttributeName();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Key of an item in the table
+         */
+        private List<AttributeValue> tableKey(Map<String, AttributeValue> key){
+
+            AttributeValue hashValue = key.get(tableHashKey);
+            AttributeValue rangeValue = tableRangeKey != null ? key.get(tableRangeKey) : null;
+            if(hashValue == null || (tableRangeKey != null && rangeValue == null)){
+                throw InMemoryDynamoDB.validationError("The provided key element does not match the schema");
+            }
+            return tableRangeKey != null ? Arrays.asList(hashValue, rangeValue) : Collections.singletonList(hashValue);
+        }
+
+        /**
+         * Key of an item within its partition, items of a secondary index sharing the range key are ordered by
+         * their table key
+         */
+        private List<AttributeValue> sortKey(Map<String, AttributeValue> item){
+
+            List<AttributeValue> sortKey = new ArrayList<>(3);
+            if(rangeKey != null){
+                sortKey.add(item.get(rangeKey));
+            }
+            if(name != null){
+                sortKey.add(item.get(tableHashKey));
+                if(tableRangeKey != null){
+                    sortKey.add(item.get(tableRangeKey));
+                }
+            }
+            return sortKey;
+        }
+
+        /**
+         * Items without the key attributes of a secondary index are not part of the index
+         */
+        private boolean contains(Map<String, AttributeValue> item){
+
+            return item.get(hashKey) != null && (rangeKey == null || item.get(rangeKey) != null);
+        }
+
+        private int size(){
+            return partitions.values().stream().mapToInt(Map::size).sum();
+        }
+
+        private void add(Map<String, AttributeValue> item){
+
+            if(contains(item)){
+                partitions.computeIfAbsent(item.get(hashKey), hashValue -> new TreeMap<>(KEY_ORDER)).put(sortKey(item), item);
+            }
+        }
+
+        private void remove(Map<String, AttributeValue> item){
+
+            if(contains(item)){
+                NavigableMap<List<AttributeValue>, Map<String, AttributeValue>> partition = partitions.get(item.get(hashKey));
+                partition.remove(sortKey(item));
+                if(partition.isEmpty()){
+                    partitions.remove(item.get(hashKey));
+                }
+            }
+        }
+
+        /**
+         * Copy an item with the attributes projected into the index
+         */
+        private Map<String, AttributeValue> project(Map<String, AttributeValue> item){
+
+            if(projection == null || ProjectionType.ALL.toString().equals(projection.getProjectionType())){
+                return new HashMap<>(item);
+            }
+
+            Set<String> attributeNames = new HashSet<>(Arrays.asList(hashKey, rangeKey, tableHashKey, tableRangeKey));
+            if(projection.getNonKeyAttributes() != null){
+                attributeNames.addAll(projection.getNonKeyAttributes());
+            }
+            Map<String, AttributeValue> projected = new HashMap<>();
+            for(String attributeName : attributeNames){
+                if(attributeName != null && item.get(attributeName) != null){
+                    projected.put(attributeName, item.get(attributeName));
+                }
+            }
+            return projected;
+        }
+
+        /**
+         * Key to continue after an item, the table key and the index key
+         */
+        private Map<String, AttributeValue> lastEvaluatedKey(Map<String, AttributeValue> item){
+
+            Map<String, AttributeValue> key = new HashMap<>();
+            for(String attributeName : Arrays.asList(hashKey, rangeKey, tableHashKey, tableRangeKey)){
+                if(attributeName != null){
+                    key.put(attributeName, item.get(attributeName));
+                }
+            }
+            return key;
+        }
+
+        /**
+         * Partitions in scan order starting with the partition of the start key
+         */
+        private Collection<Map.Entry<AttributeValue, NavigableMap<List<AttributeValue>, Map<String, AttributeValue>>>> getPartitionsFrom(
+                Map<String, AttributeValue> exclusiveStartKey){
+
+            if(exclusiveStartKey == null){
+                return partitions.entrySet();
+            }
+            return partitions.tailMap(exclusiveStartKey.get(hashKey), true).entrySet();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.juvodu.database.memory;
+
+import com.amazonaws.services.dynamodbv2.model.*;
+import com.juvodu.util.Constants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tables and indexes of the service as declared in the resources of serverless.yml, used to create the tables of the
+ * in-memory storage backend. The spot table has all indexes of the staged rollout in serverless.yml.
+ *
+ * @author Juvodu
+ */
+public final class StorageSchema {
+
+    private StorageSchema(){}
+
+    /**
+     * Get the table definitions
+     *
+     * @param suffix
+     *          suffix appended to the table names, e.g. "_test" for the tables of the test models
+     * @return the create table requests of all tables
+     */
+    public static List<CreateTableRequest> getTables(String suffix){
+
+        List<CreateTableRequest> tables = new ArrayList<>();
+
+        tables.add(createTable("subscription" + suffix, "id", null)
+                .withGlobalSecondaryIndexes(
+                        createIndex(Constants.USERNAME_TOPIC_INDEX, "username", "topicArn", allAttributes()),
+                        createIndex(Constants.USERNAME_ENDPOINT_INDEX, "username", "endpointArn", allAttributes())));
+
+        tables.add(createTable("favorite" + suffix, "username", "spotId"));
+        tables.add(createTable("user" + suffix, "username", null));
+        tables.add(createTable("device" + suffix, "username", "deviceToken"));
+
+        // the list index only holds the attributes of the list views
+        Projection listAttributes = new Projection().withProjectionType(ProjectionType.INCLUDE)
+                .withNonKeyAttributes("name", "shortDescription", "thumbnail", "swellHeight", "swellPeriod",
+                        "windspeedKmph", "winddir16Point", "position");
+        tables.add(createTable("spot" + suffix, "id", null)
+                .withGlobalSecondaryIndexes(
+                        createIndex(Constants.CONTINENT_COUNTRY_INDEX, "continent", "country", allAttributes()),
+                        createIndex(Constants.CONTINENT_COUNTRY_LIST_INDEX, "continent", "country", listAttributes),
+                        createIndex(Constants.CONTINENT_GEOHASH_INDEX, "continent", "geohash", allAttributes()),
+                        createIndex(Constants.CONTINENT_GEOKEY_INDEX, "continent", "geokey", allAttributes()),
+                        createIndex(Constants.CONTINENT_HILBERTKEY_INDEX, "continent", "hilbertkey", allAttributes()),
+                        createIndex(Constants.CONTINENT_CRONDATE_INDEX, "continent", "cronDate", allAttributes())));
+
+        tables.add(createTable("spotlist" + suffix, "id", null));
+
+        return tables;
+    }
+
+    private static CreateTableRequest createTable(String tableName, String hashKey, String rangeKey){
+
+        return new CreateTableRequest()
+                .withTableName(tableName)
+                .withKeySchema(createKeySchema(hashKey, rangeKey))
+                .withProvisionedThroughput(new ProvisionedThroughput(1L, 1L));
+    }
+
+    private static GlobalSecondaryIndex createIndex(String indexName, String hashKey, String rangeKey, Projection projection){
+
+        return new GlobalSecondaryIndex()
+                .withIndexName(indexName)
+                .withKeySchema(createKeySchema(hashKey, rangeKey))
+                .withProjection(projection)
+                .withProvisionedThroughput(new ProvisionedThroughput(1L, 1L));
+    }
+
+    private static List<KeySchemaElement> createKeySchema(String hashKey, String rangeKey){
+
+        List<KeySchemaElement> keySchema = new ArrayList<>(Arrays.asList(new KeySchemaElement(hashKey, KeyType.HASH)));
+        if(rangeKey != null){
+            keySchema.add(new KeySchemaElement(rangeKey, KeyType.RANGE));
+        }
+        return keySchema;
+    }
+
+    private static Projection allAttributes(){
+
+        return new Projection().withProjectionType(ProjectionType.ALL);
+    }
+}
@@ -0,0 +1,54 @@
+package com.juvodu.database.model;
+
+/**
+ * Model representing the outcome of a single BatchWriteItem request of a batch save or delete
+ *
+ * @author Juvodu
+ */
+public class BatchWriteResult {
+
+    /** position of the batch within the batch operation, starting at 0 */
+    private final int batch;
+
+    /** number of items sent with the batch */
+    private final int items;
+
+    /** number of items still unprocessed after all retries or rejected with an exception */
+    private final int failedItems;
+
+    /** error of the batch request if it failed, null if the items were processed or throttled */
+    private final Exception exception;
+
+    public BatchWriteResult(int batch, int items, int failedItems, Exception exception){
+        this.batch = batch;
+        this.items = items;
+        this.failedItems = failedItems;
+        this.exception = exception;
+    }
+
+    public int getBatch() {
+        return batch;
+    }
+
+    public int getItems() {
+        return items;
+    }
+
+    public int getFailedItems() {
+        return failedItems;
+    }
+
+    public Exception getException() {
+        return exception;
+    }
+
+    public boolean isSuccessful() {
+        return failedItems == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "batch=" + batch + ", items=" + items + ", failedItems=" + failedItems
+                + (exception != null ? ", exception=" + exception.getMessage() : "");
+    }
+}
@@ -0,0 +1,71 @@
+package com.juvodu.database.model;
+
+/**
+ * Model wrapping a latitude/longitude rectangle, a bounding box never crosses the antimeridian
+ *
+ * @author Juvodu
+ */
+public class BoundingBox {
+
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double maxLatitude;
+    private final double maxLongitude;
+
+    public BoundingBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude){
+        this.minLatitude = minLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLatitude = maxLatitude;
+        this.maxLongitude = maxLongitude;
+    }
+
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    /**
+     * @return the position in the middle of the box
+     */
+    public Position getCenter(){
+
+        return new Position((minLatitude + maxLatitude) / 2, (minLongitude + maxLongitude) / 2);
+    }
+
+    /**
+     * Check if the position lies within the box, edges included
+     *
+     * @param position
+     *          to check
+     * @return true if the position is inside
+     */
+    public boolean contains(Position position){
+
+        return position.getLatitude() >= minLatitude && position.getLatitude() <= maxLatitude
+                && position.getLongitude() >= minLongitude && position.getLongitude() <= maxLongitude;
+    }
+
+    /**
+     * Check if two boxes overlap, touching edges count as overlap
+     *
+     * @param other
+     *          the box to check against
+     * @return true if both boxes share at least one point
+     */
+    public boolean intersects(BoundingBox other){
+
+        return minLatitude <= other.maxLatitude && maxLatitude >= other.minLatitude
+                && minLongitude <= other.maxLongitude && maxLongitude >= other.minLongitude;
+    }
+}
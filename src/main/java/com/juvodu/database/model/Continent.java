@@ -1,25 +1,44 @@
 package com.juvodu.database.model;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Enum defining possible continent values
  *
+ * The regions of a continent are generous bounding boxes covering all countries and overseas territories
+ * which are assigned to the continent by the CountryService, spots are partitioned by country and not by coordinates.
+ *
  * @author Juvodu
  */
 public enum Continent {
 
-    AF("Africa", "AF"),
-    NA("North America", "NA"),
-    OC("Oceania", "OC"),
-    AS("Asia", "AS"),
-    EU("Europe", "EU"),
-    SA("South America", "SA");
+    AF("Africa", "AF",
+            new BoundingBox(-47, -26, 38, 64)),
+    NA("North America", "NA",
+            new BoundingBox(5, -180, 84, -10),
+            new BoundingBox(50, 172, 56, 180)), // western aleutians
+    OC("Oceania", "OC",
+            new BoundingBox(-56, 110, 29, 180),
+            new BoundingBox(-56, -180, 29, -124),
+            new BoundingBox(-56, 72, -45, 75)), // heard island
+    AS("Asia", "AS",
+            new BoundingBox(-13, 25, 56, 155)),
+    EU("Europe", "EU",
+            new BoundingBox(27, -32, 82, 180),
+            new BoundingBox(60, -180, 72, -168)), // chukotka
+    SA("South America", "SA",
+            new BoundingBox(-60, -110, 16, -26));
 
     private final String name;
     private final String code;
+    private final List<BoundingBox> regions;
 
-    Continent(String name, String code){
+    Continent(String name, String code, BoundingBox... regions){
         this.name = name;
         this.code = code;
+        this.regions = Collections.unmodifiableList(Arrays.asList(regions));
     }
 
     public String getName() {
@@ -29,4 +48,27 @@ public enum Continent {
     public String getCode() {
         return code;
     }
-}
\ No newline at end of file
+
+    public List<BoundingBox> getRegions() {
+        return regions;
+    }
+
+    /**
+     * Check if any of the boxes overlaps with a region of the continent
+     *
+     * @param boxes
+     *          the boxes to check
+     * @return true if at least one box intersects the continent
+     */
+    public boolean intersects(List<BoundingBox> boxes){
+
+        for(BoundingBox box : boxes){
+            for(BoundingBox region : regions){
+                if(region.intersects(box)){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,13 @@
+package com.juvodu.database.model;
+
+/**
+ * Outcome of a conditional write which only creates records
+ *
+ * @author Juvodu
+ */
+public enum CreateResult {
+    // the record did not exist and has been written
+    CREATED,
+    // a record with the same key exists, nothing has been written
+    ALREADY_EXISTS;
+}
@@ -0,0 +1,52 @@
+package com.juvodu.database.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Model representing the result of a faceted spot search, the first spots matching all filters
+ * together with the number of matching spots per facet value
+ *
+ * @author Juvodu
+ */
+public class FacetResult {
+
+    /** number of spots matching all filters */
+    private int total;
+
+    /** matching spots ordered by name, at most the requested limit */
+    private List<BaseSpot> spots;
+
+    /** spots per value of each facet, counted with the filters of all other facets */
+    private Map<String, Map<String, Integer>> facets;
+
+    public FacetResult(int total, List<BaseSpot> spots, Map<String, Map<String, Integer>> facets){
+        this.total = total;
+        this.spots = spots;
+        this.facets = facets;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public List<BaseSpot> getSpots() {
+        return spots;
+    }
+
+    public void setSpots(List<BaseSpot> spots) {
+        this.spots = spots;
+    }
+
+    public Map<String, Map<String, Integer>> getFacets() {
+        return facets;
+    }
+
+    public void setFacets(Map<String, Map<String, Integer>> facets) {
+        this.facets = facets;
+    }
+}
@@ -0,0 +1,40 @@
+package com.juvodu.database.model;
+
+/**
+ * Model representing a continuous range of geokeys, covers one or more adjacent geohash cells
+ *
+ * @author Juvodu
+ */
+public class GeoKeyRange {
+
+    private final String firstKey;
+    private final String lastKey;
+    private final int cellCount;
+
+    public GeoKeyRange(String firstKey, String lastKey, int cellCount){
+        this.firstKey = firstKey;
+        this.lastKey = lastKey;
+        this.cellCount = cellCount;
+    }
+
+    /**
+     * @return first geokey of the range, inclusive
+     */
+    public String getFirstKey() {
+        return firstKey;
+    }
+
+    /**
+     * @return last geokey of the range, inclusive
+     */
+    public String getLastKey() {
+        return lastKey;
+    }
+
+    /**
+     * @return number of geohash cells merged into the range
+     */
+    public int getCellCount() {
+        return cellCount;
+    }
+}
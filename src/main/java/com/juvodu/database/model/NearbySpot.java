@@ -0,0 +1,83 @@
+package com.juvodu.database.model;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBDocument;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTypeConverted;
+import com.juvodu.database.converter.PositionTypeConverter;
+
+/**
+ * Model representing a spot close to another spot, stored as part of the spot item so the
+ * detail view can list nearby spots without a radius search
+ *
+ * @author Juvodu
+ */
+@DynamoDBDocument
+public class NearbySpot {
+
+    @DynamoDBAttribute
+    private String id;
+
+    @DynamoDBAttribute
+    private String name;
+
+    @DynamoDBAttribute
+    private String thumbnail;
+
+    @DynamoDBTypeConverted(converter = PositionTypeConverter.class)
+    @DynamoDBAttribute
+    private Position position;
+
+    /** distance in meter to the spot holding this entry */
+    @DynamoDBAttribute
+    private int distance;
+
+    public NearbySpot(){}
+
+    public NearbySpot(BaseSpot spot, int distance){
+        this.id = spot.getId();
+        this.name = spot.getName();
+        this.thumbnail = spot.getThumbnail();
+        this.position = spot.getPosition();
+        this.distance = distance;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getThumbnail() {
+        return thumbnail;
+    }
+
+    public void setThumbnail(String thumbnail) {
+        this.thumbnail = thumbnail;
+    }
+
+    public Position getPosition() {
+        return position;
+    }
+
+    public void setPosition(Position position) {
+        this.position = position;
+    }
+
+    public int getDistance() {
+        return distance;
+    }
+
+    public void setDistance(int distance) {
+        this.distance = distance;
+    }
+}
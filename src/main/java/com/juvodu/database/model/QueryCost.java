@@ -0,0 +1,65 @@
+package com.juvodu.database.model;
+
+/**
+ * Model collecting the cost of a search, used to watch the read amplification of spatial queries.
+ * Queries of a search may run in parallel, all counters are updated atomically.
+ *
+ * @author Juvodu
+ */
+public class QueryCost {
+
+    private int queries;
+    private int itemsRead;
+    private int itemsReturned;
+
+    /**
+     * Record an executed query
+     *
+     * @param itemsRead
+     *          number of items read by the query before any filtering
+     */
+    public synchronized void addQuery(int itemsRead){
+        this.queries++;
+        this.itemsRead += itemsRead;
+    }
+
+    public synchronized void addItemsReturned(int itemsReturned){
+        this.itemsReturned += itemsReturned;
+    }
+
+    /**
+     * Add the counters of another search, e.g. of another partition
+     *
+     * @param cost
+     *          the cost to add
+     */
+    public synchronized void add(QueryCost cost){
+        this.queries += cost.getQueries();
+        this.itemsRead += cost.getItemsRead();
+        this.itemsReturned += cost.getItemsReturned();
+    }
+
+    public synchronized int getQueries() {
+        return queries;
+    }
+
+    public synchronized int getItemsRead() {
+        return itemsRead;
+    }
+
+    public synchronized int getItemsReturned() {
+        return itemsReturned;
+    }
+
+    /**
+     * @return items read per returned item, 0 if nothing was returned
+     */
+    public synchronized double getReadAmplification() {
+        return itemsReturned == 0 ? 0 : (double) itemsRead / itemsReturned;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "queries=" + queries + ", itemsRead=" + itemsRead + ", itemsReturned=" + itemsReturned;
+    }
+}
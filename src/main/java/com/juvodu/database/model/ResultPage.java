@@ -0,0 +1,29 @@
+package com.juvodu.database.model;
+
+import java.util.List;
+
+/**
+ * Model representing one page of a paginated query result
+ *
+ * @author Juvodu
+ */
+public class ResultPage<T> {
+
+    private final List<T> results;
+
+    /** opaque token of the next page, null if this is the last page */
+    private final String nextPageToken;
+
+    public ResultPage(List<T> results, String nextPageToken){
+        this.results = results;
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<T> getResults() {
+        return results;
+    }
+
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+}
@@ -5,11 +5,13 @@ import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIgnore;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTypeConverted;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.juvodu.database.converter.CompressedStringTypeConverter;
 import com.juvodu.database.converter.ContinentTypeConverter;
 import com.juvodu.database.converter.DateTypeConverter;
 import com.juvodu.forecast.model.Forecast;
 
 import java.util.Date;
+import java.util.List;
 
 /**
  * Model representing the complete Spot table
@@ -19,7 +21,8 @@ import java.util.Date;
 @DynamoDBTable(tableName = "spot")
 public class Spot extends BaseSpot{
 
-    @DynamoDBAttribute
+    @DynamoDBAttribute // largest attribute of the item, stored compressed
+    @DynamoDBTypeConverted(converter = CompressedStringTypeConverter.class)
     private String description;
 
     @DynamoDBAttribute
@@ -33,6 +36,14 @@ public class Spot extends BaseSpot{
     @DynamoDBAttribute
     private String geohash;
 
+    @JsonIgnore // compact geohash key for range queries, internal use only
+    @DynamoDBAttribute
+    private String geokey;
+
+    @JsonIgnore // hilbert curve key for range queries, internal use only
+    @DynamoDBAttribute
+    private String hilbertkey;
+
     @DynamoDBAttribute
     private String walk;
 
@@ -88,6 +99,9 @@ public class Spot extends BaseSpot{
     @DynamoDBTypeConverted(converter = DateTypeConverter.class)
     private Date cronDate;
 
+    @DynamoDBAttribute // closest spots with distance, maintained by the SpotService on save and delete
+    private List<NearbySpot> nearbySpots;
+
     @DynamoDBIgnore // weather information will be requested on demand
     private Forecast forecast;
 
@@ -120,6 +134,22 @@ public class Spot extends BaseSpot{
         this.geohash = geohash;
     }
 
+    public String getGeokey() {
+        return geokey;
+    }
+
+    public void setGeokey(String geokey) {
+        this.geokey = geokey;
+    }
+
+    public String getHilbertkey() {
+        return hilbertkey;
+    }
+
+    public void setHilbertkey(String hilbertkey) {
+        this.hilbertkey = hilbertkey;
+    }
+
     public String getImage() {
         return image;
     }
@@ -264,6 +294,14 @@ public class Spot extends BaseSpot{
         this.weekCrowd = weekCrowd;
     }
 
+    public List<NearbySpot> getNearbySpots() {
+        return nearbySpots;
+    }
+
+    public void setNearbySpots(List<NearbySpot> nearbySpots) {
+        this.nearbySpots = nearbySpots;
+    }
+
     public Forecast getForecast() {
         return forecast;
     }
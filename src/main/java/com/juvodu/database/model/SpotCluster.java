@@ -0,0 +1,49 @@
+package com.juvodu.database.model;
+
+/**
+ * Model representing a cluster of spots sharing the same geohash prefix, used by map views
+ * which show too many spots to render single pins
+ *
+ * @author Juvodu
+ */
+public class SpotCluster {
+
+    /** binary geohash prefix shared by all spots of the cluster */
+    private String geohash;
+
+    /** number of spots in the cluster */
+    private int count;
+
+    /** mean position of all spots in the cluster */
+    private Position centroid;
+
+    public SpotCluster(String geohash, int count, Position centroid){
+        this.geohash = geohash;
+        this.count = count;
+        this.centroid = centroid;
+    }
+
+    public String getGeohash() {
+        return geohash;
+    }
+
+    public void setGeohash(String geohash) {
+        this.geohash = geohash;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public Position getCentroid() {
+        return centroid;
+    }
+
+    public void setCentroid(Position centroid) {
+        this.centroid = centroid;
+    }
+}
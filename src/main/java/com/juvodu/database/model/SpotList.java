@@ -0,0 +1,124 @@
+package com.juvodu.database.model;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBVersionAttribute;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Model representing the spotlist table, a materialised list view of the spots of a continent or country. The spots
+ * are stored as the serialised JSON array returned to the client, a page is a slice of the array.
+ *
+ * @author Juvodu
+ */
+@DynamoDBTable(tableName = "spotlist")
+public class SpotList {
+
+    /** continent code, followed by "#" and the country code for country lists */
+    @DynamoDBHashKey
+    private String id;
+
+    /** UTF-8 JSON array of the spots, gzip compressed if compressed is set */
+    @DynamoDBAttribute
+    private ByteBuffer spots;
+
+    @DynamoDBAttribute
+    private boolean compressed;
+
+    /** start of each element in the uncompressed array as 4 byte integers, followed by the length of the array */
+    @DynamoDBAttribute
+    private ByteBuffer offsets;
+
+    @DynamoDBAttribute
+    private int count;
+
+    /** set if the list exceeds the max item size, such lists are queried from the spot table */
+    @DynamoDBAttribute
+    private boolean oversized;
+
+    /** set on lists built on their first read, the index might not have returned the spots written just before */
+    @DynamoDBAttribute
+    private boolean provisional;
+
+    /** time of the last build or patch in milliseconds since the epoch */
+    @DynamoDBAttribute
+    private long updated;
+
+    /** concurrent updates of a list fail instead of overwriting each other */
+    @DynamoDBVersionAttribute
+    private Long version;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public ByteBuffer getSpots() {
+        return spots;
+    }
+
+    public void setSpots(ByteBuffer spots) {
+        this.spots = spots;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    public ByteBuffer getOffsets() {
+        return offsets;
+    }
+
+    public void setOffsets(ByteBuffer offsets) {
+        this.offsets = offsets;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public boolean isOversized() {
+        return oversized;
+    }
+
+    public void setOversized(boolean oversized) {
+        this.oversized = oversized;
+    }
+
+    public boolean isProvisional() {
+        return provisional;
+    }
+
+    public void setProvisional(boolean provisional) {
+        this.provisional = provisional;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(long updated) {
+        this.updated = updated;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
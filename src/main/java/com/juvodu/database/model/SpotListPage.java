@@ -0,0 +1,28 @@
+package com.juvodu.database.model;
+
+/**
+ * Model representing one page of a materialised spot list, the spots are already serialised
+ *
+ * @author Juvodu
+ */
+public class SpotListPage {
+
+    /** JSON array of the spots of the page */
+    private final String json;
+
+    /** opaque token of the next page, null if this is the last page */
+    private final String nextPageToken;
+
+    public SpotListPage(String json, String nextPageToken){
+        this.json = json;
+        this.nextPageToken = nextPageToken;
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+}
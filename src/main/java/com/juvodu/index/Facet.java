@@ -0,0 +1,64 @@
+package com.juvodu.index;
+
+import com.juvodu.database.model.Spot;
+
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Enum defining the categorical spot attributes which can be filtered and counted by the FacetIndex
+ *
+ * @author Juvodu
+ */
+public enum Facet {
+
+    TYPE("type", Spot::getType),
+    BOTTOM("bottom", Spot::getBottom),
+    POWER("power", Spot::getPower),
+    EXPERIENCE("experience", Spot::getExperience),
+    WAVE_QUALITY("waveQuality", Spot::getWaveQuality),
+    DIRECTION("direction", Spot::getDirection),
+    COUNTRY("country", spot -> spot.getCountry() != null ? spot.getCountry().getCode() : null);
+
+    private final String parameter;
+    private final Function<Spot, String> attribute;
+
+    Facet(String parameter, Function<Spot, String> attribute){
+        this.parameter = parameter;
+        this.attribute = attribute;
+    }
+
+    /**
+     * @return name of the facet in requests and responses
+     */
+    public String getParameter() {
+        return parameter;
+    }
+
+    /**
+     * Get the normalized facet value of a spot
+     *
+     * @param spot
+     *          the spot
+     * @return the trimmed lower case attribute value or null if the spot has no value
+     */
+    public String getValue(Spot spot){
+
+        return normalize(attribute.apply(spot));
+    }
+
+    /**
+     * Normalize a facet value, values are compared case insensitive
+     *
+     * @param value
+     *          the value as stored or requested
+     * @return the trimmed lower case value or null for a blank value
+     */
+    public static String normalize(String value){
+
+        if(value == null || value.trim().isEmpty()){
+            return null;
+        }
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
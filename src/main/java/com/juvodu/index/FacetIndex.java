@@ -0,0 +1,129 @@
+package com.juvodu.index;
+
+import com.juvodu.database.model.BaseSpot;
+import com.juvodu.database.model.FacetResult;
+import com.juvodu.database.model.Spot;
+
+import java.util.*;
+
+/**
+ * Immutable in-memory bitmap index over the categorical attributes of spots. Spots are numbered in name
+ * order and every value of a facet holds a bitmap of the spots with this value. Values of the same facet
+ * are combined with OR, filters of different facets with AND, so a search is a few word-wise bitmap
+ * operations and matching spots come out in name order.
+ *
+ * @author Juvodu
+ */
+public class FacetIndex {
+
+    private final Spot[] spots;
+    private final BitSet all;
+
+    /** bitmap of the spots per facet and normalized value, values in alphabetical order */
+    private final Map<Facet, SortedMap<String, BitSet>> bitmaps = new EnumMap<>(Facet.class);
+
+    /**
+     * Ctor, builds the bitmaps
+     *
+     * @param spots
+     *              the spots to index
+     */
+    public FacetIndex(Collection<? extends Spot> spots){
+
+        this.spots = spots.toArray(new Spot[spots.size()]);
+        Arrays.sort(this.spots, Comparator.comparing(Spot::getName, Comparator.nullsLast(String::compareTo)));
+        this.all = new BitSet(this.spots.length);
+        all.set(0, this.spots.length);
+
+        for(Facet facet : Facet.values()){
+            SortedMap<String, BitSet> values = new TreeMap<>();
+            for(int i = 0; i < this.spots.length; i++){
+                String value = facet.getValue(this.spots[i]);
+                if(value != null){
+                    values.computeIfAbsent(value, key -> new BitSet(this.spots.length)).set(i);
+                }
+            }
+            bitmaps.put(facet, values);
+        }
+    }
+
+    /**
+     * Find spots matching all filters and count the spots per facet value
+     *
+     * @param filters
+     *          accepted values per facet, a spot matches if it has one of the values of every filtered facet
+     * @param limit
+     *          the max size of the returned spot list
+     *
+     * @return copies of the first matching spots in name order, the total and the facet counts. The counts
+     *          of a facet apply the filters of all other facets, so they tell how many spots a selection yields.
+     */
+    public FacetResult find(Map<Facet, ? extends Collection<String>> filters, int limit){
+
+        // union of the accepted values per filtered facet
+        Map<Facet, BitSet> selections = new EnumMap<>(Facet.class);
+        for(Map.Entry<Facet, ? extends Collection<String>> filter : filters.entrySet()){
+            BitSet selection = new BitSet(spots.length);
+            for(String value : filter.getValue()){
+                BitSet bitmap = bitmaps.get(filter.getKey()).get(Facet.normalize(value));
+                if(bitmap != null){
+                    selection.or(bitmap);
+                }
+            }
+            selections.put(filter.getKey(), selection);
+        }
+
+        BitSet matches = intersect(selections, null);
+        List<BaseSpot> result = new ArrayList<>();
+        for(int i = matches.nextSetBit(0); i >= 0 && result.size() < limit; i = matches.nextSetBit(i + 1)){
+            result.add(SpatialIndex.copy(spots[i]));
+        }
+
+        Map<String, Map<String, Integer>> facetCounts = new LinkedHashMap<>();
+        for(Facet facet : Facet.values()){
+
+            // filters of the other facets only, selecting another value of this facet widens the result
+            BitSet base = selections.containsKey(facet) ? intersect(selections, facet) : matches;
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for(Map.Entry<String, BitSet> value : bitmaps.get(facet).entrySet()){
+                BitSet bitmap = (BitSet) value.getValue().clone();
+                bitmap.and(base);
+                int count = bitmap.cardinality();
+                if(count > 0){
+                    counts.put(value.getKey(), count);
+                }
+            }
+            facetCounts.put(facet.getParameter(), counts);
+        }
+
+        return new FacetResult(matches.cardinality(), result, facetCounts);
+    }
+
+    /**
+     * @return number of indexed spots
+     */
+    public int size(){
+
+        return spots.length;
+    }
+
+    /**
+     * Intersect the selections of all facets except one
+     *
+     * @param selections
+     *          the selected spots per facet
+     * @param excluded
+     *          the facet to skip, null to intersect all
+     * @return bitmap of the spots in all selections, all spots if there is none
+     */
+    private BitSet intersect(Map<Facet, BitSet> selections, Facet excluded){
+
+        BitSet result = (BitSet) all.clone();
+        for(Map.Entry<Facet, BitSet> selection : selections.entrySet()){
+            if(selection.getKey() != excluded){
+                result.and(selection.getValue());
+            }
+        }
+        return result;
+    }
+}
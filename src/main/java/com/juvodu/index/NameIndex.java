@@ -0,0 +1,263 @@
+package com.juvodu.index;
+
+import com.juvodu.database.model.BaseSpot;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable in-memory index of spot names. Names are normalized to lower case letters and digits, the index
+ * holds a sorted array of all name words for prefix lookups while typing and trigram postings for misspelled
+ * or partial names. Results are ranked by exact match, name prefix, word prefix and trigram similarity.
+ *
+ * @author Juvodu
+ */
+public class NameIndex {
+
+    /** a trigram candidate needs at least this share of the trigrams of the query */
+    private static final double MIN_TRIGRAM_SIMILARITY = 0.5;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final BaseSpot[] spots;
+    private final String[] names;
+    private final String[][] nameWords;
+
+    /** all words of all names in lexicographic order, wordSpots holds the spot of each word */
+    private final String[] words;
+    private final int[] wordSpots;
+
+    /** spots containing a trigram in ascending order, trigramCounts holds the distinct trigrams of each name */
+    private final Map<String, int[]> trigramPostings;
+    private final int[] trigramCounts;
+
+    /**
+     * Ctor, builds the index - spots without a name are not indexed
+     *
+     * @param spotSummaries
+     *              the spots to index
+     */
+    public NameIndex(Collection<? extends BaseSpot> spotSummaries){
+
+        List<BaseSpot> named = new ArrayList<>(spotSummaries.size());
+        List<String> normalized = new ArrayList<>(spotSummaries.size());
+        for(BaseSpot spot : spotSummaries){
+            String name = spot.getName() != null ? normalize(spot.getName()) : "";
+            if(!name.isEmpty()){
+                named.add(spot);
+                normalized.add(name);
+            }
+        }
+
+        int size = named.size();
+        this.spots = named.toArray(new BaseSpot[size]);
+        this.names = normalized.toArray(new String[size]);
+        this.nameWords = new String[size][];
+        this.trigramCounts = new int[size];
+
+        int wordCount = 0;
+        Map<String, int[]> postings = new HashMap<>();
+        for(int i = 0; i < size; i++){
+            nameWords[i] = names[i].split(" ");
+            wordCount += nameWords[i].length;
+            Set<String> trigrams = getTrigrams(names[i]);
+            trigramCounts[i] = trigrams.size();
+            for(String trigram : trigrams){
+                // growable posting, the first element holds the number of spots
+                int[] posting = postings.get(trigram);
+                if(posting == null){
+                    posting = new int[4];
+                }else if(posting[0] + 1 == posting.length){
+                    posting = Arrays.copyOf(posting, posting.length * 2);
+                }
+                posting[++posting[0]] = i;
+                postings.put(trigram, posting);
+            }
+        }
+
+        // words are sorted by an index permutation, wordSpots follows the same order
+        String[] unsortedWords = new String[wordCount];
+        int[] unsortedSpots = new int[wordCount];
+        for(int i = 0, w = 0; i < size; i++){
+            for(String word : nameWords[i]){
+                unsortedWords[w] = word;
+                unsortedSpots[w++] = i;
+            }
+        }
+        Integer[] order = new Integer[wordCount];
+        for(int i = 0; i < wordCount; i++){
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing((Integer w) -> unsortedWords[w]));
+        this.words = new String[wordCount];
+        this.wordSpots = new int[wordCount];
+        for(int i = 0; i < wordCount; i++){
+            words[i] = unsortedWords[order[i]];
+            wordSpots[i] = unsortedSpots[order[i]];
+        }
+
+        // postings are trimmed to their size, spots were added in ascending order
+        this.trigramPostings = new HashMap<>(postings.size() * 2);
+        for(Map.Entry<String, int[]> entry : postings.entrySet()){
+            int[] posting = entry.getValue();
+            trigramPostings.put(entry.getKey(), Arrays.copyOfRange(posting, 1, posting[0] + 1));
+        }
+    }
+
+    /**
+     * Find spots by name
+     *
+     * @param query
+     *          the name or the beginning of a name as typed by the user
+     * @param limit
+     *          the max size of the returned result list
+     *
+     * @return copies of the best matching spots ranked by relevance
+     */
+    public List<BaseSpot> findByName(String query, int limit){
+
+        String normalizedQuery = normalize(query);
+        if(normalizedQuery.isEmpty() || limit <= 0){
+            return new ArrayList<>();
+        }
+
+        // count shared trigrams per spot, touched lists the spots with a count
+        Set<String> queryTrigrams = getTrigrams(normalizedQuery);
+        int[] sharedTrigrams = new int[spots.length];
+        int[] touched = new int[spots.length];
+        int touchedCount = 0;
+        for(String trigram : queryTrigrams){
+            int[] posting = trigramPostings.get(trigram);
+            if(posting != null){
+                for(int spot : posting){
+                    if(sharedTrigrams[spot]++ == 0){
+                        touched[touchedCount++] = spot;
+                    }
+                }
+            }
+        }
+
+        // spots with a word starting with the first query word are candidates as well, e.g. while the user types
+        String[] queryWords = normalizedQuery.split(" ");
+        boolean[] prefixed = new boolean[spots.length];
+        int first = Arrays.binarySearch(words, queryWords[0]);
+        for(int i = first < 0 ? -first - 1 : first; i < words.length && words[i].startsWith(queryWords[0]); i++){
+            int spot = wordSpots[i];
+            if(!prefixed[spot]){
+                prefixed[spot] = true;
+                if(sharedTrigrams[spot] == 0){
+                    touched[touchedCount++] = spot;
+                }
+            }
+        }
+
+        // best score first, shorter and then alphabetically lower names first on equal scores
+        double[] scores = new double[spots.length];
+        Comparator<Integer> ranking = Comparator.comparingDouble((Integer spot) -> -scores[spot])
+                .thenComparingInt(spot -> names[spot].length())
+                .thenComparing(spot -> names[spot]);
+
+        // keep the best candidates in a heap of limit entries with the worst one on top
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit, ranking.reversed());
+        double minSharedTrigrams = MIN_TRIGRAM_SIMILARITY * queryTrigrams.size();
+        for(int i = 0; i < touchedCount; i++){
+            int spot = touched[i];
+            if(prefixed[spot] || sharedTrigrams[spot] >= minSharedTrigrams){
+                double similarity = (double) sharedTrigrams[spot] / Math.max(queryTrigrams.size(), trigramCounts[spot]);
+                scores[spot] = getMatchRank(names[spot], nameWords[spot], normalizedQuery, queryWords) + similarity;
+                if(best.size() < limit){
+                    best.add(spot);
+                }else if(ranking.compare(spot, best.peek()) < 0){
+                    best.poll();
+                    best.add(spot);
+                }
+            }
+        }
+
+        List<Integer> ranked = new ArrayList<>(best);
+        ranked.sort(ranking);
+        List<BaseSpot> result = new ArrayList<>(ranked.size());
+        for(int spot : ranked){
+            result.add(SpatialIndex.copy(spots[spot]));
+        }
+        return result;
+    }
+
+    /**
+     * @return number of indexed spots
+     */
+    public int size(){
+
+        return spots.length;
+    }
+
+    /**
+     * Rank the kind of match between a name and the query
+     *
+     * @param name
+     *          the normalized name
+     * @param nameWords
+     *          the words of the name
+     * @param query
+     *          the normalized query
+     * @param queryWords
+     *          the words of the query
+     * @return 3 for equal names, 2 if the name starts with the query, 1 if every query word starts a word
+     *          of the name, 0 otherwise
+     */
+    private static int getMatchRank(String name, String[] nameWords, String query, String[] queryWords){
+
+        if(name.equals(query)){
+            return 3;
+        }
+        if(name.startsWith(query)){
+            return 2;
+        }
+
+        for(String queryWord : queryWords){
+            boolean found = false;
+            for(String nameWord : nameWords){
+                if(nameWord.startsWith(queryWord)){
+                    found = true;
+                    break;
+                }
+            }
+            if(!found){
+                return 0;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Normalize a name, accents are removed and all characters except letters and digits separate words
+     *
+     * @param name
+     *          the name to normalize
+     * @return lower case words separated by a single space
+     */
+    static String normalize(String name){
+
+        String decomposed = MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(decomposed.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /**
+     * Get the distinct trigrams of a normalized name, words are padded so short words and word starts count
+     *
+     * @param name
+     *          the normalized name
+     * @return set of trigrams
+     */
+    private static Set<String> getTrigrams(String name){
+
+        String padded = "  " + name + " ";
+        Set<String> trigrams = new HashSet<>();
+        for(int i = 0; i + 3 <= padded.length(); i++){
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+}
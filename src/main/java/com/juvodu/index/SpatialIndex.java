@@ -0,0 +1,185 @@
+package com.juvodu.index;
+
+import com.juvodu.database.model.BaseSpot;
+import com.juvodu.database.model.Position;
+import com.juvodu.util.GeoHelper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable in-memory spatial index of spot summaries. Spots are bucketed into a fixed grid of
+ * one degree cells, coordinates are kept in primitive arrays ordered by cell so a radius query
+ * only touches the cells overlapping the bounding box of the search circle.
+ *
+ * @author Juvodu
+ */
+public class SpatialIndex {
+
+    /** size of a grid cell in degree */
+    private static final double CELL_DEGREES = 1.0;
+    private static final int ROWS = (int) (180 / CELL_DEGREES);
+    private static final int COLUMNS = (int) (360 / CELL_DEGREES);
+
+    private final BaseSpot[] spots;
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    /** offsets into the spot arrays, spots of cell i are stored in [cellStart[i], cellStart[i + 1]) */
+    private final int[] cellStart;
+    private final int maxCellSize;
+
+    /**
+     * Ctor, builds the grid - spots without a position are not indexed
+     *
+     * @param spotSummaries
+     *              the spots to index
+     */
+    public SpatialIndex(Collection<? extends BaseSpot> spotSummaries){
+
+        List<BaseSpot> positioned = new ArrayList<>(spotSummaries.size());
+        for(BaseSpot spot : spotSummaries){
+            if(spot.getPosition() != null){
+                positioned.add(spot);
+            }
+        }
+
+        int size = positioned.size();
+        this.spots = new BaseSpot[size];
+        this.latitudes = new double[size];
+        this.longitudes = new double[size];
+        this.cellStart = new int[ROWS * COLUMNS + 1];
+
+        // counting sort of the spots by cell
+        int[] cells = new int[size];
+        for(int i = 0; i < size; i++){
+            Position position = positioned.get(i).getPosition();
+            cells[i] = cell(row(position.getLatitude()), column(position.getLongitude()));
+            cellStart[cells[i] + 1]++;
+        }
+        int largestCell = 0;
+        for(int i = 1; i < cellStart.length; i++){
+            largestCell = Math.max(largestCell, cellStart[i]);
+            cellStart[i] += cellStart[i - 1];
+        }
+        this.maxCellSize = largestCell;
+        int[] next = new int[ROWS * COLUMNS];
+        System.arraycopy(cellStart, 0, next, 0, next.length);
+        for(int i = 0; i < size; i++){
+            int slot = next[cells[i]]++;
+            BaseSpot spot = positioned.get(i);
+            spots[slot] = spot;
+            latitudes[slot] = spot.getPosition().getLatitude();
+            longitudes[slot] = spot.getPosition().getLongitude();
+        }
+    }
+
+    /**
+     * Find all indexed spots in a given radius
+     *
+     * @param position
+     *          which is the center of the radius
+     * @param searchRadius
+     *          search radius in km
+     * @param limit
+     *          the max size of the returned result list
+     *
+     * @return copies of the closest spots within the specified radius sorted by distance
+     */
+    public List<BaseSpot> findByDistance(Position position, int searchRadius, int limit){
+
+        double latitude = position.getLatitude();
+        double longitude = position.getLongitude();
+        double angularRadius = searchRadius * 1000 / GeoHelper.EARTH_RADIUS;
+        double deltaLat = Math.toDegrees(angularRadius);
+
+        int minRow = row(latitude - deltaLat);
+        int maxRow = row(latitude + deltaLat);
+
+        // longitude span widens towards the poles, search all columns if the circle covers a pole
+        int firstColumn = 0;
+        int columnCount = COLUMNS;
+        if(latitude + deltaLat < 90 && latitude - deltaLat > -90) {
+            double sinDeltaLon = Math.sin(angularRadius) / Math.cos(Math.toRadians(latitude));
+            if(sinDeltaLon < 1) {
+                double deltaLon = Math.toDegrees(Math.asin(sinDeltaLon));
+                firstColumn = (int) Math.floor((longitude - deltaLon + 180) / CELL_DEGREES);
+                int lastColumn = (int) Math.floor((longitude + deltaLon + 180) / CELL_DEGREES);
+                columnCount = Math.min(COLUMNS, lastColumn - firstColumn + 1);
+            }
+        }
+
+        // distances are truncated to km, every spot below searchRadius + 1 km matches
+        int maxDistance = searchRadius * 1000 + 999;
+        int[] indexes = new int[maxCellSize];
+        int[] distances = new int[maxCellSize];
+
+        List<BaseSpot> result = new ArrayList<>();
+        for(int row = minRow; row <= maxRow; row++){
+            for(int c = 0; c < columnCount; c++){
+
+                // wrap around the antimeridian
+                int column = Math.floorMod(firstColumn + c, COLUMNS);
+                int cell = cell(row, column);
+                int count = GeoHelper.filterByDistance(latitude, longitude, latitudes, longitudes,
+                        cellStart[cell], cellStart[cell + 1], maxDistance, indexes, distances);
+                for(int i = 0; i < count; i++){
+                    BaseSpot summary = copy(spots[indexes[i]]);
+                    summary.setDistance(distances[i] / 1000);
+                    result.add(summary);
+                }
+            }
+        }
+
+        result.sort(Comparator.comparing(BaseSpot::getDistance));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * @return number of indexed spots
+     */
+    public int size(){
+
+        return spots.length;
+    }
+
+    private static int row(double latitude){
+
+        return Math.max(0, Math.min(ROWS - 1, (int) Math.floor((latitude + 90) / CELL_DEGREES)));
+    }
+
+    private static int column(double longitude){
+
+        return Math.max(0, Math.min(COLUMNS - 1, (int) Math.floor((longitude + 180) / CELL_DEGREES)));
+    }
+
+    private static int cell(int row, int column){
+
+        return row * COLUMNS + column;
+    }
+
+    /**
+     * Copy a spot summary, indexed instances are shared between requests and must not be modified
+     *
+     * @param spot
+     *          the indexed spot
+     * @return a new summary instance
+     */
+    static BaseSpot copy(BaseSpot spot){
+
+        BaseSpot summary = new BaseSpot();
+        summary.setId(spot.getId());
+        summary.setName(spot.getName());
+        summary.setShortDescription(spot.getShortDescription());
+        summary.setThumbnail(spot.getThumbnail());
+        summary.setSwellHeight(spot.getSwellHeight());
+        summary.setSwellPeriod(spot.getSwellPeriod());
+        summary.setWindspeedKmph(spot.getWindspeedKmph());
+        summary.setWinddir16Point(spot.getWinddir16Point());
+        summary.setPosition(spot.getPosition());
+        summary.setCountry(spot.getCountry());
+        return summary;
+    }
+}
@@ -0,0 +1,173 @@
+package com.juvodu.index;
+
+import com.juvodu.database.model.Continent;
+import com.juvodu.database.model.Spot;
+import com.juvodu.service.SpotService;
+import com.juvodu.util.Constants;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per container catalog of spots. The catalog is loaded once per warm container from the
+ * continent-crondate-index and reloaded when it is older than the configured refresh interval, in between
+ * spots with a newer cron date are merged in every update interval. Requests served in between do not read
+ * from DynamoDB. Deleted spots and edits which keep the cron date are picked up by the next full reload.
+ *
+ * @author Juvodu
+ */
+public class SpotCatalog {
+
+    private static SpotCatalog instance;
+
+    private final SpotService<Spot> spotService;
+    private final long refreshIntervalMillis;
+    private final long updateIntervalMillis;
+
+    private final Map<String, Spot> spotsById = new LinkedHashMap<>();
+    private volatile SpatialIndex spatialIndex;
+    private volatile NameIndex nameIndex;
+    private volatile FacetIndex facetIndex;
+    private volatile long loadedAtMillis;
+    private volatile long updatedAtMillis;
+
+    /**
+     * Ctor
+     *
+     * @param spotService
+     *              used to load the spots, detailed spots carry the facet attributes
+     * @param refreshIntervalMillis
+     *              max age of the catalog before it is reloaded
+     * @param updateIntervalMillis
+     *              max age of the catalog before updated spots are merged in
+     */
+    public SpotCatalog(SpotService<Spot> spotService, long refreshIntervalMillis, long updateIntervalMillis){
+
+        this.spotService = spotService;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.updateIntervalMillis = updateIntervalMillis;
+    }
+
+    /**
+     * Get the catalog of this container, created lazily on first access
+     *
+     * @return the shared catalog instance
+     */
+    public static synchronized SpotCatalog getInstance(){
+
+        if(instance == null){
+            instance = new SpotCatalog(new SpotService<>(Spot.class), Constants.SPOT_CATALOG_REFRESH_INTERVAL,
+                    Constants.SPOT_CATALOG_UPDATE_INTERVAL);
+        }
+        return instance;
+    }
+
+    /**
+     * Get the spatial index, loads or updates the catalog if necessary
+     *
+     * @return the current spatial index
+     */
+    public SpatialIndex getSpatialIndex(){
+
+        refreshIfOutdated();
+        return spatialIndex;
+    }
+
+    /**
+     * Get the name index, loads or updates the catalog if necessary
+     *
+     * @return the current name index
+     */
+    public NameIndex getNameIndex(){
+
+        refreshIfOutdated();
+        return nameIndex;
+    }
+
+    /**
+     * Get the facet index, loads or updates the catalog if necessary
+     *
+     * @return the current facet index
+     */
+    public FacetIndex getFacetIndex(){
+
+        refreshIfOutdated();
+        return facetIndex;
+    }
+
+    /**
+     * Reload all spots of all continents and rebuild the indexes
+     */
+    public synchronized void refresh(){
+
+        // another thread might have refreshed while waiting for the lock
+        if(!isOutdated()){
+            return;
+        }
+
+        long startMillis = System.currentTimeMillis();
+        spotsById.clear();
+        for(Continent continent : Continent.values()){
+            for(Spot spot : spotService.findAllByContinent(continent)){
+                spotsById.put(spot.getId(), spot);
+            }
+        }
+
+        buildIndexes();
+        loadedAtMillis = startMillis;
+        updatedAtMillis = startMillis;
+    }
+
+    /**
+     * Merge spots saved or updated since the last load or update into the catalog and rebuild the indexes
+     */
+    public synchronized void update(){
+
+        if(isOutdated() || !isUpdateDue()){
+            return;
+        }
+
+        long startMillis = System.currentTimeMillis();
+        long sinceMillis = updatedAtMillis - Constants.SPOT_CATALOG_UPDATE_OVERLAP;
+        boolean changed = false;
+        for(Continent continent : Continent.values()){
+            List<Spot> spots = spotService.findByContinentUpdatedSince(continent, sinceMillis);
+            for(Spot spot : spots){
+                spotsById.put(spot.getId(), spot);
+            }
+            changed |= !spots.isEmpty();
+        }
+
+        if(changed){
+            buildIndexes();
+        }
+        updatedAtMillis = startMillis;
+    }
+
+    private void refreshIfOutdated(){
+
+        if(isOutdated()){
+            refresh();
+        }else if(isUpdateDue()){
+            update();
+        }
+    }
+
+    private void buildIndexes(){
+
+        spatialIndex = new SpatialIndex(spotsById.values());
+        nameIndex = new NameIndex(spotsById.values());
+        facetIndex = new FacetIndex(spotsById.values());
+    }
+
+    private boolean isOutdated(){
+
+        return spatialIndex == null || System.currentTimeMillis() - loadedAtMillis > refreshIntervalMillis;
+    }
+
+    private boolean isUpdateDue(){
+
+        return System.currentTimeMillis() - updatedAtMillis > updateIntervalMillis;
+    }
+}
@@ -33,7 +33,6 @@ public class CreateFavoriteHandler implements RequestHandler<Map<String, Object>
 
         FavoriteService<Favorite> favoriteService = new FavoriteService<>(Favorite.class);
         SpotService<Spot> spotService = new SpotService(Spot.class);
-        UserService<User> userService = new UserService(User.class);
         NotificationService notificationService = new NotificationService();
         SubscriptionService<Subscription> subscriptionService = new SubscriptionService(Subscription.class);
         DeviceService<Device> deviceService = new DeviceService(Device.class);
@@ -48,32 +47,36 @@ public class CreateFavoriteHandler implements RequestHandler<Map<String, Object>
             String username = favorite.getUsername();
             String spotId = favorite.getSpotId();
 
-            // verify that favorite does not exist yet
-            if(favoriteService.getByCompositeKey(username, spotId) == null){
-
-                // get topic from spot and endpoint from user
-                Spot spot = spotService.getByHashKey(spotId);
-                User user = userService.getByHashKey(username);
-
-                // verify that spot id and user id exist
-                if(spot == null && user == null) {
-                    throw new IllegalArgumentException("Spot/User does not exist!");
+            // save favorite if it does not exist yet, concurrent requests for the same favorite create it once
+            if(favoriteService.create(favorite) == CreateResult.ALREADY_EXISTS){
+                message = "Favorite exists already.";
+            }else {
+
+                try {
+
+                    // get topic from spot, a user without devices has nothing to subscribe
+                    Spot spot = spotService.getByHashKey(spotId);
+                    if (spot == null) {
+                        throw new IllegalArgumentException("Spot does not exist!");
+                    }
+
+                    // subscribe all user devices (max 3 devices supported)
+                    List<Device> devices = deviceService.getDevicesByUser(username, Constants.MAX_USER_DEVICES);
+                    for (Device device : devices) {
+                        String subscriptionArn = notificationService.subscribeToTopic(spot.getTopicArn(), device.getPlatformEndpointArn());
+                        Subscription subscription = new Subscription();
+                        subscription.setSubscriptionArn(subscriptionArn);
+                        subscription.setTopicArn(spot.getTopicArn());
+                        subscription.setEndpointArn(device.getPlatformEndpointArn());
+                        subscription.setUsername(username);
+                        subscriptionService.save(subscription);
+                    }
+                } catch (Exception e) {
+
+                    // remove the favorite so the request can be retried
+                    favoriteService.delete(favorite);
+                    throw e;
                 }
-
-                // subscribe all user devices (max 3 devices supported)
-                List<Device> devices = deviceService.getDevicesByUser(username, Constants.MAX_USER_DEVICES);
-                for(Device device : devices) {
-                    String subscriptionArn = notificationService.subscribeToTopic(spot.getTopicArn(), device.getPlatformEndpointArn());
-                    Subscription subscription = new Subscription();
-                    subscription.setSubscriptionArn(subscriptionArn);
-                    subscription.setTopicArn(spot.getTopicArn());
-                    subscription.setEndpointArn(device.getPlatformEndpointArn());
-                    subscription.setUsername(username);
-                    subscriptionService.save(subscription);
-                }
-
-                // save favorite
-                favoriteService.save(favorite);
             }
         } catch (Exception e) {
 
@@ -3,12 +3,17 @@ package com.juvodu.serverless.handler;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.juvodu.database.model.BaseSpot;
 import com.juvodu.database.model.Spot;
+import com.juvodu.database.model.SpotList;
 import com.juvodu.serverless.response.ApiGatewayResponse;
 import com.juvodu.serverless.response.CreateResponse;
+import com.juvodu.service.SpotListService;
 import com.juvodu.service.SpotService;
 import org.apache.log4j.Logger;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -37,9 +42,14 @@ public class CreateSpotHandler implements RequestHandler<Map<String, Object>, Ap
 
             // parse post and create spot
             Spot spot = objectMapper.readValue(body.toString(), Spot.class);
-            SpotService spotService = new SpotService(Spot.class);
+            SpotService<Spot> spotService = new SpotService<>(Spot.class);
+            Spot previous = spot.getId() != null ? spotService.getByHashKey(spot.getId(), true) : null;
             id = spotService.save(spot);
 
+            // the body might only contain some attributes, the lists are patched with the stored spot
+            Spot stored = spotService.getByHashKey(id, true);
+            updateSpotLists(id, stored, previous);
+
         }catch(Exception e){
 
             statusCode = 500;
@@ -52,4 +62,36 @@ public class CreateSpotHandler implements RequestHandler<Map<String, Object>, Ap
         .setObjectBody(new CreateResponse(id, message))
         .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Patch the materialised lists of the continent and country of the spot, a failure does not fail the request as
+     * the spot has been saved
+     *
+     * @param id
+     *          id of the saved spot
+     * @param stored
+     *          the spot read after the save, null if it has been deleted in the meantime
+     * @param previous
+     *          the spot read before the save, null for new spots
+     */
+    private void updateSpotLists(String id, Spot stored, Spot previous){
+
+        try {
+            SpotListService<SpotList, BaseSpot> spotListService = new SpotListService<>(SpotList.class,
+                    new SpotService<>(BaseSpot.class));
+
+            // a spot moved to another continent or deleted is removed from the lists of the previous continent
+            List<Spot> moved = previous != null ? Collections.singletonList(previous) : Collections.emptyList();
+            if(previous != null && previous.getContinent() != null
+                    && (stored == null || previous.getContinent() != stored.getContinent())){
+                spotListService.update(previous.getContinent(), Collections.emptyList(), moved);
+                moved = Collections.emptyList();
+            }
+            if(stored != null && stored.getContinent() != null){
+                spotListService.update(stored.getContinent(), Collections.singletonList(stored), moved);
+            }
+        } catch (Exception e) {
+            LOG.error("Could not update spot lists of spot " + id, e);
+        }
+    }
+}
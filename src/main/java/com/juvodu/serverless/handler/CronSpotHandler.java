@@ -2,19 +2,24 @@ package com.juvodu.serverless.handler;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.juvodu.database.model.BaseSpot;
 import com.juvodu.database.model.Continent;
 import com.juvodu.database.model.Spot;
+import com.juvodu.database.model.SpotList;
 import com.juvodu.forecast.exception.WWOMClientException;
 import com.juvodu.forecast.model.Forecast;
 import com.juvodu.forecast.model.Hourly;
 import com.juvodu.forecast.model.Weather;
 import com.juvodu.serverless.response.ApiGatewayResponse;
 import com.juvodu.service.NotificationService;
+import com.juvodu.service.SpotListService;
 import com.juvodu.service.SpotService;
 import com.juvodu.service.SwellAlertService;
 import com.juvodu.service.WeatherService;
 import org.apache.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -34,10 +39,12 @@ public class CronSpotHandler implements RequestHandler<Map<String, Object>, ApiG
         long startTimeMilli = System.currentTimeMillis();
         int statusCode = 200;
 
-        SpotService spotService = new SpotService(Spot.class);
+        SpotService<Spot> spotService = new SpotService<>(Spot.class);
         WeatherService weatherService = new WeatherService();
         SwellAlertService swellAlertService = new SwellAlertService();
         NotificationService notificationService = new NotificationService();
+        SpotListService<SpotList, BaseSpot> spotListService = new SpotListService<>(SpotList.class,
+                new SpotService<>(BaseSpot.class));
         int updatedSpots = 0;
 
         // for all continents
@@ -46,6 +53,7 @@ public class CronSpotHandler implements RequestHandler<Map<String, Object>, ApiG
             // batch size of 1000 spots
             List<Spot> spots = spotService.findByToBeUpdatedAndContinent(c);
             LOG.info("Found " + spots.size() + " spots in " + c.getName() + " to update.");
+            List<Spot> updated = new ArrayList<>();
 
             for (Spot spot : spots) {
 
@@ -67,8 +75,13 @@ public class CronSpotHandler implements RequestHandler<Map<String, Object>, ApiG
                         notificationService.swellAlert(spot);
                     }
 
+                    // only the conditions are written, a spot deleted in the meantime is not recreated
                     spot.setCronDate(new Date());
-                    spotService.save(spot);
+                    if(spotService.updateConditions(spot)){
+                        updated.add(spot);
+                    }else{
+                        LOG.info("Spot " + spot.getId() + " has been deleted during the update");
+                    }
 
                 } catch (Exception e) {
 
@@ -76,6 +89,14 @@ public class CronSpotHandler implements RequestHandler<Map<String, Object>, ApiG
                     e.printStackTrace();
                 }
             }
+
+            // patch the materialised lists once per continent with the new conditions
+            try {
+                spotListService.update(c, updated, Collections.emptyList());
+            } catch (Exception e) {
+                LOG.info("Error updating spot lists of " + c.getName());
+                e.printStackTrace();
+            }
         }
 
         long endTimeMilli = System.currentTimeMillis();
@@ -4,6 +4,7 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.juvodu.database.model.BatchWriteResult;
 import com.juvodu.database.model.Device;
 import com.juvodu.database.model.Subscription;
 import com.juvodu.serverless.response.ApiGatewayResponse;
@@ -55,12 +56,12 @@ public class DeleteDeviceHandler implements RequestHandler<Map<String, Object>,
 
                 // delete SNS subscriptions for device
                 List<Subscription> subscriptions = subscriptionService.getByUserAndPlatformEndpointArn(username, endpoint, 100);
-                subscriptions.stream().forEach(subscription ->
-                {
-                    notificationService.unsubscribe(subscription.getSubscriptionArn());
-                    subscriptionService.delete(subscription);
-
-                });
+                subscriptions.forEach(subscription -> notificationService.unsubscribe(subscription.getSubscriptionArn()));
+                for(BatchWriteResult result : subscriptionService.batchDelete(subscriptions)){
+                    if(!result.isSuccessful()){
+                        throw new IllegalStateException("could not delete all subscriptions: " + result);
+                    }
+                }
 
                 // delete platform endpoint
                 notificationService.deletePlatformEndpoint(device.getPlatformEndpointArn());
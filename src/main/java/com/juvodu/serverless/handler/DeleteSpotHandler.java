@@ -4,14 +4,18 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.juvodu.database.model.BaseSpot;
 import com.juvodu.database.model.Spot;
+import com.juvodu.database.model.SpotList;
 import com.juvodu.serverless.response.ApiGatewayResponse;
 import com.juvodu.serverless.response.CrudResponse;
 import com.juvodu.service.NotificationService;
+import com.juvodu.service.SpotListService;
 import com.juvodu.service.SpotService;
 import org.apache.log4j.Logger;
 
 import javax.management.Notification;
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -50,6 +54,16 @@ public class DeleteSpotHandler implements RequestHandler<Map<String, Object>, Ap
             notificationService.deleteTopic(topicArn);
             spotService.delete(spot);
 
+            // the materialised lists are patched, a failure does not fail the request as the spot has been deleted
+            try {
+                if(spot.getContinent() != null){
+                    new SpotListService<>(SpotList.class, new SpotService<>(BaseSpot.class))
+                            .update(spot.getContinent(), Collections.emptyList(), Collections.singletonList(spot));
+                }
+            } catch (Exception e) {
+                LOG.error("Could not update spot lists of spot " + id, e);
+            }
+
         } catch (Exception e) {
 
             statusCode = 500;
@@ -11,8 +11,10 @@ import com.juvodu.service.*;
 import com.juvodu.util.Constants;
 import org.apache.log4j.Logger;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Handler to delete an existing user.
@@ -55,24 +57,20 @@ public class DeleteUserHandler implements RequestHandler<Map<String, Object>, Ap
 
                 // delete all user devices
                 List<Device> devices = deviceService.getDevicesByUser(username, Constants.MAX_USER_DEVICES);
-                devices.stream().forEach(device -> deviceService.delete(device));
+                checkBatchResults("devices", deviceService.batchDelete(devices));
 
-                // delete all subscriptions
+                // delete all subscriptions to the topics of the favorite spots
                 List<Favorite> favorites = favoriteService.getFavoritesByUser(username, 100);
-                for(Favorite favorite : favorites){
-
-                    Spot spot = spotService.getByHashKey(favorite.getSpotId());
-                    List<Subscription> subscriptions = subscriptionService.getByUserAndTopic(username, spot.getTopicArn(), 100);
-                    subscriptions.stream().forEach(subscription ->
-                    {
-                        notificationService.unsubscribe(subscription.getSubscriptionArn());
-                        subscriptionService.delete(subscription);
-
-                    });
+                List<String> spotIds = favorites.stream().map(Favorite::getSpotId).collect(Collectors.toList());
+                List<Subscription> subscriptions = new ArrayList<>();
+                for(Spot spot : spotService.getByIds(spotIds)){
+                    subscriptions.addAll(subscriptionService.getByUserAndTopic(username, spot.getTopicArn(), 100));
                 }
+                subscriptions.forEach(subscription -> notificationService.unsubscribe(subscription.getSubscriptionArn()));
+                checkBatchResults("subscriptions", subscriptionService.batchDelete(subscriptions));
 
                 // delete all favorites
-                favorites.stream().forEach(favorite -> favoriteService.delete(favorite));
+                checkBatchResults("favorites", favoriteService.batchDelete(favorites));
 
                 // delete user
                 userService.delete(user);
@@ -90,4 +88,23 @@ public class DeleteUserHandler implements RequestHandler<Map<String, Object>, Ap
                 .setObjectBody(new CrudResponse(message))
                 .build();
     }
+
+    /**
+     * Verify that all batches of a cascade delete succeeded, the user is kept otherwise so the delete can be repeated
+     *
+     * @param records
+     *          name of the deleted records
+     * @param results
+     *          the results of the batch delete
+     * @throws IllegalStateException if items could not be deleted
+     */
+    private void checkBatchResults(String records, List<BatchWriteResult> results){
+
+        for(BatchWriteResult result : results){
+            if(!result.isSuccessful()){
+                LOG.error("Could not delete " + records + ": " + result, result.getException());
+                throw new IllegalStateException("could not delete all " + records);
+            }
+        }
+    }
 }
@@ -0,0 +1,93 @@
+package com.juvodu.serverless.handler;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.juvodu.index.Facet;
+import com.juvodu.index.SpotCatalog;
+import com.juvodu.serverless.ParameterParser;
+import com.juvodu.serverless.response.ApiGatewayResponse;
+import com.juvodu.serverless.response.CrudResponse;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handler which filters Spots by their categorical attributes, e.g. reef breaks for intermediates in PT,
+ * and returns the number of spots per facet value. Filters are answered from the in-memory facet index
+ * of the spot catalog.
+ *
+ * Every facet is a query parameter with a list of accepted values separated by a pipe, e.g.
+ * ?type=reef&experience=intermediate|advanced&country=PT - commas separate the parameters
+ * in the string representation of api gateway.
+ *
+ * @author Juvodu
+ */
+public class FilterSpotsHandler implements RequestHandler<Map<String, Object>, ApiGatewayResponse> {
+
+    private static final Logger LOG = Logger.getLogger(FilterSpotsHandler.class);
+
+    /**
+     * Ctor, loads the catalog while the container warms up so the first request does not pay for it
+     */
+    public FilterSpotsHandler(){
+
+        try {
+
+            SpotCatalog.getInstance().getFacetIndex();
+
+        } catch (Exception e) {
+
+            LOG.warn("Could not load spot catalog on warm up: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public ApiGatewayResponse handleRequest(Map<String, Object> input, Context context) {
+
+        String queryStringParameters = input.get("queryStringParameters").toString();
+        LOG.info("Query String parameters: " + queryStringParameters);
+        int statusCode = 200;
+        Object body;
+
+        try {
+
+            Map<String, String> parameters = ParameterParser.getParameters(queryStringParameters);
+            Map<Facet, List<String>> filters = new EnumMap<>(Facet.class);
+            for(Facet facet : Facet.values()){
+                String values = parameters.get(facet.getParameter());
+                if(StringUtils.isNotBlank(values)){
+                    filters.put(facet, Arrays.asList(values.split("\\|")));
+                }
+            }
+
+            // default list size is 10
+            int limit = 10;
+            String limitStr = parameters.get("limit");
+            if(StringUtils.isNotBlank(limitStr)){
+                limit = Integer.parseInt(limitStr);
+            }
+
+            body = SpotCatalog.getInstance().getFacetIndex().find(filters, limit);
+
+        } catch (IllegalArgumentException e) {
+
+            statusCode = 400;
+            body = new CrudResponse("Invalid parameter:" + e.getMessage());
+
+        } catch (Exception e) {
+
+            statusCode = 500;
+            body = new CrudResponse("Could not filter spots: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return ApiGatewayResponse.builder()
+                .setStatusCode(statusCode)
+                .setObjectBody(body)
+                .build();
+    }
+}
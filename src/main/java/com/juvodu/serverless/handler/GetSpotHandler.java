@@ -14,6 +14,7 @@ import com.juvodu.service.WeatherService;
 import org.apache.log4j.Logger;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Handler which retrieves a Spot with detailed information
@@ -43,13 +44,15 @@ public class GetSpotHandler implements RequestHandler<Map<String, Object>, ApiGa
             String spotId = parameters.get("spotId");
             String username = parameters.get("username");
 
+            // the favorite check runs while the spot and its forecast are loaded
+            CompletableFuture<Boolean> favorite = favoriteService.isSpotUserFavoriteAsync(username, spotId);
+
             Spot spot = spotService.getByHashKey(spotId);
             Forecast forecast = getForecast(spot);
             spot.setForecast(forecast);
 
             // populate if spot is favorite of user
-            boolean favorite = favoriteService.isSpotUserFavorite(username, spotId);
-            spot.setFavorite(favorite);
+            spot.setFavorite(favorite.join());
 
             body = spot;
 
@@ -4,11 +4,15 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.juvodu.database.model.*;
 import com.juvodu.forecast.exception.WWOMClientException;
+import com.juvodu.index.SpotCatalog;
 import com.juvodu.serverless.ParameterParser;
 import com.juvodu.serverless.response.ApiGatewayResponse;
 import com.juvodu.serverless.response.CrudResponse;
 import com.juvodu.service.FavoriteService;
+import com.juvodu.service.SpotListService;
 import com.juvodu.service.SpotService;
+import com.juvodu.util.Constants;
+import com.juvodu.util.GeoHelper;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 
@@ -24,6 +28,15 @@ public class GetSpotsHandler implements RequestHandler<Map<String, Object>, ApiG
 
 	private static final Logger LOG = Logger.getLogger(GetSpotsHandler.class);
 
+	/** number of continent partitions not queried by a radius search */
+	private static final String SKIPPED_PARTITIONS_HEADER = "X-Skipped-Partitions";
+
+	/** token of the next page of a continent or country listing, missing on the last page */
+	private static final String NEXT_PAGE_TOKEN_HEADER = "X-Next-Page-Token";
+
+	/** queries issued, items read and items returned by a radius search */
+	private static final String QUERY_COST_HEADER = "X-Query-Cost";
+
 	@Override
     public ApiGatewayResponse handleRequest(Map<String, Object> input, Context context) {
 
@@ -32,10 +45,17 @@ public class GetSpotsHandler implements RequestHandler<Map<String, Object>, ApiG
 		int statusCode = 200;
 
 		Object body;
+		Map<String, String> headers = new HashMap<>();
 
 		try {
 
-			body = findSpotsByParameter(ParameterParser.getParameters(queryStringParameters));
+			body = findSpotsByParameter(ParameterParser.getParameters(queryStringParameters), headers);
+
+		} catch (IllegalArgumentException e) {
+
+			// malformed parameters, e.g. an invalid page token
+			statusCode = 400;
+			body = new CrudResponse("Invalid parameter:" + e.getMessage());
 
 		} catch (Exception e) {
 
@@ -44,8 +64,18 @@ public class GetSpotsHandler implements RequestHandler<Map<String, Object>, ApiG
 			e.printStackTrace();
 		}
 
+		// materialised lists are serialised already
+		if(body instanceof SpotListPage){
+			return ApiGatewayResponse.builder()
+					.setStatusCode(statusCode)
+					.setHeaders(headers)
+					.setRawBody(((SpotListPage) body).getJson())
+					.build();
+		}
+
         return ApiGatewayResponse.builder()
 				.setStatusCode(statusCode)
+				.setHeaders(headers)
 				.setObjectBody(body)
 				.build();
 	}
@@ -55,10 +85,12 @@ public class GetSpotsHandler implements RequestHandler<Map<String, Object>, ApiG
 	 *
 	 * @param queryStringParametersMap
 	 *          parameters specified by the client
+	 * @param headers
+	 *          response headers populated with query statistics
 	 *
-	 * @return list of retrieved spots
+	 * @return list of retrieved spots or spot clusters, or a page of a materialised spot list
 	 */
-	private List<BaseSpot> findSpotsByParameter(Map<String, String> queryStringParametersMap) throws WWOMClientException {
+	private Object findSpotsByParameter(Map<String, String> queryStringParametersMap, Map<String, String> headers) throws WWOMClientException {
 
 		// base spot class as list views only need partial data of a spot
 		SpotService<BaseSpot> baseSpotService = new SpotService(BaseSpot.class);
@@ -70,8 +102,15 @@ public class GetSpotsHandler implements RequestHandler<Map<String, Object>, ApiG
 		String lat = queryStringParametersMap.get("lat");
 		String lon = queryStringParametersMap.get("lon");
 		String dist = queryStringParametersMap.get("distance");
+		String nearest = queryStringParametersMap.get("nearest");
 		String country = queryStringParametersMap.get("country");
 		String limitStr = queryStringParametersMap.get("limit");
+		String minLat = queryStringParametersMap.get("minLat");
+		String minLon = queryStringParametersMap.get("minLon");
+		String maxLat = queryStringParametersMap.get("maxLat");
+		String maxLon = queryStringParametersMap.get("maxLon");
+		String zoom = queryStringParametersMap.get("zoom");
+		String pageToken = queryStringParametersMap.get("pageToken");
 
 		// default list size is 10
 		int limit = 10;
@@ -92,7 +131,72 @@ public class GetSpotsHandler implements RequestHandler<Map<String, Object>, ApiG
 
 			LOG.info("Find spots by country: " + country);
 			Locale locale = new Locale("", country);
-			spots.addAll(baseSpotService.findByCountry(Continent.valueOf(continent), new Country(locale.getCountry(), locale.getDisplayName()), limit));
+			Country spotCountry = new Country(locale.getCountry(), locale.getDisplayName());
+			if(Constants.SPOT_LIST_ENABLED){
+				SpotListPage listPage = new SpotListService<>(SpotList.class, baseSpotService).getPage(Continent.valueOf(continent),
+						spotCountry, limit, StringUtils.defaultIfBlank(pageToken, null));
+				if(listPage != null){
+					setNextPageToken(listPage.getNextPageToken(), headers);
+					return listPage;
+				}
+			}
+			ResultPage<BaseSpot> page = baseSpotService.findByCountry(Continent.valueOf(continent), spotCountry, limit,
+					StringUtils.defaultIfBlank(pageToken, null));
+			spots.addAll(page.getResults());
+			setNextPageToken(page.getNextPageToken(), headers);
+
+		}else if (!StringUtils.isAnyBlank(minLat, minLon, maxLat, maxLon)){
+
+			LOG.info("Find spots by bounding box: " + minLat + "," + minLon + " - " + maxLat + "," + maxLon + " zoom: " + zoom);
+			List<BoundingBox> boxes = new ArrayList<>(2);
+			double south = parseCoordinate("minLat", minLat, 90);
+			double north = parseCoordinate("maxLat", maxLat, 90);
+			double west = parseCoordinate("minLon", minLon, 180);
+			double east = parseCoordinate("maxLon", maxLon, 180);
+			if(south > north){
+				throw new IllegalArgumentException("minLat " + south + " is greater than maxLat " + north);
+			}
+
+			// viewport crossing the antimeridian
+			double centerLongitude = (west + east) / 2;
+			if(west > east){
+				boxes.add(new BoundingBox(south, west, north, 180));
+				boxes.add(new BoundingBox(south, -180, north, east));
+				centerLongitude = centerLongitude > 0 ? centerLongitude - 180 : centerLongitude + 180;
+			}else{
+				boxes.add(new BoundingBox(south, west, north, east));
+			}
+
+			// low zoom levels get clusters aggregated by geohash prefix, cells get smaller with each zoom level
+			if(StringUtils.isNotBlank(zoom) && Integer.parseInt(zoom) < Constants.CLUSTER_MAX_ZOOM){
+				if(Integer.parseInt(zoom) < 0){
+					throw new IllegalArgumentException("zoom must not be negative: " + zoom);
+				}
+				int clusterPrecision = Math.max(1, 2 * (Integer.parseInt(zoom) + 3));
+				List<SpotCluster> clusters = new ArrayList<>();
+				for(BoundingBox box : boxes){
+					clusters.addAll(baseSpotService.findClustersByBoundingBox(box, clusterPrecision));
+				}
+				return clusters;
+			}
+
+			for(BoundingBox box : boxes){
+				spots.addAll(baseSpotService.findByBoundingBox(box, limit));
+			}
+
+			// both halves of a viewport crossing the antimeridian are cut by distance to the center of the viewport
+			Position center = new Position((south + north) / 2, centerLongitude);
+			spots.sort(Comparator.comparingInt((BaseSpot spot) -> GeoHelper.getDistance(center, spot.getPosition()))
+					.thenComparing(BaseSpot::getId));
+			if(spots.size() > limit){
+				spots = spots.subList(0, limit);
+			}
+
+		}else if (!StringUtils.isAnyBlank(lat, lon, nearest)){
+
+			LOG.info("Find " + nearest + " nearest spots to center: " + lat + "," + lon);
+			Position position = new Position(Double.valueOf(lat), Double.valueOf(lon));
+			spots.addAll(baseSpotService.findNearest(position, Integer.parseInt(nearest)));
 
 		}else if (!StringUtils.isAnyBlank(lat, lon, dist)){
 
@@ -101,10 +205,27 @@ public class GetSpotsHandler implements RequestHandler<Map<String, Object>, ApiG
 			double latitude = Double.valueOf(lat);
 			double longitude = Double.valueOf(lon);
 
-			// check all continents
-            for(Continent c : Continent.values()){
-                spots.addAll(baseSpotService.findByDistance(c, new Position(latitude, longitude), distance, limit));
-            }
+			Position position = new Position(latitude, longitude);
+
+			// answer from the in-memory catalog of this container if enabled
+			if(Constants.SPATIAL_INDEX_ENABLED){
+				return SpotCatalog.getInstance().getSpatialIndex().findByDistance(position, distance, limit);
+			}
+
+			// only check continents which can intersect the search circle
+			List<BoundingBox> searchBoxes = GeoHelper.getBoundingBoxes(position, distance * 1000);
+			int skippedPartitions = 0;
+			QueryCost cost = new QueryCost();
+			for(Continent c : Continent.values()){
+				if(c.intersects(searchBoxes)) {
+					spots.addAll(baseSpotService.findByDistance(c, position, distance, limit, cost));
+				}else{
+					skippedPartitions++;
+				}
+			}
+			LOG.info("Skipped " + skippedPartitions + " continent partitions, query cost: " + cost);
+			headers.put(SKIPPED_PARTITIONS_HEADER, Integer.toString(skippedPartitions));
+			headers.put(QUERY_COST_HEADER, cost.toString());
 
             // sort again by distance now for all continents
             spots = spots.stream()
@@ -114,10 +235,58 @@ public class GetSpotsHandler implements RequestHandler<Map<String, Object>, ApiG
         }else if(StringUtils.isNotBlank(continent)){
 
 			LOG.info("Find spots by continent: " + continent);
-			spots.addAll(baseSpotService.findByContinent(Continent.valueOf(continent), limit));
+			if(Constants.SPOT_LIST_ENABLED){
+				SpotListPage listPage = new SpotListService<>(SpotList.class, baseSpotService).getPage(Continent.valueOf(continent),
+						null, limit, StringUtils.defaultIfBlank(pageToken, null));
+				if(listPage != null){
+					setNextPageToken(listPage.getNextPageToken(), headers);
+					return listPage;
+				}
+			}
+			ResultPage<BaseSpot> page = baseSpotService.findByContinent(Continent.valueOf(continent), limit,
+					StringUtils.defaultIfBlank(pageToken, null));
+			spots.addAll(page.getResults());
+			setNextPageToken(page.getNextPageToken(), headers);
 
 		}
 
 		return spots;
 	}
+
+	/**
+	 * Parse a latitude or longitude of a bounding box
+	 *
+	 * @param name
+	 *          of the parameter
+	 * @param value
+	 *          passed by the client
+	 * @param max
+	 *          max absolute value, 90 for latitudes and 180 for longitudes
+	 * @return the coordinate
+	 * @throws IllegalArgumentException
+	 *          if the value is not a number or out of range
+	 */
+	private static double parseCoordinate(String name, String value, double max){
+
+		double coordinate = Double.parseDouble(value);
+		if(!(coordinate >= -max && coordinate <= max)){
+			throw new IllegalArgumentException(name + " must be between " + -max + " and " + max + ": " + value);
+		}
+		return coordinate;
+	}
+
+	/**
+	 * Return the token of the next page to the client, no header is set for the last page
+	 *
+	 * @param nextPageToken
+	 *          token of the next page of the retrieved page, null for the last page
+	 * @param headers
+	 *          response headers
+	 */
+	private void setNextPageToken(String nextPageToken, Map<String, String> headers){
+
+		if(nextPageToken != null){
+			headers.put(NEXT_PAGE_TOKEN_HEADER, nextPageToken);
+		}
+	}
 }
@@ -0,0 +1,97 @@
+package com.juvodu.serverless.handler;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.juvodu.database.converter.CompressedStringTypeConverter;
+import com.juvodu.database.model.Spot;
+import com.juvodu.serverless.response.ApiGatewayResponse;
+import com.juvodu.serverless.response.MigrationResponse;
+import com.juvodu.service.SpotService;
+import org.apache.log4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Handler backfilling the compression of the descriptions of spots saved before they were compressed. Spots are
+ * scanned in pages and only the description of each spot is rewritten, until all spots are migrated or the lambda is
+ * about to time out, in the latter case the response contains the id to continue with. The stored size of the
+ * descriptions before and after is logged. Optional input: startId, batchSize.
+ *
+ * @author Juvodu
+ */
+public class MigrateCompressionHandler implements RequestHandler<Map<String, Object>, ApiGatewayResponse> {
+
+    private static final Logger LOG = Logger.getLogger(MigrateCompressionHandler.class);
+
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    // stop before the lambda timeout to return the continuation id
+    private static final long MIN_REMAINING_MILLIS = 30000;
+
+    @Override
+    public ApiGatewayResponse handleRequest(Map<String, Object> input, Context context) {
+
+        LOG.info("Migrate description compression:" + input);
+
+        String startId = input.get("startId") != null ? input.get("startId").toString() : null;
+        int batchSize = input.get("batchSize") != null ? Integer.parseInt(input.get("batchSize").toString()) : DEFAULT_BATCH_SIZE;
+
+        int statusCode = 200;
+        int migrated = 0;
+        int failed = 0;
+        long bytesBefore = 0;
+        long bytesAfter = 0;
+        String message;
+        SpotService<Spot> spotService = new SpotService<>(Spot.class);
+        CompressedStringTypeConverter converter = new CompressedStringTypeConverter();
+
+        try {
+
+            do {
+
+                ScanResultPage<Spot> page = spotService.findPageWithUncompressedDescription(startId, batchSize);
+                for(Spot spot : page.getResults()){
+
+                    // short descriptions stay uncompressed and are skipped
+                    String description = spot.getDescription();
+                    if(!CompressedStringTypeConverter.isCompressible(description)){
+                        continue;
+                    }
+
+                    // only the description is written, concurrent updates of the conditions are kept
+                    try {
+                        if(spotService.update(spot, "description")){
+                            migrated++;
+                            bytesBefore += description.getBytes(StandardCharsets.UTF_8).length;
+                            bytesAfter += converter.convert(description).length();
+                        }
+                    } catch (Exception e) {
+                        LOG.error("Could not compress description of spot " + spot.getId(), e);
+                        failed++;
+                    }
+                }
+
+                startId = page.getLastEvaluatedKey() != null ? page.getLastEvaluatedKey().get("id").getS() : null;
+
+            } while (startId != null && context.getRemainingTimeInMillis() > MIN_REMAINING_MILLIS);
+
+            message = startId == null ? "Migration complete." : "Migration incomplete, continue with the next start id.";
+
+        } catch (Exception e) {
+
+            statusCode = 500;
+            message = "Could not migrate description compression: " + e.getMessage();
+            e.printStackTrace();
+        }
+
+        LOG.info("Migrated " + migrated + " spots, " + failed + " failed, next start id: " + startId
+                + ", descriptions compressed from " + bytesBefore + " to " + bytesAfter + " bytes");
+
+        return ApiGatewayResponse.builder()
+                .setStatusCode(statusCode)
+                .setObjectBody(new MigrationResponse(message, migrated, failed, startId))
+                .build();
+    }
+}
@@ -0,0 +1,84 @@
+package com.juvodu.serverless.handler;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.juvodu.database.model.Spot;
+import com.juvodu.serverless.response.ApiGatewayResponse;
+import com.juvodu.serverless.response.MigrationResponse;
+import com.juvodu.service.SpotService;
+import org.apache.log4j.Logger;
+
+import java.util.Map;
+
+/**
+ * Handler backfilling the spatial keys (geokey and hilbertkey) of spots saved before they were introduced.
+ * Spots are scanned in pages and only the spatial keys of each spot are written, until all spots are migrated or
+ * the lambda is about to time out, in the latter case the response contains the id to continue with.
+ * Optional input: startId, batchSize.
+ *
+ * @author Juvodu
+ */
+public class MigrateGeokeyHandler implements RequestHandler<Map<String, Object>, ApiGatewayResponse> {
+
+    private static final Logger LOG = Logger.getLogger(MigrateGeokeyHandler.class);
+
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    // stop before the lambda timeout to return the continuation id
+    private static final long MIN_REMAINING_MILLIS = 30000;
+
+    @Override
+    public ApiGatewayResponse handleRequest(Map<String, Object> input, Context context) {
+
+        LOG.info("Migrate spatial keys:" + input);
+
+        String startId = input.get("startId") != null ? input.get("startId").toString() : null;
+        int batchSize = input.get("batchSize") != null ? Integer.parseInt(input.get("batchSize").toString()) : DEFAULT_BATCH_SIZE;
+
+        int statusCode = 200;
+        int migrated = 0;
+        int failed = 0;
+        String message;
+        SpotService<Spot> spotService = new SpotService<>(Spot.class);
+
+        try {
+
+            do {
+
+                ScanResultPage<Spot> page = spotService.findPageWithoutSpatialKeys(startId, batchSize);
+                for(Spot spot : page.getResults()){
+
+                    // only the spatial keys are written, failed spots keep their missing keys and are found again
+                    // by the next run
+                    try {
+                        if(spotService.updateSpatialKeys(spot)){
+                            migrated++;
+                        }
+                    } catch (Exception e) {
+                        LOG.error("Could not write spatial keys of spot " + spot.getId(), e);
+                        failed++;
+                    }
+                }
+
+                startId = page.getLastEvaluatedKey() != null ? page.getLastEvaluatedKey().get("id").getS() : null;
+
+            } while (startId != null && context.getRemainingTimeInMillis() > MIN_REMAINING_MILLIS);
+
+            message = startId == null ? "Migration complete." : "Migration incomplete, continue with the next start id.";
+
+        } catch (Exception e) {
+
+            statusCode = 500;
+            message = "Could not migrate spatial keys: " + e.getMessage();
+            e.printStackTrace();
+        }
+
+        LOG.info("Migrated " + migrated + " spots, " + failed + " failed, next start id: " + startId);
+
+        return ApiGatewayResponse.builder()
+                .setStatusCode(statusCode)
+                .setObjectBody(new MigrationResponse(message, migrated, failed, startId))
+                .build();
+    }
+}
@@ -0,0 +1,86 @@
+package com.juvodu.serverless.handler;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.juvodu.database.model.BaseSpot;
+import com.juvodu.index.SpotCatalog;
+import com.juvodu.serverless.ParameterParser;
+import com.juvodu.serverless.response.ApiGatewayResponse;
+import com.juvodu.serverless.response.CrudResponse;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handler which searches Spots by name, e.g. for autocompletion while the user types.
+ * Searches are answered from the in-memory name index of the spot catalog.
+ *
+ * @author Juvodu
+ */
+public class SearchSpotsHandler implements RequestHandler<Map<String, Object>, ApiGatewayResponse> {
+
+    private static final Logger LOG = Logger.getLogger(SearchSpotsHandler.class);
+
+    /**
+     * Ctor, loads the catalog while the container warms up so the first search does not pay for it
+     */
+    public SearchSpotsHandler(){
+
+        try {
+
+            SpotCatalog.getInstance().getNameIndex();
+
+        } catch (Exception e) {
+
+            LOG.warn("Could not load spot catalog on warm up: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public ApiGatewayResponse handleRequest(Map<String, Object> input, Context context) {
+
+        String queryStringParameters = input.get("queryStringParameters").toString();
+        LOG.info("Query String parameters: " + queryStringParameters);
+        int statusCode = 200;
+        Object body;
+
+        try {
+
+            Map<String, String> parameters = ParameterParser.getParameters(queryStringParameters);
+            String query = parameters.get("q");
+            String limitStr = parameters.get("limit");
+            if(StringUtils.isBlank(query)){
+                throw new IllegalArgumentException("missing search query q");
+            }
+
+            // default list size is 10
+            int limit = 10;
+            if(StringUtils.isNotBlank(limitStr)){
+                limit = Integer.parseInt(limitStr);
+            }
+
+            long start = System.nanoTime();
+            List<BaseSpot> spots = SpotCatalog.getInstance().getNameIndex().findByName(query, limit);
+            LOG.info("Found " + spots.size() + " spots by name in " + (System.nanoTime() - start) / 1000000.0 + " ms");
+            body = spots;
+
+        } catch (IllegalArgumentException e) {
+
+            statusCode = 400;
+            body = new CrudResponse("Invalid parameter:" + e.getMessage());
+
+        } catch (Exception e) {
+
+            statusCode = 500;
+            body = new CrudResponse("Could not search spots: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return ApiGatewayResponse.builder()
+                .setStatusCode(statusCode)
+                .setObjectBody(body)
+                .build();
+    }
+}
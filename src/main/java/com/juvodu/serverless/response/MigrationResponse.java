@@ -0,0 +1,46 @@
+package com.juvodu.serverless.response;
+
+/**
+ * Response for data migrations which run in several invocations
+ *
+ * @author Juvodu
+ */
+public class MigrationResponse extends CrudResponse {
+
+    private int migrated;
+    private int failed;
+
+    // null if the migration is complete, otherwise pass to the next invocation
+    private String nextStartId;
+
+    public MigrationResponse(String message, int migrated, int failed, String nextStartId){
+        super(message);
+        this.migrated = migrated;
+        this.failed = failed;
+        this.nextStartId = nextStartId;
+    }
+
+    public int getMigrated() {
+        return migrated;
+    }
+
+    public void setMigrated(int migrated) {
+        this.migrated = migrated;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public String getNextStartId() {
+        return nextStartId;
+    }
+
+    public void setNextStartId(String nextStartId) {
+        this.nextStartId = nextStartId;
+    }
+}
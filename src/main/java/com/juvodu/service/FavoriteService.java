@@ -6,6 +6,7 @@ import com.juvodu.database.DatabaseHelper;
 import com.juvodu.database.model.Favorite;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service for storage, retrieval and processing of favorites
@@ -62,4 +63,19 @@ public class FavoriteService<T extends Favorite> extends GenericPersistenceServi
 
         return favorite != null;
     }
+
+    /**
+     * Check if a spot is a user favorite without blocking
+     *
+     * @param userId
+     *          the user the favorites belong to
+     * @param spotId
+     *           the referenced spot
+     *
+     * @return future completing with true if spot is a user favorite
+     */
+    public CompletableFuture<Boolean> isSpotUserFavoriteAsync(String userId, String spotId){
+
+        return getByCompositeKeyAsync(userId, spotId).thenApply(favorite -> favorite != null);
+    }
 }
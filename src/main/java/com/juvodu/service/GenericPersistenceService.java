@@ -1,13 +1,38 @@
 package com.juvodu.service;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperFieldModel;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBSaveExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
-import com.juvodu.database.DatabaseHelper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.datamodeling.KeyPair;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputDescription;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.juvodu.database.BatchRetryStrategy;
+import com.juvodu.database.DynamoDBRegistry;
+import com.juvodu.database.ReadCapacityLimiter;
+import com.juvodu.database.RecordCache;
+import com.juvodu.database.SegmentedScan;
+import com.juvodu.database.model.BatchWriteResult;
+import com.juvodu.database.model.CreateResult;
+import com.juvodu.util.Constants;
+import org.apache.log4j.Logger;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Service providing basic persistence operations
@@ -16,11 +41,31 @@ import java.util.List;
  */
 public class GenericPersistenceService<T> {
 
+    private static final Logger LOG = Logger.getLogger(GenericPersistenceService.class);
+    private static final BatchRetryStrategy BATCH_RETRY_STRATEGY = new BatchRetryStrategy(Constants.BATCH_MAX_RETRIES,
+            Constants.BATCH_BACKOFF_BASE_MILLIS, Constants.BATCH_BACKOFF_MAX_MILLIS);
+    private static final DynamoDBMapperConfig BATCH_CONFIG = new DynamoDBMapperConfig.Builder()
+            .withBatchLoadRetryStrategy(BATCH_RETRY_STRATEGY)
+            .withBatchWriteRetryStrategy(BATCH_RETRY_STRATEGY)
+            .build();
+    protected static final DynamoDBMapperConfig CONSISTENT_READ = new DynamoDBMapperConfig.Builder()
+            .withConsistentReads(DynamoDBMapperConfig.ConsistentReads.CONSISTENT)
+            .build();
+
+    /** worker threads of the asynchronous operations, shared by all services and kept alive by warm containers */
+    private static final ExecutorService ASYNC_EXECUTOR = Executors.newFixedThreadPool(Constants.ASYNC_CONCURRENCY, runnable -> {
+        Thread thread = new Thread(runnable, "persistence-async");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    protected final AmazonDynamoDB dynamoDB;
     protected final DynamoDBMapper mapper;
     protected final Class<T> persistenceClass;
+    private RecordCache recordCache;
 
     /**
-     * Ctor
+     * Ctor, uses the client, mapper and record cache shared by all services of this container
      *
      * @param persistenceClass
      *              representing the table to be used
@@ -30,12 +75,36 @@ public class GenericPersistenceService<T> {
     public GenericPersistenceService(Class<T> persistenceClass, DynamoDBMapperConfig.SaveBehavior saveBehavior){
 
         this.persistenceClass = persistenceClass;
-        AmazonDynamoDB dynamoDB = DatabaseHelper.getDynamoDB();
-        DynamoDBMapperConfig mapperConfig = new DynamoDBMapperConfig.Builder()
-                .withSaveBehavior(saveBehavior)
-                .build();
+        this.dynamoDB = DynamoDBRegistry.getDynamoDB();
+        this.mapper = DynamoDBRegistry.getMapper(saveBehavior);
+        this.recordCache = DynamoDBRegistry.getRecordCache();
+    }
+
+    /**
+     * Ctor
+     *
+     * @param persistenceClass
+     *              representing the table to be used
+     * @param saveBehavior
+     *               defines overwrite/null behaviour
+     * @param dynamoDB
+     *               the client used to access the database
+     */
+    public GenericPersistenceService(Class<T> persistenceClass, DynamoDBMapperConfig.SaveBehavior saveBehavior, AmazonDynamoDB dynamoDB){
 
-        this.mapper = new DynamoDBMapper(dynamoDB, mapperConfig);
+        this.persistenceClass = persistenceClass;
+        this.dynamoDB = dynamoDB;
+        this.mapper = DynamoDBRegistry.createMapper(dynamoDB, saveBehavior);
+    }
+
+    /**
+     * Set the read-through cache of getByHashKey, services on an explicit client do not use the shared cache
+     *
+     * @param recordCache
+     *              the cache, null to read every record from the database
+     */
+    public void setRecordCache(RecordCache recordCache) {
+        this.recordCache = recordCache;
     }
 
     /**
@@ -50,10 +119,104 @@ public class GenericPersistenceService<T> {
 
         // save does not return, instead it populates the generated id to the passed record instance
         mapper.save(record);
+        invalidate(record);
     }
 
     /**
-     * Retrieve a record by its hash key - only works on tables without a range key
+     * Save a record only if no record with the same key exists, the check and the write are a single conditional
+     * request. Replaces a read before the save, which costs an additional request and races with concurrent saves.
+     *
+     * @param record
+     *          the record to create, its hash and range key are set or generated
+     *
+     * @return CREATED if the record has been written, ALREADY_EXISTS if the key exists and nothing has been written
+     */
+    public CreateResult create(T record){
+
+        // the hash key exists on every item, an item with the same hash and range key fails the condition
+        String hashKey = mapper.getTableModel(persistenceClass).hashKey().name();
+        DynamoDBSaveExpression saveExpression = new DynamoDBSaveExpression()
+                .withExpectedEntry(hashKey, new ExpectedAttributeValue(false));
+        try {
+            mapper.save(record, saveExpression);
+        } catch (ConditionalCheckFailedException e) {
+            return CreateResult.ALREADY_EXISTS;
+        }
+        invalidate(record);
+        return CreateResult.CREATED;
+    }
+
+    /**
+     * Set attributes of an existing record with a single UpdateItem request, the other attributes of the item are
+     * neither read nor sent. Null attributes are skipped, as with the UPDATE_SKIP_NULL_ATTRIBUTES save behavior.
+     *
+     * @param record
+     *          the record holding the key and the new attribute values
+     * @param attributeNames
+     *          the attributes to set
+     *
+     * @return true if the record has been updated, false if it does not exist and nothing has been written
+     */
+    public boolean update(T record, String... attributeNames){
+
+        return update(persistenceClass, record, attributeNames);
+    }
+
+    /**
+     * Set attributes of an existing record mapped by another model class of the table, see update(T, String...)
+     *
+     * @param modelClass
+     *          the class the record is mapped with, e.g. a subclass of the persistence class
+     * @param record
+     *          the record holding the key and the new attribute values
+     * @param attributeNames
+     *          the attributes to set
+     *
+     * @return true if the record has been updated, false if it does not exist and nothing has been written
+     */
+    protected <R> boolean update(Class<R> modelClass, R record, String... attributeNames){
+
+        DynamoDBMapperTableModel<R> tableModel = mapper.getTableModel(modelClass);
+        Map<String, String> names = new HashMap<>();
+        Map<String, AttributeValue> values = new HashMap<>();
+        StringBuilder updateExpression = new StringBuilder();
+        for(String attributeName : attributeNames){
+            DynamoDBMapperFieldModel<R, Object> field = tableModel.field(attributeName);
+            Object value = field.get(record);
+            if(value != null){
+                String alias = Integer.toString(names.size());
+                names.put("#a" + alias, field.name());
+                values.put(":v" + alias, field.convert(value));
+                updateExpression.append(updateExpression.length() > 0 ? ", " : "SET ")
+                        .append("#a").append(alias).append(" = :v").append(alias);
+            }
+        }
+
+        if(values.isEmpty()){
+            return mapper.load(record) != null;
+        }
+
+        // the condition keeps deleted records from being recreated as partial items
+        names.put("#key", tableModel.hashKey().name());
+        UpdateItemRequest request = new UpdateItemRequest()
+                .withTableName(getTableName(modelClass))
+                .withKey(tableModel.convertKey(record))
+                .withUpdateExpression(updateExpression.toString())
+                .withConditionExpression("attribute_exists(#key)")
+                .withExpressionAttributeNames(names)
+                .withExpressionAttributeValues(values);
+        try {
+            dynamoDB.updateItem(request);
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+        invalidate(record);
+        return true;
+    }
+
+    /**
+     * Retrieve a record by its hash key - only works on tables without a range key. With a record cache the
+     * record is read through the cache, every call returns a new instance.
      *
      * @param hashKey
      *          of the record
@@ -62,7 +225,42 @@ public class GenericPersistenceService<T> {
      */
     public T getByHashKey(String hashKey){
 
-        return mapper.load(persistenceClass, hashKey);
+        if(recordCache == null){
+            return mapper.load(persistenceClass, hashKey);
+        }
+
+        String tableName = getTableName(persistenceClass);
+        DynamoDBMapperTableModel<T> tableModel = mapper.getTableModel(persistenceClass);
+        Map<String, AttributeValue> item = recordCache.get(tableName, hashKey, persistenceClass);
+        if(item != null){
+            return tableModel.unconvert(item);
+        }
+
+        long version = recordCache.getVersion();
+        T record = mapper.load(persistenceClass, hashKey);
+        if(record != null){
+            recordCache.put(tableName, hashKey, persistenceClass, tableModel.convert(record), version);
+        }
+        return record;
+    }
+
+    /**
+     * Retrieve a record by its hash key - only works on tables without a range key
+     *
+     * @param hashKey
+     *          of the record
+     * @param consistentRead
+     *          true for a strongly consistent read which bypasses the record cache and returns all writes
+     *          completed before the read, false to read as getByHashKey(String)
+     *
+     * @return the retrieved record, null if it does not exist
+     */
+    public T getByHashKey(String hashKey, boolean consistentRead){
+
+        if(!consistentRead){
+            return getByHashKey(hashKey);
+        }
+        return mapper.load(persistenceClass, hashKey, CONSISTENT_READ);
     }
 
     /**
@@ -80,17 +278,40 @@ public class GenericPersistenceService<T> {
     }
 
     /**
-     * Retrieve a list of records by its hash keys - only works on tables without a range key
+     * Retrieve a list of records by its hash keys - only works on tables without a range key. Keys are read with
+     * BatchGetItem in chunks of Constants.BATCH_LOAD_SIZE, unprocessed keys are retried with backoff.
      *
      * @param ids
      *          of the records
-     * @return list of record models
+     * @return list of record models in the order of the ids, ids without a record are skipped
+     * @throws DynamoDBMapper.BatchGetItemException if keys are still unprocessed after all retries
      */
     public List<T> getByIds(List<String> ids){
 
+        // batch requests reject duplicate keys
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        DynamoDBMapperTableModel<T> tableModel = mapper.getTableModel(persistenceClass);
+        Map<Object, T> recordsById = new HashMap<>();
+        for(int from = 0; from < distinctIds.size(); from += Constants.BATCH_LOAD_SIZE){
+
+            List<KeyPair> keys = new ArrayList<>();
+            for(String id : distinctIds.subList(from, Math.min(distinctIds.size(), from + Constants.BATCH_LOAD_SIZE))){
+                keys.add(new KeyPair().withHashKey(id));
+            }
+
+            Map<String, List<Object>> result = mapper.batchLoad(Collections.singletonMap(persistenceClass, keys), BATCH_CONFIG);
+            for(List<Object> records : result.values()){
+                for(Object record : records){
+                    T typedRecord = persistenceClass.cast(record);
+                    recordsById.put(tableModel.hashKey().get(typedRecord), typedRecord);
+                }
+            }
+        }
+
+        // batch results are unordered
         List<T> records = new ArrayList<>();
         for(String id : ids){
-            T record = getByHashKey(id);
+            T record = recordsById.get(id);
             if(record != null) {
                 records.add(record);
             }
@@ -98,6 +319,66 @@ public class GenericPersistenceService<T> {
         return records;
     }
 
+    /**
+     * Save or replace records with BatchWriteItem requests of Constants.BATCH_WRITE_SIZE items, unprocessed items are
+     * retried with backoff. Unlike save, a batch write replaces the whole item, null attributes are removed.
+     *
+     * @param records
+     *          the records to save, generated keys are populated to the instances
+     * @return the result of each batch in order
+     */
+    public List<BatchWriteResult> batchSave(Collection<? extends T> records){
+
+        return batchWrite(new ArrayList<>(records), Collections.emptyList());
+    }
+
+    /**
+     * Delete records with BatchWriteItem requests of Constants.BATCH_WRITE_SIZE items, unprocessed items are
+     * retried with backoff
+     *
+     * @param records
+     *          the records to delete
+     * @return the result of each batch in order
+     */
+    public List<BatchWriteResult> batchDelete(Collection<? extends T> records){
+
+        return batchWrite(Collections.emptyList(), new ArrayList<>(records));
+    }
+
+    /**
+     * Write records in batches, each batch is a single request to the mapper so its outcome can be reported
+     *
+     * @param toSave
+     *          the records to save
+     * @param toDelete
+     *          the records to delete
+     * @return the result of each batch in order, saves first
+     */
+    protected List<BatchWriteResult> batchWrite(List<?> toSave, List<?> toDelete){
+
+        List<BatchWriteResult> results = new ArrayList<>();
+        int total = toSave.size() + toDelete.size();
+        for(int from = 0; from < total; from += Constants.BATCH_WRITE_SIZE){
+
+            int to = Math.min(total, from + Constants.BATCH_WRITE_SIZE);
+            List<?> saves = toSave.subList(Math.min(from, toSave.size()), Math.min(to, toSave.size()));
+            List<?> deletes = toDelete.subList(Math.max(0, from - toSave.size()), Math.max(0, to - toSave.size()));
+
+            int failedItems = 0;
+            Exception exception = null;
+            // failed items might have been written partially, all items are invalidated
+            List<DynamoDBMapper.FailedBatch> failedBatches = mapper.batchWrite(saves, deletes, BATCH_CONFIG);
+            saves.forEach(this::invalidate);
+            deletes.forEach(this::invalidate);
+            for(DynamoDBMapper.FailedBatch failedBatch : failedBatches){
+                failedItems += failedBatch.getUnprocessedItems().values().stream().mapToInt(List::size).sum();
+                exception = failedBatch.getException() != null ? failedBatch.getException() : exception;
+            }
+            results.add(new BatchWriteResult(results.size(), to - from, failedItems, exception));
+        }
+        return results;
+    }
+
     /**
      * Delete the record instance
      *
@@ -107,18 +388,77 @@ public class GenericPersistenceService<T> {
     public void delete(T record){
 
         mapper.delete(record);
+        invalidate(record);
     }
 
     /**
-     * Delete all records - for testing purposes only
+     * Remove a saved or deleted record from the record cache
+     *
+     * @param record
+     *          the written record, its hash key is set
      */
-    public void deleteAll(){
+    protected void invalidate(Object record){
 
-        for(T record : findAll()){
-            delete(record);
+        if(recordCache != null){
+            Object hashKey = getHashKey(record);
+            if(hashKey != null){
+                recordCache.invalidate(getTableName(record.getClass()), hashKey.toString());
+            }
         }
     }
 
+    /**
+     * Get the hash key of a record of any model class
+     *
+     * @param record
+     *          the record
+     * @return value of the hash key attribute
+     */
+    @SuppressWarnings("unchecked")
+    private <R> Object getHashKey(R record){
+
+        return mapper.getTableModel((Class<R>) record.getClass()).hashKey().get(record);
+    }
+
+    /**
+     * Get the table name of a model class, models for testing override the table of their base model
+     *
+     * @param modelClass
+     *          the model class
+     * @return name of the table declared by the closest DynamoDBTable annotation
+     */
+    private static String getTableName(Class<?> modelClass){
+
+        DynamoDBTable table = modelClass.getAnnotation(DynamoDBTable.class);
+        return table != null ? table.tableName() : modelClass.getName();
+    }
+
+    /**
+     * Delete all records, the table is scanned without read capacity limit and deleted batch by batch - for testing
+     * purposes only
+     *
+     * @return the result of each batch in order
+     */
+    public List<BatchWriteResult> deleteAll(){
+
+        List<BatchWriteResult> results = new ArrayList<>();
+        List<T> records = new ArrayList<>(Constants.BATCH_WRITE_SIZE);
+        try(Stream<T> scan = scan(Constants.SCAN_SEGMENTS, 0)){
+            Iterator<T> iterator = scan.iterator();
+            while(iterator.hasNext()){
+                records.add(iterator.next());
+                if(records.size() == Constants.BATCH_WRITE_SIZE || !iterator.hasNext()){
+                    for(BatchWriteResult result : batchDelete(records)){
+                        results.add(new BatchWriteResult(results.size(), result.getItems(), result.getFailedItems(),
+                                result.getException()));
+                    }
+                    records.clear();
+                }
+            }
+        }
+        return results;
+    }
+
     /**
      * Return all available records, scan requests are potentially slow and expensive - only run on test data
      *
@@ -129,4 +469,152 @@ public class GenericPersistenceService<T> {
         DynamoDBScanExpression scanExpression = new DynamoDBScanExpression();
         return mapper.scan(persistenceClass, scanExpression);
     }
+
+    /**
+     * Stream all records with a parallel scan of Constants.SCAN_SEGMENTS segments limited to a share of the
+     * provisioned read capacity of the table, see getScanReadCapacity
+     *
+     * @return lazy stream of all records, has to be closed if it is not consumed completely
+     */
+    public Stream<T> scan(){
+
+        return scan(Constants.SCAN_SEGMENTS, getScanReadCapacity());
+    }
+
+    /**
+     * Get the read capacity units per second a full table scan may consume, Constants.SCAN_READ_CAPACITY_FRACTION of
+     * the provisioned read capacity of the table. Tables without provisioned capacity, e.g. on-demand tables, and
+     * tables which cannot be described are scanned with Constants.SCAN_READ_CAPACITY units per second.
+     *
+     * @return read capacity units per second consumed by all segments of a scan
+     */
+    protected double getScanReadCapacity(){
+
+        try {
+            ProvisionedThroughputDescription throughput = dynamoDB.describeTable(getTableName(persistenceClass))
+                    .getTable().getProvisionedThroughput();
+            if(throughput != null && throughput.getReadCapacityUnits() != null && throughput.getReadCapacityUnits() > 0){
+                return throughput.getReadCapacityUnits() * Constants.SCAN_READ_CAPACITY_FRACTION;
+            }
+        } catch (AmazonClientException e) {
+            // e.g. the role is not allowed to describe the table
+            LOG.warn("Could not describe table of " + persistenceClass.getSimpleName() + ", scanning with "
+                    + Constants.SCAN_READ_CAPACITY + " read capacity units per second: " + e.getMessage());
+        }
+        return Constants.SCAN_READ_CAPACITY;
+    }
+
+    /**
+     * Stream all records with a parallel scan, segments are scanned by a worker each and the pages are buffered
+     * ahead of the consumer. Meant for jobs which need the whole table such as exports or index rebuilds, the read
+     * capacity limit keeps them from throttling live requests.
+     *
+     * @param segments
+     *              number of segments scanned in parallel
+     * @param readCapacityPerSecond
+     *              max read capacity units consumed per second by all segments, 0 for no limit
+     * @return lazy stream of all records in no particular order, has to be closed if it is not consumed completely
+     */
+    public Stream<T> scan(int segments, double readCapacityPerSecond){
+
+        SegmentedScan<T> scan = new SegmentedScan<>(mapper, persistenceClass, segments,
+                new ReadCapacityLimiter(readCapacityPerSecond));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(scan, Spliterator.NONNULL), false)
+                .onClose(scan::close);
+    }
+
+    /**
+     * Retrieve a record by its hash key without blocking, see getByHashKey
+     *
+     * @param hashKey
+     *          of the record
+     *
+     * @return future of the retrieved record, completes with null if the record does not exist
+     */
+    public CompletableFuture<T> getByHashKeyAsync(String hashKey){
+
+        return supplyAsync(() -> getByHashKey(hashKey));
+    }
+
+    /**
+     * Retrieve a record by its hash and range key without blocking, see getByCompositeKey
+     *
+     * @param hashKey
+     *              of the record
+     * @param rangeKey
+     *              of the record
+     *
+     * @return future of the retrieved record, completes with null if the record does not exist
+     */
+    public CompletableFuture<T> getByCompositeKeyAsync(String hashKey, String rangeKey){
+
+        return supplyAsync(() -> getByCompositeKey(hashKey, rangeKey));
+    }
+
+    /**
+     * Retrieve a list of records by its hash keys without blocking, see getByIds
+     *
+     * @param ids
+     *          of the records
+     * @return future of the records in the order of the ids
+     */
+    public CompletableFuture<List<T>> getByIdsAsync(List<String> ids){
+
+        return supplyAsync(() -> getByIds(ids));
+    }
+
+    /**
+     * Run the first page of a query without blocking
+     *
+     * @param queryExpression
+     *          the query, its limit defines the page size
+     * @return future of the records of the first page
+     */
+    public CompletableFuture<List<T>> queryAsync(DynamoDBQueryExpression<T> queryExpression){
+
+        return supplyAsync(() -> mapper.queryPage(persistenceClass, queryExpression).getResults());
+    }
+
+    /**
+     * Save or update a record without blocking, see save
+     *
+     * @param record
+     *          the record to save, the generated id is populated before the future completes
+     * @return future completing when the record has been saved
+     */
+    public CompletableFuture<Void> saveAsync(T record){
+
+        return supplyAsync(() -> {
+            save(record);
+            return null;
+        });
+    }
+
+    /**
+     * Delete the record instance without blocking, see delete
+     *
+     * @param record
+     *          the record instance to delete
+     * @return future completing when the record has been deleted
+     */
+    public CompletableFuture<Void> deleteAsync(T record){
+
+        return supplyAsync(() -> {
+            delete(record);
+            return null;
+        });
+    }
+
+    /**
+     * Run a blocking operation on the shared workers, at most Constants.ASYNC_CONCURRENCY operations of all
+     * services run at the same time, further operations wait in line
+     *
+     * @param operation
+     *          the blocking operation
+     * @return future of the result, completes exceptionally with the exception thrown by the operation
+     */
+    protected <R> CompletableFuture<R> supplyAsync(Supplier<R> operation){
+
+        return CompletableFuture.supplyAsync(operation, ASYNC_EXECUTOR);
+    }
 }
@@ -0,0 +1,522 @@
+package com.juvodu.service;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.juvodu.database.DatabaseHelper;
+import com.juvodu.database.model.BaseSpot;
+import com.juvodu.database.model.Continent;
+import com.juvodu.database.model.Country;
+import com.juvodu.database.model.ResultPage;
+import com.juvodu.database.model.SpotList;
+import com.juvodu.database.model.SpotListPage;
+import com.juvodu.util.Constants;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Service for the materialised spot lists of continents and countries. A list holds the spots serialised as the JSON
+ * array of the list views, a page is read with a single GetItem and copied into the response without mapping the
+ * spots. Lists are built on their first read and patched with the written spots after saves, deletes and forecast
+ * updates, large lists are compressed.
+ *
+ * @author Juvodu
+ */
+public class SpotListService<T extends SpotList, S extends BaseSpot> extends GenericPersistenceService<T>{
+
+    private static final Logger LOG = Logger.getLogger(SpotListService.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** page size of the queries building a list */
+    private static final int BUILD_PAGE_SIZE = 500;
+
+    /** attempts of a patch racing with other writers of the same list */
+    private static final int MAX_PATCH_ATTEMPTS = 3;
+
+    private final SpotService<S> spotService;
+    private int compressionThreshold = Constants.SPOT_LIST_COMPRESSION_THRESHOLD;
+    private long settleDelay = Constants.SPOT_LIST_SETTLE_DELAY;
+
+    /**
+     * Ctor
+     *
+     * @param persistenceClass
+     *              representing the table of the lists
+     * @param spotService
+     *              service of the spot model the lists are built from, e.g. BaseSpot for the list views
+     */
+    public SpotListService(Class<T> persistenceClass, SpotService<S> spotService){
+
+        // versioned puts, a patch fails if the list has been written since it was read
+        super(persistenceClass, DynamoDBMapperConfig.SaveBehavior.PUT);
+        this.spotService = spotService;
+    }
+
+    public SpotListService(Class<T> persistenceClass, SpotService<S> spotService, AmazonDynamoDB dynamoDB){
+
+        // versioned puts, a patch fails if the list has been written since it was read
+        super(persistenceClass, DynamoDBMapperConfig.SaveBehavior.PUT, dynamoDB);
+        this.spotService = spotService;
+    }
+
+    /**
+     * Set the size above which the serialised spots are compressed
+     *
+     * @param compressionThreshold
+     *              size of the JSON array in bytes
+     */
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * Set the time after the last write of a provisional list until it is rebuilt
+     *
+     * @param settleDelay
+     *              delay in milliseconds, has to exceed the replication lag of the index
+     */
+    public void setSettleDelay(long settleDelay) {
+        this.settleDelay = settleDelay;
+    }
+
+    /**
+     * Get a page of the spots of a continent or country, the list is built if it does not exist yet. A list built on
+     * its first read is provisional, as the eventually consistent index might have missed spots written just before,
+     * and is built again once it has not been written for the settle delay. The next page continues after the last
+     * spot of the page, spots inserted before it by patches in between are not returned.
+     *
+     * @param continent
+     *              the continent of the spots
+     * @param country
+     *              the country of the spots, null for all spots of the continent
+     * @param limit
+     *              the max size of the page
+     * @param pageToken
+     *              next page token of the previous page, null for the first page
+     *
+     * @return page holding the JSON array of the spots, null if the list is too large to be materialised or the page
+     *          token belongs to a query, such pages are queried from the spot table
+     * @throws IllegalArgumentException
+     *          if the page token is invalid or belongs to the list of another continent or country
+     */
+    public SpotListPage getPage(Continent continent, Country country, int limit, String pageToken){
+
+        String id = createId(continent, country);
+        int offset = 0;
+        String after = null;
+        if(pageToken != null){
+            Map<String, AttributeValue> key = DatabaseHelper.parsePageToken(pageToken);
+            if(key.get("offset") == null){
+                return null;
+            }
+            AttributeValue tokenList = key.get("list");
+            if(tokenList == null || !id.equals(tokenList.getS())){
+                throw new IllegalArgumentException("Page token does not belong to spot list " + id);
+            }
+            try {
+                offset = Integer.parseInt(key.get("offset").getN());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid page token", e);
+            }
+            if(offset < 0){
+                throw new IllegalArgumentException("Invalid page token");
+            }
+            after = key.get("after") != null ? key.get("after").getS() : null;
+        }
+
+        T list = getByHashKey(id);
+        if(list == null){
+            list = build(continent, country, true);
+        }else if(list.isProvisional() && System.currentTimeMillis() - list.getUpdated() >= settleDelay){
+            list = build(continent, country, false);
+        }
+        if(list.isOversized()){
+            if(pageToken != null){
+                throw new IllegalArgumentException("Page token does not belong to a query of the spot list");
+            }
+            return null;
+        }
+
+        // patches insert and remove spots, the page continues after the last spot of the previous page, at the
+        // offset if that spot has been removed
+        byte[] json = getJson(list);
+        ByteBuffer offsets = list.getOffsets().duplicate();
+        int start = Math.min(offset, list.getCount());
+        if(after != null){
+            int index = indexOf(json, offsets, list.getCount(), after, start - 1);
+            if(index >= 0){
+                start = index + 1;
+            }
+        }
+        int end = (int) Math.min((long) start + Math.max(limit, 0), list.getCount());
+        String nextPageToken = null;
+        if(end < list.getCount()){
+            Map<String, AttributeValue> nextKey = new HashMap<>();
+            nextKey.put("list", new AttributeValue().withS(id));
+            nextKey.put("offset", new AttributeValue().withN(Integer.toString(end)));
+            if(end > 0){
+                nextKey.put("after", new AttributeValue().withS(getSpotId(json, offsets, end - 1)));
+            }
+            nextPageToken = DatabaseHelper.createPageToken(nextKey);
+        }
+        if(start == end){
+            return new SpotListPage("[]", nextPageToken);
+        }
+
+        // the elements of the page are copied, the separator after the last element is replaced by the bracket
+        int from = offsets.getInt(start * 4);
+        int to = offsets.getInt(end * 4) - 1;
+        StringBuilder page = new StringBuilder(to - from + 2);
+        page.append('[').append(new String(json, from, to - from, StandardCharsets.UTF_8)).append(']');
+        return new SpotListPage(page.toString(), nextPageToken);
+    }
+
+    /**
+     * Build the list of a continent or country from the spot table, replaces the stored list
+     *
+     * @param continent
+     *              the continent of the spots
+     * @param country
+     *              the country of the spots, null for all spots of the continent
+     *
+     * @return the built list
+     */
+    public T build(Continent continent, Country country){
+
+        return build(continent, country, false);
+    }
+
+    /**
+     * Build the list of a continent or country from the spot table, the list is saved only if it has not been
+     * written since the build started
+     */
+    private T build(Continent continent, Country country, boolean provisional){
+
+        // read before the query, a list patched during the query fails the versioned save and is kept
+        String id = createId(continent, country);
+        T current = mapper.load(persistenceClass, id, CONSISTENT_READ);
+
+        List<byte[]> elements = new ArrayList<>();
+        String pageToken = null;
+        do {
+            ResultPage<S> page = country != null
+                    ? spotService.findByCountry(continent, country, BUILD_PAGE_SIZE, pageToken)
+                    : spotService.findByContinent(continent, BUILD_PAGE_SIZE, pageToken);
+            for(S spot : page.getResults()){
+                elements.add(serialize(spot));
+            }
+            pageToken = page.getNextPageToken();
+        } while (pageToken != null);
+
+        T list = current != null ? current : createList(id);
+        write(list, elements);
+        list.setProvisional(provisional);
+        try {
+            save(list);
+        } catch (ConditionalCheckFailedException e) {
+
+            // written concurrently, the other list has been built or patched from the same or a later state, a
+            // provisional list stays provisional and is built again later
+            LOG.info("Spot list " + id + " has been written concurrently");
+        }
+        return list;
+    }
+
+    /**
+     * Patch the lists of a continent and of the countries of the written spots, lists which have not been built yet
+     * are left to be built on their first read
+     *
+     * @param continent
+     *              the continent of the written spots
+     * @param saved
+     *              spots which have been created or updated, any model of the spot table
+     * @param deleted
+     *              spots which have been deleted or moved to another country or continent
+     */
+    public void update(Continent continent, Collection<? extends BaseSpot> saved, Collection<? extends BaseSpot> deleted){
+
+        Set<String> countryCodes = new TreeSet<>();
+        for(BaseSpot spot : saved){
+            if(spot.getCountry() != null){
+                countryCodes.add(spot.getCountry().getCode());
+            }
+        }
+        for(BaseSpot spot : deleted){
+            if(spot.getCountry() != null){
+                countryCodes.add(spot.getCountry().getCode());
+            }
+        }
+
+        patch(createId(continent, null), null, saved, deleted);
+        for(String countryCode : countryCodes){
+            patch(createId(continent.getCode(), countryCode), countryCode, saved, deleted);
+        }
+    }
+
+    /**
+     * Replace, insert and remove the written spots of a list
+     */
+    private void patch(String id, String countryCode, Collection<? extends BaseSpot> saved, Collection<? extends BaseSpot> deleted){
+
+        // spots saved with another country are removed from the list of their previous country
+        Map<String, byte[]> savedElements = new LinkedHashMap<>();
+        Map<String, String> savedCountries = new HashMap<>();
+        Set<String> removedIds = new HashSet<>();
+        for(BaseSpot spot : saved){
+            String spotCountryCode = spot.getCountry() != null ? spot.getCountry().getCode() : null;
+            if(countryCode == null || countryCode.equals(spotCountryCode)){
+                savedElements.put(spot.getId(), serialize(toListModel(spot)));
+                savedCountries.put(spot.getId(), spotCountryCode);
+            }else{
+                removedIds.add(spot.getId());
+            }
+        }
+        for(BaseSpot spot : deleted){
+            if(!savedElements.containsKey(spot.getId())){
+                removedIds.add(spot.getId());
+            }
+        }
+
+        for(int attempt = 1; ; attempt++){
+
+            T list = mapper.load(persistenceClass, id, CONSISTENT_READ);
+            if(list == null || list.isOversized()){
+                return;
+            }
+
+            List<byte[]> elements = getElements(list);
+            List<JsonNode> nodes = new ArrayList<>(elements.size());
+            for(byte[] element : elements){
+                nodes.add(readTree(element));
+            }
+
+            // replace in place, remove, then insert new spots after the spots of the same country
+            Set<String> inserted = new HashSet<>(savedElements.keySet());
+            for(int i = elements.size() - 1; i >= 0; i--){
+                String spotId = nodes.get(i).path("id").asText(null);
+                if(savedElements.containsKey(spotId)){
+                    elements.set(i, savedElements.get(spotId));
+                    inserted.remove(spotId);
+                }else if(removedIds.contains(spotId)){
+                    elements.remove(i);
+                    nodes.remove(i);
+                }
+            }
+            for(String spotId : inserted){
+                String spotCountryCode = savedCountries.get(spotId);
+                int position = elements.size();
+                if(spotCountryCode != null){
+                    position = 0;
+                    for(int i = 0; i < nodes.size(); i++){
+                        if(nodes.get(i).path("country").path("code").asText("").compareTo(spotCountryCode) <= 0){
+                            position = i + 1;
+                        }
+                    }
+                }
+                byte[] element = savedElements.get(spotId);
+                elements.add(position, element);
+                nodes.add(position, readTree(element));
+            }
+
+            write(list, elements);
+            try {
+                save(list);
+                return;
+            } catch (ConditionalCheckFailedException e) {
+                if(attempt >= MAX_PATCH_ATTEMPTS){
+                    throw e;
+                }
+                LOG.info("Spot list " + id + " has been written concurrently, patching again");
+            }
+        }
+    }
+
+    /**
+     * Store the serialised spots in a list, compressed above the threshold and left out above the max item size
+     */
+    private void write(T list, List<byte[]> elements){
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        ByteBuffer offsets = ByteBuffer.allocate((elements.size() + 1) * 4);
+        json.write('[');
+        for(int i = 0; i < elements.size(); i++){
+            offsets.putInt(json.size());
+            json.write(elements.get(i), 0, elements.get(i).length);
+            json.write(i < elements.size() - 1 ? ',' : ']');
+        }
+        if(elements.isEmpty()){
+            json.write(']');
+        }
+        offsets.putInt(json.size());
+        offsets.flip();
+
+        byte[] spots = json.toByteArray();
+        boolean compressed = spots.length > compressionThreshold;
+        if(compressed){
+            spots = compress(spots);
+        }
+
+        list.setCount(elements.size());
+        list.setUpdated(System.currentTimeMillis());
+        list.setOversized(spots.length + offsets.remaining() > Constants.SPOT_LIST_MAX_SIZE);
+        list.setCompressed(!list.isOversized() && compressed);
+        list.setSpots(list.isOversized() ? null : ByteBuffer.wrap(spots));
+        list.setOffsets(list.isOversized() ? null : offsets);
+        if(list.isOversized()){
+            LOG.info("Spot list " + list.getId() + " of " + elements.size() + " spots exceeds the max item size");
+        }
+    }
+
+    /**
+     * Split the serialised spots of a list into its elements
+     */
+    private List<byte[]> getElements(T list){
+
+        byte[] json = getJson(list);
+        ByteBuffer offsets = list.getOffsets().duplicate();
+        List<byte[]> elements = new ArrayList<>(list.getCount());
+        for(int i = 0; i < list.getCount(); i++){
+            int from = offsets.getInt(i * 4);
+            int to = offsets.getInt((i + 1) * 4) - 1;
+            elements.add(Arrays.copyOfRange(json, from, to));
+        }
+        return elements;
+    }
+
+    /**
+     * Find a spot in the JSON array of a list, searching outwards from the index it is expected at
+     *
+     * @return index of the spot, -1 if it is not in the list
+     */
+    private static int indexOf(byte[] json, ByteBuffer offsets, int count, String spotId, int expected){
+
+        for(int distance = 0; distance < count; distance++){
+            int before = expected - distance;
+            int after = expected + distance + 1;
+            if(before < 0 && after >= count){
+                break;
+            }
+            if(before >= 0 && before < count && spotId.equals(getSpotId(json, offsets, before))){
+                return before;
+            }
+            if(after >= 0 && after < count && spotId.equals(getSpotId(json, offsets, after))){
+                return after;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the id of an element of the JSON array of a list
+     */
+    private static String getSpotId(byte[] json, ByteBuffer offsets, int index){
+
+        int from = offsets.getInt(index * 4);
+        int to = offsets.getInt((index + 1) * 4) - 1;
+        return readTree(Arrays.copyOfRange(json, from, to)).path("id").asText(null);
+    }
+
+    /**
+     * Get the uncompressed JSON array of a list
+     */
+    private byte[] getJson(T list){
+
+        ByteBuffer spots = list.getSpots().duplicate();
+        byte[] bytes = new byte[spots.remaining()];
+        spots.get(bytes);
+        return list.isCompressed() ? decompress(bytes) : bytes;
+    }
+
+    /**
+     * Convert a spot into the model the lists are built from, the attributes of other models are dropped as by a
+     * query of the list model
+     */
+    @SuppressWarnings("unchecked")
+    private S toListModel(BaseSpot spot){
+
+        if(spot.getClass() == spotService.persistenceClass){
+            return (S) spot;
+        }
+        DynamoDBMapperTableModel<BaseSpot> tableModel = mapper.getTableModel((Class<BaseSpot>) spot.getClass());
+        return mapper.getTableModel(spotService.persistenceClass).unconvert(tableModel.convert(spot));
+    }
+
+    private T createList(String id){
+
+        try {
+            T list = persistenceClass.newInstance();
+            list.setId(id);
+            return list;
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Could not create spot list " + id, e);
+        }
+    }
+
+    private static String createId(Continent continent, Country country){
+
+        return createId(continent.getCode(), country != null ? country.getCode() : null);
+    }
+
+    private static String createId(String continentCode, String countryCode){
+
+        return countryCode != null ? continentCode + "#" + countryCode : continentCode;
+    }
+
+    private static byte[] serialize(BaseSpot spot){
+
+        try {
+            return objectMapper.writeValueAsBytes(spot);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not serialize spot " + spot.getId(), e);
+        }
+    }
+
+    private static JsonNode readTree(byte[] element){
+
+        try {
+            return objectMapper.readTree(element);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not parse spot list element", e);
+        }
+    }
+
+    private static byte[] compress(byte[] bytes){
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not compress spot list", e);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] bytes){
+
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream(bytes.length * 4);
+        byte[] buffer = new byte[8192];
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            int read;
+            while ((read = in.read(buffer)) > 0){
+                decompressed.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not decompress spot list", e);
+        }
+        return decompressed.toByteArray();
+    }
+}
@@ -3,15 +3,31 @@ package com.juvodu.service;
 import ch.hsr.geohash.GeoHash;
 import ch.hsr.geohash.WGS84Point;
 import ch.hsr.geohash.queries.GeoHashCircleQuery;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.juvodu.database.DatabaseHelper;
+import com.juvodu.database.GeoQueryPlanner;
+import com.juvodu.database.HilbertKeyEncoder;
+import com.juvodu.database.SpatialKeyEncoder;
+import com.juvodu.database.converter.CompressedStringTypeConverter;
 import com.juvodu.database.model.*;
 import com.juvodu.util.Constants;
 import com.juvodu.util.GeoHelper;
+import org.apache.log4j.Logger;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Service for Spot retrieval and processing.
@@ -20,15 +36,85 @@ import java.util.stream.Collectors;
  */
 public class SpotService<T extends BaseSpot> extends GenericPersistenceService<T>{
 
+    private static final Logger LOG = Logger.getLogger(SpotService.class);
+
+    /** worker threads for geohash cell queries, shared by all instances and kept alive by warm containers */
+    private static final ExecutorService QUERY_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "spot-query");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** key attributes of the start key of a continent or country query, the key of the table and of the index */
+    private static final Set<String> LIST_QUERY_KEY = new HashSet<>(Arrays.asList("id", "continent", "country"));
+
     private final DatabaseHelper<T> databaseHelper;
+    private final SpatialKeyEncoder hilbertKeyEncoder = new HilbertKeyEncoder();
+    private GeoQueryPlanner queryPlanner;
     private final NotificationService notificationService;
+    private int queryConcurrency = Constants.GEOHASH_QUERY_CONCURRENCY;
+    private boolean geokeyQueries = Constants.GEOKEY_QUERIES_ENABLED;
+    private boolean listIndexQueries = Constants.LIST_INDEX_QUERIES_ENABLED;
 
     public SpotService(Class<T> persistenceClass){
 
         // null values do not delete values
         super(persistenceClass, DynamoDBMapperConfig.SaveBehavior.UPDATE_SKIP_NULL_ATTRIBUTES);
-        this.databaseHelper = new DatabaseHelper();
+        this.databaseHelper = new DatabaseHelper<>(mapper.getTableModel(persistenceClass));
+        this.notificationService = new NotificationService();
+        setSpatialKeyEncoder(DatabaseHelper.getSpatialKeyEncoder(Constants.SPATIAL_KEY_ENCODING));
+    }
+
+    public SpotService(Class<T> persistenceClass, AmazonDynamoDB dynamoDB){
+
+        // null values do not delete values
+        super(persistenceClass, DynamoDBMapperConfig.SaveBehavior.UPDATE_SKIP_NULL_ATTRIBUTES, dynamoDB);
+        this.databaseHelper = new DatabaseHelper<>(mapper.getTableModel(persistenceClass));
         this.notificationService = new NotificationService();
+        setSpatialKeyEncoder(DatabaseHelper.getSpatialKeyEncoder(Constants.SPATIAL_KEY_ENCODING));
+    }
+
+    /**
+     * Set the max number of geohash cell queries running in parallel for a single search
+     *
+     * @param queryConcurrency
+     *              concurrency bound, 1 runs all cell queries sequentially on the calling thread
+     */
+    public void setQueryConcurrency(int queryConcurrency) {
+        this.queryConcurrency = Math.max(1, queryConcurrency);
+    }
+
+    /**
+     * Switch the geohash cell queries between the continent-geohash-index and the continent-geokey-index
+     *
+     * @param geokeyQueries
+     *              true to query key ranges of the compact geokey, false to query prefixes of the binary geohash
+     */
+    public void setGeokeyQueries(boolean geokeyQueries) {
+        this.geokeyQueries = geokeyQueries;
+    }
+
+    /**
+     * Switch the list queries of BaseSpot services between the continent-country-index and the
+     * continent-country-list-index
+     *
+     * @param listIndexQueries
+     *              true to query the index projecting the BaseSpot attributes only, false to query the index
+     *              projecting all attributes
+     */
+    public void setListIndexQueries(boolean listIndexQueries) {
+        this.listIndexQueries = listIndexQueries;
+    }
+
+    /**
+     * Set the encoding of the spatial key queried by range queries
+     *
+     * @param encoder
+     *              encoder of the geokey or the hilbertkey
+     */
+    public void setSpatialKeyEncoder(SpatialKeyEncoder encoder) {
+        this.queryPlanner = new GeoQueryPlanner(encoder, Constants.PLANNER_MAX_LEVEL,
+                Constants.PLANNER_MAX_CELLS, Constants.PLANNER_MAX_RANGES);
     }
 
     /**
@@ -41,11 +127,24 @@ public class SpotService<T extends BaseSpot> extends GenericPersistenceService<T
      */
     public String save(Spot spot){
 
-        // create a geohash for each spot for fast queries based on position
+        // create a geohash for each spot for fast queries based on position, both keys are written until the
+        // geohash index is retired
         Position position = spot.getPosition();
         if(position != null) {
             String base32GeoHash = DatabaseHelper.createBinaryGeohash(position);
             spot.setGeohash(base32GeoHash);
+            spot.setGeokey(DatabaseHelper.createGeokey(position));
+            spot.setHilbertkey(hilbertKeyEncoder.encode(position));
+        }
+
+        // nearby spots only change for new spots and spots which moved, spots saved before nearby spots existed
+        // get their own list on the next save. saves without a position keep the stored position and list.
+        Spot previous = spot.getId() != null ? mapper.load(spot.getClass(), spot.getId()) : null;
+        boolean moved = position != null && (previous == null || !Objects.equals(previous.getPosition(), position));
+        List<T> candidates = new ArrayList<>();
+        if(position != null && (moved || previous.getNearbySpots() == null)){
+            candidates = findNearbyCandidates(spot.getId(), position);
+            spot.setNearbySpots(createNearbySpots(position, candidates));
         }
 
         // initialize cron date for new spots, spot will be populated with weather data after 24h max
@@ -61,10 +160,198 @@ public class SpotService<T extends BaseSpot> extends GenericPersistenceService<T
 
         // save does not return, instead it populates the generated id to the passed spot instance
         mapper.save(spot);
+        invalidate(spot);
+
+        if(moved){
+            updateNeighbours(spot, previous != null ? previous.getPosition() : null, candidates);
+        }
 
         return spot.getId();
     }
 
+    /**
+     * Save or update a spot instance without blocking, spots are saved with their spatial keys, nearby spots and
+     * topic as by save(Spot)
+     *
+     * @param record
+     *          the spot to save, the generated id is populated before the future completes
+     * @return future completing when the spot has been saved
+     */
+    @Override
+    public CompletableFuture<Void> saveAsync(T record){
+
+        if(!(record instanceof Spot)){
+            return super.saveAsync(record);
+        }
+        return supplyAsync(() -> {
+            save((Spot) record);
+            return null;
+        });
+    }
+
+    /**
+     * Update the surf conditions and the cron date of an existing spot, the description, the spatial keys, the
+     * nearby spots and the topic of the spot are neither read nor written
+     *
+     * @param spot
+     *          the spot with its id and the new conditions
+     *
+     * @return true if the spot has been updated, false if it has been deleted in the meantime
+     */
+    public boolean updateConditions(T spot){
+
+        return update(spot, "swellHeight", "swellPeriod", "windspeedKmph", "winddir16Point", "cronDate");
+    }
+
+    /**
+     * Delete a spot, spots listing the deleted spot as nearby spot get their list recomputed
+     *
+     * @param record
+     *          the spot to delete
+     */
+    @Override
+    public void delete(T record){
+
+        mapper.delete(record);
+        invalidate(record);
+        if(record instanceof Spot && record.getPosition() != null){
+            updateNeighbours((Spot) record, record.getPosition(), Collections.emptyList());
+        }
+    }
+
+    /**
+     * Find the spots around a position which are close enough to be nearby spots, the closest
+     * Constants.NEARBY_SPOTS_COUNT of them are the nearby spots of a spot at this position
+     *
+     * @param id
+     *          id of the spot at the position which is excluded, null for a new spot
+     * @param position
+     *          the position to search around
+     * @return up to Constants.NEARBY_SPOTS_CANDIDATES spots within Constants.NEARBY_SPOTS_MAX_DISTANCE sorted by distance
+     */
+    private List<T> findNearbyCandidates(String id, Position position){
+
+        List<T> candidates = new ArrayList<>();
+        for(T candidate : findNearest(position, Constants.NEARBY_SPOTS_CANDIDATES + 1)){
+            if(!candidate.getId().equals(id) && candidates.size() < Constants.NEARBY_SPOTS_CANDIDATES
+                    && GeoHelper.getDistance(position, candidate.getPosition()) <= Constants.NEARBY_SPOTS_MAX_DISTANCE * 1000){
+                candidates.add(candidate);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Create the nearby spots of a position
+     *
+     * @param position
+     *          the position of the spot holding the list, null for spots without position
+     * @param candidates
+     *          spots around the position sorted by distance
+     * @return list of the closest candidates with their distance in meter
+     */
+    private List<NearbySpot> createNearbySpots(Position position, List<? extends BaseSpot> candidates){
+
+        List<NearbySpot> nearbySpots = new ArrayList<>();
+        for(BaseSpot candidate : candidates){
+            if(nearbySpots.size() < Constants.NEARBY_SPOTS_COUNT){
+                nearbySpots.add(new NearbySpot(candidate, GeoHelper.getDistance(position, candidate.getPosition())));
+            }
+        }
+        return nearbySpots;
+    }
+
+    /**
+     * Update the nearby spots of the spots around a saved, moved or deleted spot. nearby is not symmetric,
+     * so the spot is offered to all candidates around its position and not only to its own nearby spots.
+     * Spots which listed the spot at its previous position, or list it further away than the new position,
+     * lose it and get their list recomputed to refill the free slot.
+     *
+     * @param spot
+     *          the saved or deleted spot
+     * @param previousPosition
+     *          the position before saving or deleting, null for new spots
+     * @param candidates
+     *          the candidates around the current position, empty for deleted spots
+     */
+    private void updateNeighbours(Spot spot, Position previousPosition, List<T> candidates){
+
+        Set<String> neighbourIds = new LinkedHashSet<>();
+        candidates.forEach(candidate -> neighbourIds.add(candidate.getId()));
+        if(previousPosition != null){
+            findNearbyCandidates(spot.getId(), previousPosition).forEach(candidate -> neighbourIds.add(candidate.getId()));
+        }
+
+        for(String neighbourId : neighbourIds){
+
+            Spot neighbour = mapper.load(spot.getClass(), neighbourId);
+            if(neighbour == null || neighbour.getPosition() == null){
+                continue;
+            }
+
+            // neighbours saved before nearby spots existed get their complete list, the index might still return
+            // the spot at its previous position
+            boolean backfill = neighbour.getNearbySpots() == null;
+            List<NearbySpot> nearbySpots;
+            if(backfill){
+                List<T> neighbourCandidates = findNearbyCandidates(neighbour.getId(), neighbour.getPosition());
+                neighbourCandidates.removeIf(c -> c.getId().equals(spot.getId()));
+                nearbySpots = createNearbySpots(neighbour.getPosition(), neighbourCandidates);
+            }else{
+                nearbySpots = new ArrayList<>(neighbour.getNearbySpots());
+            }
+            boolean listed = nearbySpots.removeIf(nearbySpot -> nearbySpot.getId().equals(spot.getId()));
+            boolean candidate = candidates.stream().anyMatch(c -> c.getId().equals(neighbourId));
+            int distance = spot.getPosition() != null ? GeoHelper.getDistance(neighbour.getPosition(), spot.getPosition()) : 0;
+            boolean full = nearbySpots.size() >= Constants.NEARBY_SPOTS_COUNT;
+
+            if(candidate && distance <= Constants.NEARBY_SPOTS_MAX_DISTANCE * 1000
+                    && (!full || distance < nearbySpots.get(nearbySpots.size() - 1).getDistance())){
+
+                // the spot takes the slot of the farthest nearby spot
+                nearbySpots.add(new NearbySpot(spot, distance));
+                nearbySpots.sort(Comparator.comparing(NearbySpot::getDistance));
+                neighbour.setNearbySpots(new ArrayList<>(nearbySpots.subList(0, Math.min(nearbySpots.size(), Constants.NEARBY_SPOTS_COUNT))));
+            }else if(listed){
+
+                // the index might still return the spot at its previous position
+                List<T> neighbourCandidates = findNearbyCandidates(neighbour.getId(), neighbour.getPosition());
+                neighbourCandidates.removeIf(c -> c.getId().equals(spot.getId()));
+                neighbour.setNearbySpots(createNearbySpots(neighbour.getPosition(), neighbourCandidates));
+            }else if(backfill){
+                neighbour.setNearbySpots(nearbySpots);
+            }else{
+                continue;
+            }
+
+            // only the list is written, concurrent updates of the conditions are kept, failed neighbours keep
+            // their previous list
+            try {
+                if(!updateSpot(neighbour.getClass(), neighbour, "nearbySpots")){
+                    LOG.error("Could not update nearby spots of spot " + neighbourId + ", it has been deleted");
+                }
+            } catch (Exception e) {
+                LOG.error("Could not update nearby spots of spot " + neighbourId, e);
+            }
+        }
+    }
+
+    /**
+     * Set attributes of an existing spot mapped by its own class, see update(T, String...)
+     *
+     * @param modelClass
+     *          the class the spot is mapped with
+     * @param spot
+     *          the spot with its id and the new attribute values
+     * @param attributeNames
+     *          the attributes to set
+     * @return true if the spot has been updated, false if the spot does not exist
+     */
+    private <S extends Spot> boolean updateSpot(Class<S> modelClass, Spot spot, String... attributeNames){
+
+        return update(modelClass, modelClass.cast(spot), attributeNames);
+    }
+
     /**
      * Find all spots for a given continent
      *
@@ -77,10 +364,29 @@ public class SpotService<T extends BaseSpot> extends GenericPersistenceService<T
      */
     public List<T> findByContinent(Continent continent, int limit){
 
+        return findByContinent(continent, limit, null).getResults();
+    }
+
+    /**
+     * Find one page of the spots of a continent
+     *
+     * @param continent
+     *          used to filter spots
+     * @param limit
+     *          the max size of the page
+     * @param pageToken
+     *          next page token of the previous page, null for the first page
+     *
+     * @return page of spots in the continent with the token of the next page
+     * @throws IllegalArgumentException
+     *          if the page token is invalid or belongs to another continent
+     */
+    public ResultPage<T> findByContinent(Continent continent, int limit, String pageToken){
+
         String filterExpression = "continent = :val1";
         DynamoDBQueryExpression<T> queryExpression = databaseHelper.createIndexQueryExpression(continent.getCode(),
-                null, Constants.CONTINENT_COUNTRY_INDEX, filterExpression, limit);
-        return mapper.queryPage(persistenceClass, queryExpression).getResults();
+                null, getListIndex(), filterExpression, limit);
+        return queryPage(queryExpression, continent, null, pageToken);
     }
 
     /**
@@ -98,11 +404,83 @@ public class SpotService<T extends BaseSpot> extends GenericPersistenceService<T
      */
     public List<T> findByCountry(Continent continent, Country country, int limit){
 
+        return findByCountry(continent, country, limit, null).getResults();
+    }
+
+    /**
+     * Find one page of the spots of a country
+     *
+     * @param continent
+     *              needs to be specified as it is the partition key of the continent-index
+     * @param country
+     *              the country to filter for, can be used as it is the range key of the continent-index
+     * @param limit
+     *              the max size of the page
+     * @param pageToken
+     *              next page token of the previous page, null for the first page
+     *
+     * @return page of spots in the country with the token of the next page
+     * @throws IllegalArgumentException
+     *          if the page token is invalid or belongs to another continent or country
+     */
+    public ResultPage<T> findByCountry(Continent continent, Country country, int limit, String pageToken){
+
         String filterExpression = "continent = :val1 and country = :val2";
         DynamoDBQueryExpression<T> queryExpression = databaseHelper.createIndexQueryExpression(continent.getCode(),
-                country.getCode(), Constants.CONTINENT_COUNTRY_INDEX, filterExpression, limit);
+                country.getCode(), getListIndex(), filterExpression, limit);
 
-        return mapper.queryPage(persistenceClass, queryExpression).getResults();
+        return queryPage(queryExpression, continent, country, pageToken);
+    }
+
+    /**
+     * Get the index of continent and country queries, the list index only projects the attributes of BaseSpot
+     *
+     * @return name of the list index for BaseSpot services, otherwise the index projecting all attributes
+     */
+    private String getListIndex(){
+
+        return listIndexQueries && !Spot.class.isAssignableFrom(persistenceClass)
+                ? Constants.CONTINENT_COUNTRY_LIST_INDEX : Constants.CONTINENT_COUNTRY_INDEX;
+    }
+
+    /**
+     * Run a query of the continent and country index starting after the key of a page token
+     *
+     * @param queryExpression
+     *              the query, its limit defines the page size
+     * @param continent
+     *              the queried partition, a token must belong to it
+     * @param country
+     *              the queried country, a token must belong to it, null for queries of the whole continent
+     * @param pageToken
+     *              next page token of the previous page, null for the first page
+     *
+     * @return page of spots with the token of the next page
+     * @throws IllegalArgumentException
+     *          if the token does not hold a key of the index or belongs to another continent or country
+     */
+    private ResultPage<T> queryPage(DynamoDBQueryExpression<T> queryExpression, Continent continent, Country country,
+                                    String pageToken){
+
+        if(pageToken != null){
+
+            // tokens of other queries would be rejected by DynamoDB with a validation error
+            Map<String, AttributeValue> exclusiveStartKey = DatabaseHelper.parsePageToken(pageToken);
+            if(!exclusiveStartKey.keySet().equals(LIST_QUERY_KEY)
+                    || exclusiveStartKey.values().stream().anyMatch(value -> value.getS() == null)){
+                throw new IllegalArgumentException("Page token does not belong to a continent or country query");
+            }
+            if(!continent.getCode().equals(exclusiveStartKey.get("continent").getS())){
+                throw new IllegalArgumentException("Page token does not belong to continent " + continent.getCode());
+            }
+            if(country != null && !country.getCode().equals(exclusiveStartKey.get("country").getS())){
+                throw new IllegalArgumentException("Page token does not belong to country " + country.getCode());
+            }
+            queryExpression.withExclusiveStartKey(exclusiveStartKey);
+        }
+
+        QueryResultPage<T> page = mapper.queryPage(persistenceClass, queryExpression);
+        return new ResultPage<>(page.getResults(), DatabaseHelper.createPageToken(page.getLastEvaluatedKey()));
     }
 
     /**
@@ -121,33 +499,401 @@ public class SpotService<T extends BaseSpot> extends GenericPersistenceService<T
      */
     public List<T> findByDistance(Continent continent, Position position, int searchRadius, int limit){
 
+        return findByDistance(continent, position, searchRadius, limit, new QueryCost());
+    }
+
+    /**
+     * Find all spots in a given radius and record the cost of the search. With geokey queries the key ranges
+     * are planned by the GeoQueryPlanner, otherwise each cell of the GeoHashCircleQuery is queried separately.
+     *
+     * @param continent
+     *          the continent in which the search takes place (partition key of the geohash or geokey index)
+     * @param position
+     *          which is the center of the radius
+     * @param searchRadius
+     *          search radius in km
+     * @param limit
+     *          max amount of spots read per query
+     * @param cost
+     *          receives the queries issued, items read and items returned
+     *
+     * @return list of spots within the specifed radius
+     */
+    public List<T> findByDistance(Continent continent, Position position, int searchRadius, int limit, QueryCost cost){
+
         int searchRadiusMeter = searchRadius * 1000;
-        List<T> spots = new LinkedList<>();
-        GeoHashCircleQuery geoHashCircleQuery = new GeoHashCircleQuery(new WGS84Point(position.getLatitude(), position.getLongitude()), searchRadiusMeter);
-        List<GeoHash> searchHashes = geoHashCircleQuery.getSearchHashes();
+        List<DynamoDBQueryExpression<T>> queryExpressions = new ArrayList<>();
+        if(geokeyQueries){
+            for(GeoKeyRange range : queryPlanner.planRadius(position, searchRadiusMeter)){
+                queryExpressions.add(createRangeQueryExpression(continent, range, limit));
+            }
+        }else {
+            GeoHashCircleQuery geoHashCircleQuery = new GeoHashCircleQuery(new WGS84Point(position.getLatitude(), position.getLongitude()), searchRadiusMeter);
+            for (GeoHash geoHash : geoHashCircleQuery.getSearchHashes()) {
+                queryExpressions.add(createCellQueryExpression(continent, geoHash, limit));
+            }
+        }
+
+        // merge results of all cells, a spot is only returned once
+        Map<String, T> spotsById = new LinkedHashMap<>();
+        for(List<T> cellSpots : queryPages(queryExpressions, false, cost)){
+            cellSpots.forEach(spot -> spotsById.putIfAbsent(spot.getId(), spot));
+        }
+        List<T> candidates = new ArrayList<>(spotsById.values());
 
-        for(GeoHash geoHash : searchHashes){
+        // fine filtering by distance on primitive coordinates, distances are truncated to km
+        int size = candidates.size();
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        for(int i = 0; i < size; i++){
+            latitudes[i] = candidates.get(i).getPosition().getLatitude();
+            longitudes[i] = candidates.get(i).getPosition().getLongitude();
+        }
+        int[] indexes = new int[size];
+        int[] distances = new int[size];
+        int count = GeoHelper.filterByDistance(position.getLatitude(), position.getLongitude(), latitudes, longitudes,
+                0, size, searchRadius * 1000 + 999, indexes, distances);
 
-            //rough and fast filtering by geohash
-            String binaryHashString = geoHash.toBinaryString();
-            String filterExpression = "continent = :val1 and begins_with(geohash,:val2)";
-            DynamoDBQueryExpression<T> queryExpression = databaseHelper.createIndexQueryExpression(continent.getCode(),
-                    binaryHashString, Constants.CONTINENT_GEOHASH_INDEX, filterExpression, limit);
-            spots.addAll(mapper.queryPage(persistenceClass, queryExpression).getResults());
+        List<T> spots = new ArrayList<>(count);
+        for(int i = 0; i < count; i++){
+            T spot = candidates.get(indexes[i]);
+            spot.setDistance(distances[i] / 1000);
+            spots.add(spot);
         }
 
-        // calculate distance to each spot in km
-        spots.forEach(spot -> spot.setDistance(GeoHelper.getDistance(position, spot.getPosition())/1000));
+        // sorting by distance
+        spots.sort(Comparator.comparing(T::getDistance));
+        cost.addItemsReturned(spots.size());
+        return spots;
+    }
+
+    /**
+     * Find the k closest spots to a position in all continents. The search starts in the geohash cell
+     * of the position and moves outward ring by ring, it stops as soon as the k-th closest spot found
+     * is nearer than any unexplored cell or after the max amount of rings has been searched.
+     *
+     * @param position
+     *          to which the closest spots are searched
+     * @param k
+     *          the amount of spots to find
+     *
+     * @return list of up to k spots sorted by distance
+     */
+    public List<T> findNearest(Position position, int k){
+
+        int precision = Constants.NEAREST_GEOHASH_PRECISION;
+        GeoHash centerCell = GeoHash.withBitPrecision(position.getLatitude(), position.getLongitude(), precision);
+        ch.hsr.geohash.BoundingBox centerBox = centerCell.getBoundingBox();
 
-        // fine filtering and sorting by distance
-        spots = spots.stream()
-                .filter(spot -> searchRadius >= spot.getDistance())
-                .sorted(Comparator.comparing(T::getDistance))
-                .collect(Collectors.toList());
+        // distance in meter by spot id, the heap keeps the k closest spots with the farthest on top
+        Map<String, Integer> distances = new HashMap<>();
+        PriorityQueue<T> nearest = new PriorityQueue<>(Comparator.comparing((T spot) -> distances.get(spot.getId())).reversed());
+        Set<String> visitedCells = new HashSet<>();
 
+        for(int ring = 0; ring <= Constants.NEAREST_MAX_RINGS && k > 0; ring++){
+
+            // query each new cell of the ring in every continent the cell can intersect
+            List<DynamoDBQueryExpression<T>> queryExpressions = new ArrayList<>();
+            for(GeoHash cell : getRing(centerBox, ring, precision)){
+                ch.hsr.geohash.BoundingBox box = cell.getBoundingBox();
+                List<BoundingBox> cellBoxes = Collections.singletonList(
+                        new BoundingBox(box.getMinLat(), box.getMinLon(), box.getMaxLat(), box.getMaxLon()));
+                if(visitedCells.add(cell.toBinaryString())){
+                    for(Continent continent : Continent.values()){
+                        if(continent.intersects(cellBoxes)){
+                            if(geokeyQueries){
+                                for(GeoKeyRange range : queryPlanner.planCell(cell)){
+                                    queryExpressions.add(createRangeQueryExpression(continent, range, Constants.NEAREST_CELL_LIMIT));
+                                }
+                            }else {
+                                queryExpressions.add(createCellQueryExpression(continent, cell, Constants.NEAREST_CELL_LIMIT));
+                            }
+                        }
+                    }
+                }
+            }
+
+            // cells are read completely, a cell cut off in key order might miss the closest spots
+            for(List<T> cellSpots : queryPages(queryExpressions, true, new QueryCost())){
+                for(T spot : cellSpots){
+                    if(spot.getPosition() != null && !distances.containsKey(spot.getId())){
+                        int distance = GeoHelper.getDistance(position, spot.getPosition());
+                        distances.put(spot.getId(), distance);
+                        spot.setDistance(distance / 1000);
+                        nearest.add(spot);
+                        if(nearest.size() > k){
+                            nearest.poll();
+                        }
+                    }
+                }
+            }
+
+            // no unexplored cell can contain a spot closer than the k-th spot
+            if(nearest.size() == k && distances.get(nearest.peek().getId()) <= getUnexploredDistance(position, centerBox, ring)){
+                break;
+            }
+        }
+
+        List<T> spots = new ArrayList<>(nearest);
+        spots.sort(Comparator.comparing(spot -> distances.get(spot.getId())));
         return spots;
     }
 
+    /**
+     * Find spots inside a bounding box, e.g. the viewport of a map. The box is covered by at most
+     * Constants.VIEWPORT_MAX_CELLS geohash cells which are queried in all continents intersecting the box.
+     *
+     * @param box
+     *          the area to search in
+     * @param limit
+     *          the max size of the returned result list and of each cell query
+     *
+     * @return list of spots inside the box, the closest to the center of the box first
+     */
+    public List<T> findByBoundingBox(BoundingBox box, int limit){
+
+        // the cells finish in any order, the spots are cut by distance to the center and id to be stable
+        Position center = box.getCenter();
+        List<T> spots = queryBoundingBox(box, limit, false);
+        spots.sort(Comparator.comparingInt((T spot) -> GeoHelper.getDistance(center, spot.getPosition()))
+                .thenComparing(T::getId));
+        return spots.size() > limit ? new ArrayList<>(spots.subList(0, limit)) : spots;
+    }
+
+    /**
+     * Find clusters of spots inside a bounding box, used instead of single spots for low zoom levels of a map.
+     * Each cell of the cover of the box is read completely in pages of Constants.VIEWPORT_CLUSTER_CELL_LIMIT spots,
+     * so counts and centroids include all spots of the box.
+     *
+     * @param box
+     *          the area to search in
+     * @param clusterPrecision
+     *          number of geohash bits defining a cluster, spots sharing the prefix are aggregated
+     *
+     * @return list of clusters with count and centroid
+     */
+    public List<SpotCluster> findClustersByBoundingBox(BoundingBox box, int clusterPrecision){
+
+        return GeoHelper.clusterByGeohash(queryBoundingBox(box, Constants.VIEWPORT_CLUSTER_CELL_LIMIT, true), clusterPrecision);
+    }
+
+    /**
+     * Query all cells covering a bounding box and keep the spots inside the box
+     *
+     * @param box
+     *          the area to search in
+     * @param limit
+     *          max amount of spots read per cell, the page size if all pages are read
+     * @param allPages
+     *          true to read each cell completely
+     *
+     * @return list of spots inside the box
+     */
+    private List<T> queryBoundingBox(BoundingBox box, int limit, boolean allPages){
+
+        List<BoundingBox> boxes = Collections.singletonList(box);
+        List<DynamoDBQueryExpression<T>> queryExpressions = new ArrayList<>();
+        for(Continent continent : Continent.values()){
+            if(continent.intersects(boxes)){
+                if(geokeyQueries){
+                    // adjacent cells are read by a single range query
+                    for(GeoKeyRange range : queryPlanner.planBoundingBox(box)){
+                        queryExpressions.add(createRangeQueryExpression(continent, range, limit));
+                    }
+                }else {
+                    for(GeoHash cell : GeoQueryPlanner.getCoveringCells(boxes, Constants.VIEWPORT_MAX_PRECISION, Constants.VIEWPORT_MAX_CELLS)){
+                        queryExpressions.add(createCellQueryExpression(continent, cell, limit));
+                    }
+                }
+            }
+        }
+
+        Map<String, T> spotsById = new LinkedHashMap<>();
+        for(List<T> cellSpots : queryPages(queryExpressions, allPages, new QueryCost())){
+            for(T spot : cellSpots){
+                if(spot.getPosition() != null && box.contains(spot.getPosition())){
+                    spotsById.putIfAbsent(spot.getId(), spot);
+                }
+            }
+        }
+        return new ArrayList<>(spotsById.values());
+    }
+
+    /**
+     * Create the query for all spots of a geohash cell in a continent
+     *
+     * @param continent
+     *          the partition key of the continent-geohash-index
+     * @param cell
+     *          the geohash cell to query
+     * @param limit
+     *          max amount of spots read
+     *
+     * @return prepared query for the cell
+     */
+    private DynamoDBQueryExpression<T> createCellQueryExpression(Continent continent, GeoHash cell, int limit){
+
+        //rough and fast filtering by geohash
+        String binaryHashString = cell.toBinaryString();
+        String filterExpression = "continent = :val1 and begins_with(geohash,:val2)";
+        return databaseHelper.createIndexQueryExpression(continent.getCode(),
+                binaryHashString, Constants.CONTINENT_GEOHASH_INDEX, filterExpression, limit);
+    }
+
+    /**
+     * Create the query for all spots of a key range of the spatial key in a continent
+     *
+     * @param continent
+     *          the partition key of the index of the spatial key
+     * @param range
+     *          the key range to query
+     * @param limit
+     *          max amount of spots read per cell, the range reads up to this many spots for each cell it covers
+     *
+     * @return prepared query for the range
+     */
+    private DynamoDBQueryExpression<T> createRangeQueryExpression(Continent continent, GeoKeyRange range, int limit){
+
+        // a merged range replaces the queries of all its cells, each of which read up to the limit
+        int rangeLimit = (int) Math.min((long) limit * Math.max(1, range.getCellCount()), Integer.MAX_VALUE);
+        SpatialKeyEncoder encoder = queryPlanner.getEncoder();
+        String filterExpression = "continent = :val1 and " + encoder.getAttributeName() + " between :val2 and :val3";
+        return databaseHelper.createIndexRangeQueryExpression(continent.getCode(), range.getFirstKey(), range.getLastKey(),
+                encoder.getIndexName(), filterExpression, rangeLimit);
+    }
+
+    /**
+     * Get the geohash cells with a distance of exactly ring cells to the center cell
+     *
+     * @param centerBox
+     *          bounding box of the center cell
+     * @param ring
+     *          distance to the center cell in cells, 0 returns the center cell
+     * @param precision
+     *          bit precision of the center cell
+     *
+     * @return cells of the ring, cells beyond the poles are skipped
+     */
+    private List<GeoHash> getRing(ch.hsr.geohash.BoundingBox centerBox, int ring, int precision){
+
+        WGS84Point center = centerBox.getCenterPoint();
+        List<GeoHash> cells = new ArrayList<>();
+        for(int dy = -ring; dy <= ring; dy++){
+
+            double latitude = center.getLatitude() + dy * centerBox.getLatitudeSize();
+            if(latitude < -90 || latitude > 90){
+                continue;
+            }
+
+            for(int dx = -ring; dx <= ring; dx++){
+                if(Math.max(Math.abs(dx), Math.abs(dy)) == ring){
+                    double longitude = center.getLongitude() + dx * centerBox.getLongitudeSize();
+                    longitude = ((longitude + 180) % 360 + 360) % 360 - 180; // wrap around the antimeridian
+                    cells.add(GeoHash.withBitPrecision(latitude, longitude, precision));
+                }
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Calculate a lower bound for the distance of the position to any cell outside of the explored rings
+     *
+     * @param position
+     *          center of the search
+     * @param centerBox
+     *          bounding box of the center cell
+     * @param ring
+     *          last explored ring
+     *
+     * @return distance in meter to the border of the explored area
+     */
+    private double getUnexploredDistance(Position position, ch.hsr.geohash.BoundingBox centerBox, int ring){
+
+        double latitude = position.getLatitude();
+        double longitude = position.getLongitude();
+        double minLat = centerBox.getMinLat() - ring * centerBox.getLatitudeSize();
+        double maxLat = centerBox.getMaxLat() + ring * centerBox.getLatitudeSize();
+        double minLon = centerBox.getMinLon() - ring * centerBox.getLongitudeSize();
+        double maxLon = centerBox.getMaxLon() + ring * centerBox.getLongitudeSize();
+
+        // distance to the parallels along the meridian of the position
+        double distance = Double.MAX_VALUE;
+        if(maxLat < 90){
+            distance = Math.min(distance, Math.toRadians(maxLat - latitude) * GeoHelper.EARTH_RADIUS);
+        }
+        if(minLat > -90){
+            distance = Math.min(distance, Math.toRadians(latitude - minLat) * GeoHelper.EARTH_RADIUS);
+        }
+
+        // distance to the great circles of the bounding meridians
+        if(maxLon - minLon < 360){
+            double cosLat = Math.cos(Math.toRadians(latitude));
+            double east = Math.asin(cosLat * Math.abs(Math.sin(Math.toRadians(maxLon - longitude))));
+            double west = Math.asin(cosLat * Math.abs(Math.sin(Math.toRadians(longitude - minLon))));
+            distance = Math.min(distance, Math.min(east, west) * GeoHelper.EARTH_RADIUS);
+        }
+        return distance;
+    }
+
+    /**
+     * Run the first page or all pages of each query, up to queryConcurrency queries run in parallel
+     *
+     * @param queryExpressions
+     *              the queries to run, their limit is the page size
+     * @param allPages
+     *              true to follow the last evaluated key of each query until it is exhausted, false to read the
+     *              first page only
+     * @param cost
+     *              receives the number of queries and items read
+     * @return results of each query in the order of the query expressions
+     */
+    private List<List<T>> queryPages(List<DynamoDBQueryExpression<T>> queryExpressions, boolean allPages, QueryCost cost){
+
+        int queryCount = queryExpressions.size();
+        List<List<T>> results = new ArrayList<>(Collections.nCopies(queryCount, Collections.emptyList()));
+        AtomicInteger nextQuery = new AtomicInteger();
+        Runnable worker = () -> {
+            int i;
+            while((i = nextQuery.getAndIncrement()) < queryCount){
+                DynamoDBQueryExpression<T> queryExpression = queryExpressions.get(i);
+                List<T> queryResults = new ArrayList<>();
+                QueryResultPage<T> page;
+                do {
+                    page = mapper.queryPage(persistenceClass, queryExpression);
+                    cost.addQuery(page.getScannedCount() != null ? page.getScannedCount() : page.getResults().size());
+                    queryResults.addAll(page.getResults());
+                    queryExpression.withExclusiveStartKey(page.getLastEvaluatedKey());
+                } while(allPages && page.getLastEvaluatedKey() != null);
+                results.set(i, queryResults);
+            }
+        };
+
+        // the calling thread works on the queries as well
+        int workerCount = Math.min(queryConcurrency, queryCount);
+        List<Future<?>> futures = new ArrayList<>(workerCount);
+        for(int w = 1; w < workerCount; w++){
+            futures.add(QUERY_EXECUTOR.submit(worker));
+        }
+        worker.run();
+
+        for(Future<?> future : futures){
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while querying geohash cells", e);
+            } catch (ExecutionException e) {
+                if(e.getCause() instanceof RuntimeException){
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        return results;
+    }
+
     /**
      * Find all spots to be updated by the cron job in the specified partition
      *
@@ -164,4 +910,154 @@ public class SpotService<T extends BaseSpot> extends GenericPersistenceService<T
 
         return mapper.queryPage(persistenceClass, queryExpression).getResults();
     }
+
+    /**
+     * Find all spots of a continent, reads all result pages of the continent-crondate-index
+     *
+     * @param continent
+     *              the continent to load (partition key of continent-crondate-index table)
+     * @return list of all spots in the continent
+     */
+    public List<T> findAllByContinent(Continent continent){
+
+        // every cron date is a positive timestamp, the condition therefore matches the whole partition
+        return findByContinentUpdatedSince(continent, 0);
+    }
+
+    /**
+     * Find all spots of a continent saved or updated by the cron job since a point in time,
+     * reads all result pages of the continent-crondate-index
+     *
+     * @param continent
+     *              the continent to load (partition key of continent-crondate-index table)
+     * @param sinceMillis
+     *              min cron date in milliseconds, inclusive
+     * @return list of spots with a cron date not before the given time
+     */
+    public List<T> findByContinentUpdatedSince(Continent continent, long sinceMillis){
+
+        String filterExpression = "continent = :val1 and cronDate >= :val2";
+        DynamoDBQueryExpression<T> queryExpression = databaseHelper.createIndexQueryExpression(continent.getCode(),
+                Long.toString(sinceMillis), Constants.CONTINENT_CRONDATE_INDEX, filterExpression, 1000);
+
+        return new ArrayList<>(mapper.query(persistenceClass, queryExpression));
+    }
+
+    /**
+     * Find a page of spots which have a geohash but miss a spatial key, used to backfill spots saved before the
+     * geokey or the hilbertkey were introduced. Scans are expensive, the page size bounds the items read per call.
+     *
+     * @param exclusiveStartId
+     *              id of the last evaluated spot of the previous page, null to start a new scan
+     * @param batchSize
+     *              max amount of items evaluated by the scan, the page contains at most this many spots
+     * @return page of spots to migrate, its last evaluated key is null when the scan is complete
+     */
+    public ScanResultPage<T> findPageWithoutSpatialKeys(String exclusiveStartId, int batchSize){
+
+        DynamoDBScanExpression scanExpression = new DynamoDBScanExpression()
+                .withFilterExpression("attribute_exists(geohash) and (attribute_not_exists(geokey) or attribute_not_exists(hilbertkey))")
+                .withLimit(batchSize);
+
+        if(exclusiveStartId != null){
+            Map<String, AttributeValue> exclusiveStartKey = new HashMap<>();
+            exclusiveStartKey.put("id", new AttributeValue().withS(exclusiveStartId));
+            scanExpression.withExclusiveStartKey(exclusiveStartKey);
+        }
+
+        return mapper.scanPage(persistenceClass, scanExpression);
+    }
+
+    /**
+     * Find a page of spots whose description is stored uncompressed, used to backfill the compression of existing
+     * spots. Descriptions below the compression threshold are found as well and have to be skipped by the caller.
+     *
+     * @param exclusiveStartId
+     *              id of the last evaluated spot of the previous page, null for the first page
+     * @param batchSize
+     *              max number of evaluated spots
+     * @return page of complete spot items, the last evaluated key is the start of the next page
+     */
+    public ScanResultPage<T> findPageWithUncompressedDescription(String exclusiveStartId, int batchSize){
+
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":prefix", new AttributeValue().withS(CompressedStringTypeConverter.PREFIX));
+        DynamoDBScanExpression scanExpression = new DynamoDBScanExpression()
+                .withFilterExpression("attribute_exists(description) and not begins_with(description, :prefix)")
+                .withExpressionAttributeValues(values)
+                .withLimit(batchSize);
+
+        if(exclusiveStartId != null){
+            Map<String, AttributeValue> exclusiveStartKey = new HashMap<>();
+            exclusiveStartKey.put("id", new AttributeValue().withS(exclusiveStartId));
+            scanExpression.withExclusiveStartKey(exclusiveStartKey);
+        }
+
+        return mapper.scanPage(persistenceClass, scanExpression);
+    }
+
+    /**
+     * Find a page of spots with a position but without nearby spots, used to backfill spots saved before nearby
+     * spots were introduced
+     *
+     * @param exclusiveStartId
+     *              id of the last evaluated spot of the previous page, null for the first page
+     * @param batchSize
+     *              max number of evaluated spots
+     * @return page of complete spot items, the last evaluated key is the start of the next page
+     */
+    public ScanResultPage<T> findPageWithoutNearbySpots(String exclusiveStartId, int batchSize){
+
+        // position is a reserved word
+        Map<String, String> names = new HashMap<>();
+        names.put("#position", "position");
+        DynamoDBScanExpression scanExpression = new DynamoDBScanExpression()
+                .withFilterExpression("attribute_exists(#position) and attribute_not_exists(nearbySpots)")
+                .withExpressionAttributeNames(names)
+                .withLimit(batchSize);
+
+        if(exclusiveStartId != null){
+            Map<String, AttributeValue> exclusiveStartKey = new HashMap<>();
+            exclusiveStartKey.put("id", new AttributeValue().withS(exclusiveStartId));
+            scanExpression.withExclusiveStartKey(exclusiveStartKey);
+        }
+
+        return mapper.scanPage(persistenceClass, scanExpression);
+    }
+
+    /**
+     * Compute the nearby spots of an existing spot and write only its nearby spots, the other attributes of the
+     * spot are neither read nor written
+     *
+     * @param spot
+     *              the spot with its id and position, e.g. read by findPageWithoutNearbySpots
+     * @return true if the nearby spots have been written, false if the spot has no position or has been deleted
+     */
+    public boolean updateNearbySpots(Spot spot){
+
+        if(spot.getPosition() == null){
+            return false;
+        }
+        List<T> candidates = findNearbyCandidates(spot.getId(), spot.getPosition());
+        spot.setNearbySpots(createNearbySpots(spot.getPosition(), candidates));
+        return updateSpot(spot.getClass(), spot, "nearbySpots");
+    }
+
+    /**
+     * Set the spatial keys of an existing spot and write only the spatial keys, the other attributes of the spot
+     * are neither read nor written
+     *
+     * @param spot
+     *              the spot with its id and position, e.g. read by findPageWithoutSpatialKeys
+     * @return true if the spatial keys have been written, false if the spot has no position or has been deleted
+     */
+    public boolean updateSpatialKeys(Spot spot){
+
+        if(spot.getPosition() == null){
+            return false;
+        }
+        spot.setGeokey(DatabaseHelper.createGeokey(spot.getPosition()));
+        spot.setHilbertkey(hilbertKeyEncoder.encode(spot.getPosition()));
+        return updateSpot(spot.getClass(), spot, "geokey", "hilbertkey");
+    }
 }
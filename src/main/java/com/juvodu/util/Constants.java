@@ -10,12 +10,108 @@ public class Constants {
     /** dynamo db indexes used for querying */
     public static final String SNS_APPLICATION_ARN = "arn:aws:sns:eu-central-1:980738030415:app/GCM/LetMeGo"; // SNS application arn for push notifications
     public static final String CONTINENT_COUNTRY_INDEX = "continent-country-index";
+    public static final String CONTINENT_COUNTRY_LIST_INDEX = "continent-country-list-index";
     public static final String CONTINENT_GEOHASH_INDEX = "continent-geohash-index";
+    public static final String CONTINENT_GEOKEY_INDEX = "continent-geokey-index";
+    public static final String CONTINENT_HILBERTKEY_INDEX = "continent-hilbertkey-index";
     public static final String CONTINENT_CRONDATE_INDEX ="continent-crondate-index";
     public static final String USERNAME_TOPIC_INDEX ="username-topic-index";
     public static final String USERNAME_ENDPOINT_INDEX ="username-endpoint-index";
 
+    /** http client of the shared dynamo db client, tunable per lambda environment */
+    public static final int DYNAMODB_MAX_CONNECTIONS = Integer.parseInt(System.getenv().getOrDefault("DYNAMODB_MAX_CONNECTIONS", "50"));
+    public static final int DYNAMODB_CONNECTION_TIMEOUT = Integer.parseInt(System.getenv().getOrDefault("DYNAMODB_CONNECTION_TIMEOUT", "1000")); // ms
+    public static final int DYNAMODB_SOCKET_TIMEOUT = Integer.parseInt(System.getenv().getOrDefault("DYNAMODB_SOCKET_TIMEOUT", "5000")); // ms
+    public static final int DYNAMODB_REQUEST_TIMEOUT = Integer.parseInt(System.getenv().getOrDefault("DYNAMODB_REQUEST_TIMEOUT", "10000")); // ms
+    public static final long DYNAMODB_CONNECTION_MAX_IDLE = Long.parseLong(System.getenv().getOrDefault("DYNAMODB_CONNECTION_MAX_IDLE", "60000")); // ms
+    public static final boolean DYNAMODB_TCP_KEEP_ALIVE = Boolean.parseBoolean(System.getenv().getOrDefault("DYNAMODB_TCP_KEEP_ALIVE", "true"));
+
+    /** storage backend of the shared client, "dynamodb" or "memory" for the in-memory tables used to run and profile locally */
+    public static final String STORAGE_BACKEND = System.getenv().getOrDefault("STORAGE_BACKEND", "dynamodb");
+
     /** number of max devices per user which receive push notifications */
     public static final int MAX_USER_DEVICES = 100;
     public static final String NOTIFICATION_TIME_TO_LIVE = "86400"; // 24 h
+
+    /** in-memory spot catalog answering radius searches without DynamoDB reads, enabled per lambda environment */
+    public static final boolean SPATIAL_INDEX_ENABLED = Boolean.parseBoolean(System.getenv("SPATIAL_INDEX_ENABLED"));
+    public static final long SPOT_CATALOG_REFRESH_INTERVAL = 15L * 60L * 1000L; // 15 min
+
+    /** spots saved since the last load are merged into the catalog in between full reloads */
+    public static final long SPOT_CATALOG_UPDATE_INTERVAL = 60L * 1000L; // 1 min
+    public static final long SPOT_CATALOG_UPDATE_OVERLAP = 60L * 1000L; // covers clock skew and index propagation
+
+    /** geohash cell queries use BETWEEN on the compact geokey instead of begins_with on the binary geohash, enable
+     * after the continent-geokey-index has been created and the geokey backfill has completed. The spot table
+     * indexes are rolled out one per deploy: geokey index, hilbertkey index, list index, see serverless.yml */
+    public static final boolean GEOKEY_QUERIES_ENABLED = Boolean.parseBoolean(System.getenv("GEOKEY_QUERIES_ENABLED"));
+
+    /** list queries of BaseSpot services read the continent-country-list-index projecting the BaseSpot attributes only,
+     * enable after the index has been created and backfilled, it is the third index of the rollout after the geokey
+     * and hilbertkey indexes */
+    public static final boolean LIST_INDEX_QUERIES_ENABLED = Boolean.parseBoolean(System.getenv("LIST_INDEX_QUERIES_ENABLED"));
+
+    /** continent and country list views are answered from the materialised spot lists, lists are patched by all
+     * writers of spots regardless of this flag */
+    public static final boolean SPOT_LIST_ENABLED = Boolean.parseBoolean(System.getenv("SPOT_LIST_ENABLED"));
+    public static final int SPOT_LIST_COMPRESSION_THRESHOLD = 16 * 1024; // bytes of JSON
+    public static final int SPOT_LIST_MAX_SIZE = 350 * 1024; // below the item size limit of 400 KB
+    public static final long SPOT_LIST_SETTLE_DELAY = 60 * 1000; // ms after the last write until a provisional list is rebuilt
+
+    /** text attributes with the CompressedStringTypeConverter are stored compressed from this length on, opt-in per
+     * function once all readers are deployed, disabling compression only stops writing compressed values, they are
+     * still read */
+    public static final boolean ATTRIBUTE_COMPRESSION_ENABLED = Boolean.parseBoolean(System.getenv().getOrDefault("ATTRIBUTE_COMPRESSION_ENABLED", "false"));
+    public static final int ATTRIBUTE_COMPRESSION_THRESHOLD = Integer.parseInt(System.getenv().getOrDefault("ATTRIBUTE_COMPRESSION_THRESHOLD", "256")); // chars
+
+    /** curve of the spatial key used by range queries, "geohash" (Z-order geokey) or "hilbert" (hilbertkey), the
+     * latter requires the continent-hilbertkey-index of the second rollout step */
+    public static final String SPATIAL_KEY_ENCODING = System.getenv().getOrDefault("SPATIAL_KEY_ENCODING", "geohash");
+
+    /** query planner of searches on the spatial key, the finest cells merging into at most max ranges are queried */
+    public static final int PLANNER_MAX_LEVEL = 20;
+    public static final int PLANNER_MAX_CELLS = 64;
+    public static final int PLANNER_MAX_RANGES = 4;
+
+    /** max number of geohash cell queries of a single radius search running in parallel */
+    public static final int GEOHASH_QUERY_CONCURRENCY = Integer.parseInt(System.getenv().getOrDefault("GEOHASH_QUERY_CONCURRENCY", "8"));
+
+    /** k-nearest search, cells of 18 bits are about 40 x 60 km in mid latitudes */
+    public static final int NEAREST_GEOHASH_PRECISION = 18;
+    public static final int NEAREST_MAX_RINGS = 5;
+    public static final int NEAREST_CELL_LIMIT = 100;
+
+    /** batch requests, max keys per BatchGetItem, max items per BatchWriteItem and backoff of unprocessed keys */
+    public static final int BATCH_LOAD_SIZE = 100;
+    public static final int BATCH_WRITE_SIZE = 25;
+    public static final int BATCH_MAX_RETRIES = 8;
+    public static final long BATCH_BACKOFF_BASE_MILLIS = 25;
+    public static final long BATCH_BACKOFF_MAX_MILLIS = 2000;
+
+    /** full table scans, parallel segments and share of the provisioned read capacity of the table consumed by all
+     * segments, tables without provisioned capacity are scanned with SCAN_READ_CAPACITY units per second, 0 for no limit */
+    public static final int SCAN_SEGMENTS = Integer.parseInt(System.getenv().getOrDefault("SCAN_SEGMENTS", "4"));
+    public static final double SCAN_READ_CAPACITY_FRACTION = Double.parseDouble(System.getenv().getOrDefault("SCAN_READ_CAPACITY_FRACTION", "0.2"));
+    public static final double SCAN_READ_CAPACITY = Double.parseDouble(System.getenv().getOrDefault("SCAN_READ_CAPACITY", "50"));
+
+    /** max number of asynchronous persistence operations running in parallel in a container */
+    public static final int ASYNC_CONCURRENCY = Integer.parseInt(System.getenv().getOrDefault("ASYNC_CONCURRENCY", "8"));
+
+    /** read-through cache of items loaded by hash key, shared by all services of a container, disabled by default */
+    public static final boolean RECORD_CACHE_ENABLED = Boolean.parseBoolean(System.getenv("RECORD_CACHE_ENABLED"));
+    public static final int RECORD_CACHE_MAX_ENTRIES = Integer.parseInt(System.getenv().getOrDefault("RECORD_CACHE_MAX_ENTRIES", "1000"));
+    public static final long RECORD_CACHE_TTL = Long.parseLong(System.getenv().getOrDefault("RECORD_CACHE_TTL", "300000")); // ms
+
+    /** nearby spots stored with each spot for the detail view, candidates are the spots around a saved spot whose lists are checked */
+    public static final int NEARBY_SPOTS_COUNT = 10;
+    public static final int NEARBY_SPOTS_MAX_DISTANCE = 100; // km
+    public static final int NEARBY_SPOTS_CANDIDATES = 30;
+
+    /** bounding box search, max amount of cells covering a viewport and spots read per cell for clusters */
+    public static final int VIEWPORT_MAX_PRECISION = 40;
+    public static final int VIEWPORT_MAX_CELLS = 16;
+    public static final int VIEWPORT_CLUSTER_CELL_LIMIT = 200;
+
+    /** map zoom levels below are answered with spot clusters instead of single spots */
+    public static final int CLUSTER_MAX_ZOOM = 10;
 }
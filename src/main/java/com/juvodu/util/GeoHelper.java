@@ -1,12 +1,24 @@
 package com.juvodu.util;
 
+import ch.hsr.geohash.GeoHash;
+import com.juvodu.database.model.BaseSpot;
+import com.juvodu.database.model.BoundingBox;
 import com.juvodu.database.model.Position;
+import com.juvodu.database.model.SpotCluster;
+
+import java.util.*;
 
 /**
  * Created by Juvodu on 01.09.17.
  */
 public class GeoHelper {
 
+    /** mean earth radius in meter */
+    public static final double EARTH_RADIUS = 6371000;
+
+    /** margin in degree added to bounding boxes of pre-filters, covers floating point rounding */
+    private static final double BOUNDING_BOX_MARGIN = 1e-9;
+
     /**
      * Calculate distance between two positions
      *
@@ -16,14 +28,207 @@ public class GeoHelper {
      */
     public static int getDistance(Position pos1, Position pos2) {
 
-        double earthRadius = 6371000; //meters
-        double dLat = Math.toRadians(pos2.getLatitude()-pos1.getLatitude());
-        double dLng = Math.toRadians(pos2.getLongitude()-pos1.getLongitude());
+        return getDistance(pos1.getLatitude(), pos1.getLongitude(), pos2.getLatitude(), pos2.getLongitude());
+    }
+
+    /**
+     * Calculate distance between two positions given as primitive coordinates
+     *
+     * @param lat1
+     *          latitude of the first position
+     * @param lon1
+     *          longitude of the first position
+     * @param lat2
+     *          latitude of the second position
+     * @param lon2
+     *          longitude of the second position
+     * @return distance in meter
+     */
+    public static int getDistance(double lat1, double lon1, double lat2, double lon2) {
+
+        double dLat = Math.toRadians(lat2-lat1);
+        double dLng = Math.toRadians(lon2-lon1);
         double a = Math.sin(dLat/2) * Math.sin(dLat/2) +
-                Math.cos(Math.toRadians(pos1.getLatitude())) * Math.cos(Math.toRadians(pos2.getLatitude())) *
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
                         Math.sin(dLng/2) * Math.sin(dLng/2);
         double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1-a));
-        return (int) (earthRadius * c);
+        return (int) (EARTH_RADIUS * c);
+    }
+
+    /**
+     * Batch variant of getDistance for candidates stored in primitive arrays, keeps the candidates within a max distance.
+     *
+     * Candidates outside of the bounding box of the search circle in equirectangular (lat/lon) space are rejected
+     * without any trigonometric call. The box encloses the circle, so it never rejects a candidate within the
+     * max distance. The remaining candidates are measured with the same haversine formula as getDistance, the
+     * returned distances are identical to getDistance for the same coordinates.
+     *
+     * @param latitude
+     *          latitude of the center
+     * @param longitude
+     *          longitude of the center
+     * @param latitudes
+     *          latitudes of the candidates
+     * @param longitudes
+     *          longitudes of the candidates
+     * @param from
+     *          index of the first candidate, inclusive
+     * @param to
+     *          index of the last candidate, exclusive
+     * @param maxDistance
+     *          max distance in meter, inclusive
+     * @param indexes
+     *          receives the indexes of the matching candidates, needs space for to - from values
+     * @param distances
+     *          receives the distances in meter of the matching candidates, needs space for to - from values
+     *
+     * @return number of matching candidates written to indexes and distances
+     */
+    public static int filterByDistance(double latitude, double longitude, double[] latitudes, double[] longitudes,
+                                       int from, int to, int maxDistance, int[] indexes, int[] distances){
+
+        // bounding box of the circle with a small margin against rounding, covers all longitudes near the poles
+        double angularRadius = maxDistance / EARTH_RADIUS;
+        double deltaLat = Math.toDegrees(angularRadius) + BOUNDING_BOX_MARGIN;
+        double deltaLon = 360;
+        double sinDeltaLon = Math.sin(angularRadius) / Math.cos(Math.toRadians(latitude));
+        if(latitude + deltaLat < 90 && latitude - deltaLat > -90 && sinDeltaLon < 1){
+            deltaLon = Math.toDegrees(Math.asin(sinDeltaLon)) + BOUNDING_BOX_MARGIN;
+        }
+
+        double cosLat = Math.cos(Math.toRadians(latitude));
+        int count = 0;
+        for(int i = from; i < to; i++){
+
+            double lat = latitudes[i];
+            double lon = longitudes[i];
+            double absDeltaLon = Math.abs(lon - longitude);
+            if(absDeltaLon > 180){
+                absDeltaLon = 360 - absDeltaLon; // across the antimeridian
+            }
+            if(Math.abs(lat - latitude) > deltaLat || absDeltaLon > deltaLon){
+                continue;
+            }
+
+            // haversine, same operations as getDistance
+            double dLat = Math.toRadians(lat-latitude);
+            double dLng = Math.toRadians(lon-longitude);
+            double a = Math.sin(dLat/2) * Math.sin(dLat/2) +
+                    cosLat * Math.cos(Math.toRadians(lat)) *
+                            Math.sin(dLng/2) * Math.sin(dLng/2);
+            double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1-a));
+            int distance = (int) (EARTH_RADIUS * c);
+            if(distance <= maxDistance){
+                indexes[count] = i;
+                distances[count] = distance;
+                count++;
+            }
+        }
+        return count;
     }
 
+    /**
+     * Calculate the bounding boxes enclosing a search circle, a circle crossing the antimeridian
+     * is split into two boxes and a circle covering a pole spans all longitudes
+     *
+     * @param position
+     *          center of the circle
+     * @param radiusMeter
+     *          radius of the circle in meter
+     * @return list of one or two bounding boxes
+     */
+    public static List<BoundingBox> getBoundingBoxes(Position position, int radiusMeter){
+
+        double latitude = position.getLatitude();
+        double longitude = position.getLongitude();
+        double angularRadius = radiusMeter / EARTH_RADIUS;
+        double deltaLat = Math.toDegrees(angularRadius);
+        double minLat = Math.max(-90, latitude - deltaLat);
+        double maxLat = Math.min(90, latitude + deltaLat);
+
+        List<BoundingBox> boxes = new ArrayList<>(2);
+        double sinDeltaLon = Math.sin(angularRadius) / Math.cos(Math.toRadians(latitude));
+        if(minLat == -90 || maxLat == 90 || angularRadius >= Math.PI / 2 || sinDeltaLon >= 1){
+            boxes.add(new BoundingBox(minLat, -180, maxLat, 180));
+            return boxes;
+        }
+
+        double deltaLon = Math.toDegrees(Math.asin(sinDeltaLon));
+        double minLon = longitude - deltaLon;
+        double maxLon = longitude + deltaLon;
+        if(minLon < -180){
+            boxes.add(new BoundingBox(minLat, minLon + 360, maxLat, 180));
+            boxes.add(new BoundingBox(minLat, -180, maxLat, maxLon));
+        }else if(maxLon > 180){
+            boxes.add(new BoundingBox(minLat, minLon, maxLat, 180));
+            boxes.add(new BoundingBox(minLat, -180, maxLat, maxLon - 360));
+        }else{
+            boxes.add(new BoundingBox(minLat, minLon, maxLat, maxLon));
+        }
+        return boxes;
+    }
+
+    /**
+     * Calculate a lower bound for the distance between a position and any point of a bounding box
+     *
+     * @param position
+     *          the position
+     * @param box
+     *          the bounding box
+     * @return distance in meter, 0 if the box contains the position
+     */
+    public static double getMinDistance(Position position, BoundingBox box){
+
+        double latitude = position.getLatitude();
+        double longitude = position.getLongitude();
+
+        // no point of the box is closer than the nearest of its parallels
+        double distance = 0;
+        if(latitude > box.getMaxLatitude()){
+            distance = Math.toRadians(latitude - box.getMaxLatitude()) * EARTH_RADIUS;
+        }else if(latitude < box.getMinLatitude()){
+            distance = Math.toRadians(box.getMinLatitude() - latitude) * EARTH_RADIUS;
+        }
+
+        // outside of its meridians any path to the box crosses the great circle of one of them
+        if(longitude < box.getMinLongitude() || longitude > box.getMaxLongitude()){
+            double cosLat = Math.cos(Math.toRadians(latitude));
+            double east = Math.asin(cosLat * Math.abs(Math.sin(Math.toRadians(box.getMaxLongitude() - longitude))));
+            double west = Math.asin(cosLat * Math.abs(Math.sin(Math.toRadians(longitude - box.getMinLongitude()))));
+            distance = Math.max(distance, Math.min(east, west) * EARTH_RADIUS);
+        }
+        return distance;
+    }
+
+    /**
+     * Aggregate spots into clusters of spots sharing the same geohash prefix
+     *
+     * @param spots
+     *          the spots to cluster, spots without a position are skipped
+     * @param precision
+     *          number of geohash bits defining a cluster cell
+     * @return list of clusters with count and centroid ordered by geohash
+     */
+    public static List<SpotCluster> clusterByGeohash(Collection<? extends BaseSpot> spots, int precision){
+
+        // sums of latitude, longitude and count by geohash prefix
+        Map<String, double[]> sums = new TreeMap<>();
+        for(BaseSpot spot : spots){
+            Position position = spot.getPosition();
+            if(position != null) {
+                String prefix = GeoHash.withBitPrecision(position.getLatitude(), position.getLongitude(), precision).toBinaryString();
+                double[] sum = sums.computeIfAbsent(prefix, key -> new double[3]);
+                sum[0] += position.getLatitude();
+                sum[1] += position.getLongitude();
+                sum[2]++;
+            }
+        }
+
+        List<SpotCluster> clusters = new ArrayList<>(sums.size());
+        for(Map.Entry<String, double[]> entry : sums.entrySet()){
+            double[] sum = entry.getValue();
+            clusters.add(new SpotCluster(entry.getKey(), (int) sum[2], new Position(sum[0] / sum[2], sum[1] / sum[2])));
+        }
+        return clusters;
+    }
 }
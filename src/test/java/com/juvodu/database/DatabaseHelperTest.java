@@ -0,0 +1,150 @@
+package com.juvodu.database;
+
+import ch.hsr.geohash.GeoHash;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.juvodu.database.model.BaseSpot;
+import com.juvodu.database.model.Position;
+import com.juvodu.serverless.ParameterParser;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test suite for the geohash keys, page tokens and projections of the DatabaseHelper
+ *
+ * @author Juvodu
+ */
+public class DatabaseHelperTest {
+
+    private final Position hossegor = new Position(43.671223, -1.441445);
+
+    @Test
+    public void givenPositionWhenCreateGeokeyThenReturnHexOfBinaryGeohash(){
+
+        //execute
+        String geokey = DatabaseHelper.createGeokey(hossegor);
+
+        //verify
+        assertEquals(16, geokey.length());
+        String binary = DatabaseHelper.createBinaryGeohash(hossegor);
+        assertEquals(Long.parseUnsignedLong(binary, 2), Long.parseUnsignedLong(geokey, 16));
+    }
+
+    @Test
+    public void givenRandomPositionsWhenCreateGeokeyThenOrderEqualsBinaryGeohashOrder(){
+
+        //setup
+        Random random = new Random(7);
+
+        for(int i = 0; i < 1000; i++){
+
+            Position pos1 = new Position(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            Position pos2 = new Position(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+
+            //execute
+            int geokeyOrder = DatabaseHelper.createGeokey(pos1).compareTo(DatabaseHelper.createGeokey(pos2));
+            int binaryOrder = DatabaseHelper.createBinaryGeohash(pos1).compareTo(DatabaseHelper.createBinaryGeohash(pos2));
+
+            //verify
+            assertEquals(Integer.signum(binaryOrder), Integer.signum(geokeyOrder));
+        }
+    }
+
+    @Test
+    public void givenCellWhenCreateGeokeyRangeThenContainExactlyPositionsWithCellPrefix(){
+
+        //setup
+        Random random = new Random(7);
+        GeoHash cell = GeoHash.withBitPrecision(hossegor.getLatitude(), hossegor.getLongitude(), 10);
+
+        //execute
+        String[] range = DatabaseHelper.createGeokeyRange(cell);
+
+        //verify
+        for(int i = 0; i < 1000; i++){
+            Position position = new Position(hossegor.getLatitude() + random.nextDouble() * 20 - 10,
+                    hossegor.getLongitude() + random.nextDouble() * 20 - 10);
+            String geokey = DatabaseHelper.createGeokey(position);
+            boolean inRange = geokey.compareTo(range[0]) >= 0 && geokey.compareTo(range[1]) <= 0;
+            boolean inCell = DatabaseHelper.createBinaryGeohash(position).startsWith(cell.toBinaryString());
+            assertEquals(inCell, inRange);
+        }
+        assertTrue(range[0].compareTo(range[1]) < 0);
+    }
+
+    @Test
+    public void givenLastEvaluatedKeyWhenCreatePageTokenThenParseSameKeyFromQueryString() throws Exception {
+
+        //setup
+        Map<String, AttributeValue> lastEvaluatedKey = new HashMap<>();
+        lastEvaluatedKey.put("id", new AttributeValue("0b1c5f3e-8a7d-4c2e-9f10-3d6a2b7c9e41"));
+        lastEvaluatedKey.put("continent", new AttributeValue("EU"));
+        lastEvaluatedKey.put("country", new AttributeValue("FR"));
+        lastEvaluatedKey.put("cronDate", new AttributeValue().withN("1504224000000"));
+
+        //execute - the token passes the query string conversion of api gateway
+        String pageToken = DatabaseHelper.createPageToken(lastEvaluatedKey);
+        Map<String, String> parameters = ParameterParser.getParameters("{continent=EU, pageToken=" + pageToken + "}");
+        Map<String, AttributeValue> exclusiveStartKey = DatabaseHelper.parsePageToken(parameters.get("pageToken"));
+
+        //verify
+        assertEquals(lastEvaluatedKey, exclusiveStartKey);
+    }
+
+    @Test
+    public void givenNoLastEvaluatedKeyWhenCreatePageTokenThenReturnNull(){
+
+        //execute & verify
+        assertNull(DatabaseHelper.createPageToken(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenMalformedTokenWhenParsePageTokenThenThrowIllegalArgumentException(){
+
+        //execute
+        DatabaseHelper.parsePageToken("not a token");
+    }
+
+    @Test
+    public void givenTargetModelWhenCreateQueryExpressionThenProjectModelAttributes(){
+
+        //setup
+        DynamoDBMapper mapper = new DynamoDBMapper(new LatencyDynamoDB(0));
+        DatabaseHelper<BaseSpot> databaseHelper = new DatabaseHelper<>(mapper.getTableModel(BaseSpot.class));
+
+        //execute
+        DynamoDBQueryExpression<BaseSpot> queryExpression = databaseHelper.createIndexQueryExpression("EU", "FR",
+                "continent-country-index", "continent = :val1 and country = :val2", 10);
+
+        //verify - every alias is projected, spot details are left out
+        Map<String, String> names = queryExpression.getExpressionAttributeNames();
+        assertEquals(names.size(), queryExpression.getProjectionExpression().split(",").length);
+        assertTrue(names.containsValue("id"));
+        assertTrue(names.containsValue("name"));
+        assertTrue(names.containsValue("position"));
+        assertTrue(names.containsValue("country"));
+        assertFalse(names.containsValue("description"));
+        assertFalse(names.containsValue("distance"));
+    }
+
+    @Test
+    public void givenNoTargetModelWhenCreateQueryExpressionThenReadAllAttributes(){
+
+        //execute
+        DynamoDBQueryExpression<BaseSpot> queryExpression = new DatabaseHelper<BaseSpot>()
+                .createQueryExpression("EU", null, "continent = :val1", 10);
+
+        //verify
+        assertNull(queryExpression.getProjectionExpression());
+        assertNull(queryExpression.getExpressionAttributeNames());
+    }
+}
@@ -0,0 +1,124 @@
+package com.juvodu.database;
+
+import ch.hsr.geohash.GeoHash;
+import com.juvodu.database.model.BoundingBox;
+import com.juvodu.database.model.GeoKeyRange;
+import com.juvodu.database.model.Position;
+import com.juvodu.util.GeoHelper;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test suite for the GeoQueryPlanner
+ *
+ * @author Juvodu
+ */
+public class GeoQueryPlannerTest {
+
+    private final Position hossegor = new Position(43.671223, -1.441445);
+    private final SpatialKeyEncoder[] encoders = {new GeohashKeyEncoder(), new HilbertKeyEncoder()};
+
+    @Test
+    public void givenGeohashCellWhenPlanCellThenReturnGeokeyRangeOfCell(){
+
+        //setup
+        GeoQueryPlanner planner = new GeoQueryPlanner(new GeohashKeyEncoder(), 20, 64, 4);
+        GeoHash cell = GeoHash.withBitPrecision(hossegor.getLatitude(), hossegor.getLongitude(), 11);
+
+        //execute - both halves of a cell with an odd number of bits are adjacent in geokey order
+        List<GeoKeyRange> ranges = planner.planCell(cell);
+
+        //verify
+        assertEquals(1, ranges.size());
+        assertEquals(2, ranges.get(0).getCellCount());
+        String[] cellRange = DatabaseHelper.createGeokeyRange(cell);
+        assertEquals(cellRange[0], ranges.get(0).getFirstKey());
+        assertEquals(cellRange[1], ranges.get(0).getLastKey());
+    }
+
+    @Test
+    public void givenRadiusWhenPlanRadiusThenRangesContainAllPositionsInRadius(){
+
+        for(SpatialKeyEncoder encoder : encoders) {
+
+            //setup
+            GeoQueryPlanner planner = new GeoQueryPlanner(encoder, 20, 64, 4);
+            Random random = new Random(7);
+            int radiusMeter = 50000;
+
+            //execute
+            List<GeoKeyRange> ranges = planner.planRadius(hossegor, radiusMeter);
+
+            //verify
+            assertTrue(ranges.size() <= 4);
+            int inRadius = 0;
+            for (int i = 0; i < 10000; i++) {
+                Position position = new Position(hossegor.getLatitude() + random.nextDouble() - 0.5,
+                        hossegor.getLongitude() + random.nextDouble() * 1.4 - 0.7);
+                if (GeoHelper.getDistance(hossegor, position) <= radiusMeter) {
+                    inRadius++;
+                    assertTrue(contains(ranges, encoder.encode(position)));
+                }
+            }
+            assertTrue(inRadius > 0);
+        }
+    }
+
+    @Test
+    public void givenBoxWhenPlanBoundingBoxThenRangesContainAllPositionsInBox(){
+
+        for(SpatialKeyEncoder encoder : encoders) {
+
+            //setup
+            GeoQueryPlanner planner = new GeoQueryPlanner(encoder, 20, 64, 4);
+            Random random = new Random(7);
+            BoundingBox box = new BoundingBox(43, -2, 44, -1);
+
+            //execute
+            List<GeoKeyRange> ranges = planner.planBoundingBox(box);
+
+            //verify
+            for (int i = 0; i < 1000; i++) {
+                Position position = new Position(43 + random.nextDouble(), -2 + random.nextDouble());
+                assertTrue(contains(ranges, encoder.encode(position)));
+            }
+        }
+    }
+
+    @Test
+    public void givenCircleCrossingAntimeridianWhenPlanRadiusThenCoverBothSides(){
+
+        for(SpatialKeyEncoder encoder : encoders) {
+
+            //setup
+            GeoQueryPlanner planner = new GeoQueryPlanner(encoder, 20, 64, 4);
+            Position fiji = new Position(-17.0, 179.9);
+            Position east = new Position(-17.0, -179.9);
+
+            //execute
+            List<GeoKeyRange> ranges = planner.planRadius(fiji, 50000);
+
+            //verify
+            assertTrue(contains(ranges, encoder.encode(east)));
+        }
+    }
+
+    /**
+     * Helper function to check if a key lies within one of the ranges
+     *
+     * @param ranges
+     *          planned key ranges
+     * @param key
+     *          the key to check
+     * @return true if a range contains the key
+     */
+    private boolean contains(List<GeoKeyRange> ranges, String key){
+
+        return ranges.stream().anyMatch(range -> key.compareTo(range.getFirstKey()) >= 0 && key.compareTo(range.getLastKey()) <= 0);
+    }
+}
@@ -0,0 +1,310 @@
+package com.juvodu.database;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local DynamoDB stand-in for geohash queries, segmented scans, single item reads, updates and deletes and batch
+ * reads and writes, answers each request after a fixed latency and records how many queries or scans were running at the same time
+ *
+ * @author Juvodu
+ */
+public class LatencyDynamoDB extends AbstractAmazonDynamoDB {
+
+    /** items per scan page and read capacity consumed per scanned item */
+    private static final int SCAN_PAGE_SIZE = 10;
+    private static final double SCAN_ITEM_CAPACITY = 0.5;
+
+    private final long latencyMillis;
+    private final List<Map<String, AttributeValue>> items = new CopyOnWriteArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger queryCount = new AtomicInteger();
+    private final AtomicInteger scanCount = new AtomicInteger();
+    private final AtomicInteger getCount = new AtomicInteger();
+    private final AtomicInteger batchGetCount = new AtomicInteger();
+    private final AtomicInteger batchWriteCount = new AtomicInteger();
+    private final AtomicInteger throttledRequests = new AtomicInteger();
+    private volatile Integer lastScanLimit;
+
+    public LatencyDynamoDB(long latencyMillis){
+        this.latencyMillis = latencyMillis;
+    }
+
+    public void putItem(Map<String, AttributeValue> item){
+        items.add(item);
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    public int getQueryCount() {
+        return queryCount.get();
+    }
+
+    public int getScanCount() {
+        return scanCount.get();
+    }
+
+    public Integer getLastScanLimit() {
+        return lastScanLimit;
+    }
+
+    public int getGetCount() {
+        return getCount.get();
+    }
+
+    public int getBatchGetCount() {
+        return batchGetCount.get();
+    }
+
+    public int getBatchWriteCount() {
+        return batchWriteCount.get();
+    }
+
+    public List<Map<String, AttributeValue>> getItems() {
+        return items;
+    }
+
+    /**
+     * Simulate throttling, the next batch gets and writes only process the first half of their keys
+     *
+     * @param throttledRequests
+     *              number of throttled requests
+     */
+    public void setThrottledRequests(int throttledRequests) {
+        this.throttledRequests.set(throttledRequests);
+    }
+
+    public void resetStatistics(){
+        maxInFlight.set(0);
+        queryCount.set(0);
+    }
+
+    /**
+     * Supports key conditions of the form "continent = :val1 and begins_with(geohash,:val2)"
+     * and "continent = :val1 and geokey between :val2 and :val3" on any key attribute
+     */
+    @Override
+    public QueryResult query(QueryRequest request) {
+
+        queryCount.incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+
+        String continent = request.getExpressionAttributeValues().get(":val1").getS();
+        String from = request.getExpressionAttributeValues().get(":val2").getS();
+        AttributeValue to = request.getExpressionAttributeValues().get(":val3");
+        String keyCondition = request.getKeyConditionExpression();
+        String key = to == null ? "geohash" : keyCondition.substring(keyCondition.indexOf(" and ") + 5, keyCondition.indexOf(" between "));
+        List<Map<String, AttributeValue>> result = new ArrayList<>();
+        for(Map<String, AttributeValue> item : items){
+            boolean matches = to == null ? item.get("geohash").getS().startsWith(from)
+                    : item.get(key).getS().compareTo(from) >= 0 && item.get(key).getS().compareTo(to.getS()) <= 0;
+            if(continent.equals(item.get("continent").getS()) && matches && result.size() < request.getLimit()){
+                result.add(item);
+            }
+        }
+        return new QueryResult().withItems(result).withCount(result.size());
+    }
+
+    /**
+     * Pages through the items of a segment, items are assigned to segments by the hash code of their id and a page
+     * holds SCAN_PAGE_SIZE items or the limit of the request if it is smaller
+     */
+    @Override
+    public ScanResult scan(ScanRequest request) {
+
+        scanCount.incrementAndGet();
+        lastScanLimit = request.getLimit();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+
+        int segment = request.getSegment() != null ? request.getSegment() : 0;
+        int totalSegments = request.getTotalSegments() != null ? request.getTotalSegments() : 1;
+        String startId = request.getExclusiveStartKey() != null ? request.getExclusiveStartKey().get("id").getS() : "";
+        List<Map<String, AttributeValue>> segmentItems = new ArrayList<>();
+        for(Map<String, AttributeValue> item : items){
+            String id = item.get("id").getS();
+            if(Math.floorMod(id.hashCode(), totalSegments) == segment && id.compareTo(startId) > 0){
+                segmentItems.add(item);
+            }
+        }
+
+        // ordered by id, the start key stays valid if the item is deleted in between
+        segmentItems.sort(Comparator.comparing(item -> item.get("id").getS()));
+        int pageSize = request.getLimit() != null ? Math.min(SCAN_PAGE_SIZE, request.getLimit()) : SCAN_PAGE_SIZE;
+        List<Map<String, AttributeValue>> result = segmentItems.subList(0, Math.min(pageSize, segmentItems.size()));
+        boolean more = segmentItems.size() > pageSize;
+
+        ScanResult scanResult = new ScanResult().withItems(new ArrayList<>(result)).withCount(result.size())
+                .withConsumedCapacity(new ConsumedCapacity().withCapacityUnits(result.size() * SCAN_ITEM_CAPACITY));
+        if(more){
+            scanResult.withLastEvaluatedKey(Collections.singletonMap("id", result.get(result.size() - 1).get("id")));
+        }
+        return scanResult;
+    }
+
+    /**
+     * Looks up an item by its id attribute
+     */
+    @Override
+    public GetItemResult getItem(GetItemRequest request) {
+
+        getCount.incrementAndGet();
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        AttributeValue id = request.getKey().get("id");
+        for(Map<String, AttributeValue> item : items){
+            if(item.get("id").equals(id)){
+                return new GetItemResult().withItem(new HashMap<>(item));
+            }
+        }
+        return new GetItemResult();
+    }
+
+    /**
+     * Supports update expressions of the form "SET #a0 = :v0, #a1 = :v1" on existing items, the condition is
+     * assumed to be attribute_exists on the key
+     */
+    @Override
+    public UpdateItemResult updateItem(UpdateItemRequest request) {
+
+        AttributeValue id = request.getKey().get("id");
+        for(Map<String, AttributeValue> item : items){
+            if(item.get("id").equals(id)){
+                Map<String, AttributeValue> updated = new HashMap<>(item);
+                for(String assignment : request.getUpdateExpression().substring(4).split(",")){
+                    String[] operands = assignment.split("=");
+                    updated.put(request.getExpressionAttributeNames().get(operands[0].trim()),
+                            request.getExpressionAttributeValues().get(operands[1].trim()));
+                }
+                items.remove(item);
+                items.add(updated);
+                return new UpdateItemResult();
+            }
+        }
+        throw new ConditionalCheckFailedException("The conditional request failed");
+    }
+
+    /**
+     * Deletes an item by its id attribute
+     */
+    @Override
+    public DeleteItemResult deleteItem(DeleteItemRequest request) {
+
+        AttributeValue id = request.getKey().get("id");
+        items.removeIf(existing -> existing.get("id").equals(id));
+        return new DeleteItemResult();
+    }
+
+    /**
+     * Looks up items by their id attribute, the second half of the keys of a throttled request is
+     * returned as unprocessed
+     */
+    @Override
+    public BatchGetItemResult batchGetItem(BatchGetItemRequest request) {
+
+        batchGetCount.incrementAndGet();
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        boolean throttled = throttledRequests.getAndDecrement() > 0;
+        Map<String, List<Map<String, AttributeValue>>> responses = new HashMap<>();
+        Map<String, KeysAndAttributes> unprocessed = new HashMap<>();
+        for(Map.Entry<String, KeysAndAttributes> entry : request.getRequestItems().entrySet()){
+            List<Map<String, AttributeValue>> keys = entry.getValue().getKeys();
+            int processed = throttled ? keys.size() / 2 : keys.size();
+            List<Map<String, AttributeValue>> found = new ArrayList<>();
+            for(Map<String, AttributeValue> key : keys.subList(0, processed)){
+                for(Map<String, AttributeValue> item : items){
+                    if(item.get("id").equals(key.get("id"))){
+                        found.add(item);
+                    }
+                }
+            }
+            responses.put(entry.getKey(), found);
+            if(processed < keys.size()){
+                unprocessed.put(entry.getKey(), new KeysAndAttributes().withKeys(keys.subList(processed, keys.size())));
+            }
+        }
+        return new BatchGetItemResult().withResponses(responses).withUnprocessedKeys(unprocessed);
+    }
+
+    /**
+     * Puts and deletes items by their id attribute, the second half of the requests of a throttled batch
+     * is returned as unprocessed
+     */
+    @Override
+    public BatchWriteItemResult batchWriteItem(BatchWriteItemRequest request) {
+
+        batchWriteCount.incrementAndGet();
+        boolean throttled = throttledRequests.getAndDecrement() > 0;
+        Map<String, List<WriteRequest>> unprocessed = new HashMap<>();
+        for(Map.Entry<String, List<WriteRequest>> entry : request.getRequestItems().entrySet()){
+            List<WriteRequest> writes = entry.getValue();
+            int processed = throttled ? writes.size() / 2 : writes.size();
+            for(WriteRequest write : writes.subList(0, processed)){
+                if(write.getPutRequest() != null){
+                    Map<String, AttributeValue> item = write.getPutRequest().getItem();
+                    items.removeIf(existing -> existing.get("id").equals(item.get("id")));
+                    items.add(item);
+                }else{
+                    AttributeValue id = write.getDeleteRequest().getKey().get("id");
+                    items.removeIf(existing -> existing.get("id").equals(id));
+                }
+            }
+            if(processed < writes.size()){
+                unprocessed.put(entry.getKey(), writes.subList(processed, writes.size()));
+            }
+        }
+        return new BatchWriteItemResult().withUnprocessedItems(unprocessed);
+    }
+}
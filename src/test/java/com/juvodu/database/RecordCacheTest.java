@@ -0,0 +1,107 @@
+package com.juvodu.database;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test suite for the eviction, expiry and invalidation of the RecordCache
+ *
+ * @author Juvodu
+ */
+public class RecordCacheTest {
+
+    @Test
+    public void givenCachedItemWhenGetThenCountHit(){
+
+        //setup
+        RecordCache cache = new RecordCache(10, 60000);
+        cache.put("spot", "spot1", String.class, createItem("spot1"), cache.getVersion());
+
+        //execute
+        Map<String, AttributeValue> item = cache.get("spot", "spot1", String.class);
+        Map<String, AttributeValue> missing = cache.get("spot", "spot2", String.class);
+
+        //verify
+        assertEquals("spot1", item.get("id").getS());
+        assertNull(missing);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void givenFullCacheWhenPutThenEvictLeastRecentlyUsed(){
+
+        //setup
+        RecordCache cache = new RecordCache(2, 60000);
+        cache.put("spot", "spot1", String.class, createItem("spot1"), cache.getVersion());
+        cache.put("spot", "spot2", String.class, createItem("spot2"), cache.getVersion());
+        cache.get("spot", "spot1", String.class);
+
+        //execute
+        cache.put("spot", "spot3", String.class, createItem("spot3"), cache.getVersion());
+
+        //verify
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNotNull(cache.get("spot", "spot1", String.class));
+        assertNull(cache.get("spot", "spot2", String.class));
+    }
+
+    @Test
+    public void givenExpiredItemWhenGetThenMiss() throws InterruptedException {
+
+        //setup
+        RecordCache cache = new RecordCache(10, 10);
+        cache.put("spot", "spot1", String.class, createItem("spot1"), cache.getVersion());
+        Thread.sleep(20);
+
+        //execute
+        Map<String, AttributeValue> item = cache.get("spot", "spot1", String.class);
+
+        //verify
+        assertNull(item);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void givenInvalidationDuringReadWhenPutThenDropItem(){
+
+        //setup - the read started before the write
+        RecordCache cache = new RecordCache(10, 60000);
+        long version = cache.getVersion();
+        cache.invalidate("spot", "spot1");
+
+        //execute
+        cache.put("spot", "spot1", String.class, createItem("spot1"), version);
+
+        //verify
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void givenOtherModelClassWhenGetThenMiss(){
+
+        //setup
+        RecordCache cache = new RecordCache(10, 60000);
+        cache.put("spot", "spot1", String.class, createItem("spot1"), cache.getVersion());
+
+        //execute
+        Map<String, AttributeValue> item = cache.get("spot", "spot1", Integer.class);
+
+        //verify
+        assertNull(item);
+        assertEquals(1, cache.getMisses());
+    }
+
+    private Map<String, AttributeValue> createItem(String id){
+
+        return Collections.singletonMap("id", new AttributeValue(id));
+    }
+}
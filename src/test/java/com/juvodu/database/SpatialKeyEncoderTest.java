@@ -0,0 +1,81 @@
+package com.juvodu.database;
+
+import com.juvodu.database.model.Position;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test suite for the SpatialKeyEncoder implementations
+ *
+ * @author Juvodu
+ */
+public class SpatialKeyEncoderTest {
+
+    @Test
+    public void givenGridPositionWhenEncodeGeohashKeyThenEqualGeokey(){
+
+        //setup
+        SpatialKeyEncoder encoder = new GeohashKeyEncoder();
+        Random random = new Random(7);
+
+        for(int i = 0; i < 1000; i++){
+            Position position = new Position(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            long x = SpatialKeyEncoder.toGrid(position.getLongitude() + 180, 360);
+            long y = SpatialKeyEncoder.toGrid(position.getLatitude() + 90, 180);
+
+            //execute
+            String key = DatabaseHelper.createGeokey(encoder.getCurveIndex(SpatialKeyEncoder.ORDER, x, y));
+
+            //verify
+            assertEquals(DatabaseHelper.createGeokey(position), key);
+        }
+    }
+
+    @Test
+    public void givenConsecutiveHilbertIndexesWhenDecodeThenCellsAreAdjacent(){
+
+        //setup - inverse of the curve on a small grid
+        SpatialKeyEncoder encoder = new HilbertKeyEncoder();
+        int level = 6;
+        int size = 1 << level;
+        long[][] cells = new long[size * size][];
+        for(long x = 0; x < size; x++){
+            for(long y = 0; y < size; y++){
+                cells[(int) encoder.getCurveIndex(level, x, y)] = new long[]{x, y};
+            }
+        }
+
+        //verify - every cell is visited once and each step moves to a neighbour
+        for(int i = 1; i < cells.length; i++){
+            long steps = Math.abs(cells[i][0] - cells[i - 1][0]) + Math.abs(cells[i][1] - cells[i - 1][1]);
+            assertEquals(1, steps);
+        }
+    }
+
+    @Test
+    public void givenPositionWhenEncodeHilbertKeyThenKeyWithinRangeOfCoarserCells(){
+
+        //setup
+        SpatialKeyEncoder encoder = new HilbertKeyEncoder();
+        Random random = new Random(7);
+
+        for(int i = 0; i < 1000; i++){
+            Position position = new Position(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            int level = 1 + random.nextInt(SpatialKeyEncoder.ORDER);
+            long x = SpatialKeyEncoder.toGrid(position.getLongitude() + 180, 360) >>> (SpatialKeyEncoder.ORDER - level);
+            long y = SpatialKeyEncoder.toGrid(position.getLatitude() + 90, 180) >>> (SpatialKeyEncoder.ORDER - level);
+
+            //execute
+            String key = encoder.encode(position);
+            long[] range = encoder.getCellRange(level, x, y);
+
+            //verify
+            assertTrue(key.compareTo(DatabaseHelper.createGeokey(range[0])) >= 0);
+            assertTrue(key.compareTo(DatabaseHelper.createGeokey(range[1])) <= 0);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.juvodu.database.converter;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.juvodu.database.memory.InMemoryDynamoDB;
+import com.juvodu.database.model.Continent;
+import com.juvodu.database.model.Country;
+import com.juvodu.database.model.Position;
+import com.juvodu.service.SpotService;
+import com.juvodu.service.testmodel.SpotTestModel;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test suite for the CompressedStringTypeConverter and its effect on item size and consumed capacity
+ *
+ * @author Juvodu
+ */
+public class CompressedStringTypeConverterTest {
+
+    private final CompressedStringTypeConverter converter = new CompressedStringTypeConverter();
+
+    @Test
+    public void givenShortTextWhenConvertThenStorePlain(){
+
+        //execute
+        String value = converter.convert("Sandy beach break");
+
+        //verify
+        assertEquals("Sandy beach break", value);
+        assertEquals("Sandy beach break", converter.unconvert(value));
+    }
+
+    @Test
+    public void givenLongTextWhenConvertThenStoreCompressed(){
+
+        //setup
+        String description = createDescription();
+
+        //execute
+        String value = converter.convert(description);
+
+        //verify
+        assertTrue(value.startsWith(CompressedStringTypeConverter.PREFIX));
+        assertTrue(value.length() < description.length() / 2);
+        assertEquals(description, converter.unconvert(value));
+    }
+
+    @Test
+    public void givenTextWithPrefixWhenConvertThenCompressToStayReadable(){
+
+        //setup
+        String text = CompressedStringTypeConverter.PREFIX + "not compressed";
+
+        //execute
+        String value = converter.convert(text);
+
+        //verify
+        assertEquals(text, converter.unconvert(value));
+    }
+
+    @Test
+    public void givenLargeDescriptionWhenSaveThenItemSizeAndCapacityReduced(){
+
+        //setup - the same spot stored compressed by the service and plain as written before the conversion
+        InMemoryDynamoDB dynamoDB = InMemoryDynamoDB.withTables("_test");
+        SpotService<SpotTestModel> spotService = new SpotService<>(SpotTestModel.class, dynamoDB);
+        SpotTestModel spot = createSpot();
+        spotService.save(spot);
+
+        Map<String, AttributeValue> compressedItem = getItem(dynamoDB, spot.getId()).getItem();
+        Map<String, AttributeValue> plainItem = new HashMap<>(compressedItem);
+        plainItem.put("id", new AttributeValue("plain"));
+        plainItem.put("description", new AttributeValue(spot.getDescription()));
+
+        //execute
+        double compressedWrite = dynamoDB.putItem(new PutItemRequest().withTableName("spot_test").withItem(compressedItem)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL)).getConsumedCapacity().getCapacityUnits();
+        double plainWrite = dynamoDB.putItem(new PutItemRequest().withTableName("spot_test").withItem(plainItem)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL)).getConsumedCapacity().getCapacityUnits();
+        double compressedRead = getItem(dynamoDB, spot.getId()).getConsumedCapacity().getCapacityUnits();
+        double plainRead = getItem(dynamoDB, "plain").getConsumedCapacity().getCapacityUnits();
+
+        //verify - the description is read back as it was saved
+        assertEquals(spot.getDescription(), spotService.getByHashKey(spot.getId()).getDescription());
+        assertEquals(spot.getDescription(), spotService.getByHashKey("plain").getDescription());
+        assertTrue(compressedItem.get("description").getS().length() < spot.getDescription().length() / 2);
+        assertEquals(5.0, plainWrite, 0.0);
+        assertEquals(1.0, compressedWrite, 0.0);
+        assertEquals(2.0, plainRead, 0.0);
+        assertEquals(1.0, compressedRead, 0.0);
+    }
+
+    private GetItemResult getItem(InMemoryDynamoDB dynamoDB, String id){
+
+        return dynamoDB.getItem(new GetItemRequest().withTableName("spot_test")
+                .withKey(Collections.singletonMap("id", new AttributeValue(id)))
+                .withConsistentRead(true)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL));
+    }
+
+    private SpotTestModel createSpot(){
+
+        SpotTestModel spot = new SpotTestModel();
+        spot.setName("unit test name");
+        spot.setShortDescription("unit short description");
+        spot.setDescription(createDescription());
+        spot.setContinent(Continent.EU);
+        spot.setCountry(new Country("FR", "France"));
+        spot.setPosition(new Position(43.671223, -1.441445));
+        spot.setCronDate(new Date());
+
+        // keeps the spot service from creating a topic
+        spot.setTopicArn("arn:aws:sns:eu-central-1:000000000000:test");
+        return spot;
+    }
+
+    /**
+     * @return free text description of about 4 KB
+     */
+    private String createDescription(){
+
+        StringBuilder description = new StringBuilder();
+        for(int i = 0; i < 40; i++){
+            description.append("Peak ").append(i).append(" breaks over sand and rocks, best at mid tide with a west swell of ")
+                    .append(1 + i % 3).append(" m and light offshore winds. ");
+        }
+        return description.toString();
+    }
+}
@@ -0,0 +1,218 @@
+package com.juvodu.database.memory;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.model.AmazonDynamoDBException;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.juvodu.database.model.Continent;
+import com.juvodu.database.model.Country;
+import com.juvodu.database.model.CreateResult;
+import com.juvodu.database.model.Position;
+import com.juvodu.database.model.ResultPage;
+import com.juvodu.service.GenericPersistenceService;
+import com.juvodu.service.SpotService;
+import com.juvodu.service.testmodel.FavoriteTestModel;
+import com.juvodu.service.testmodel.SpotTestModel;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test suite running the services on the in-memory storage backend
+ *
+ * @author Juvodu
+ */
+public class InMemoryDynamoDBTest {
+
+    private final Country france = new Country("FR", "France");
+    private final Country spain = new Country("ES", "Spain");
+    private final Position hossegor = new Position(43.671223, -1.441445);
+    private final Position capbreton = new Position(43.644612, -1.445018);
+    private final Position liencres = new Position(43.452663, -3.963651);
+
+    private InMemoryDynamoDB dynamoDB;
+    private SpotService<SpotTestModel> spotService;
+    private GenericPersistenceService<FavoriteTestModel> favoriteService;
+
+    @Before
+    public void before(){
+
+        dynamoDB = InMemoryDynamoDB.withTables("_test");
+        spotService = new SpotService<>(SpotTestModel.class, dynamoDB);
+        favoriteService = new GenericPersistenceService<>(FavoriteTestModel.class,
+                DynamoDBMapperConfig.SaveBehavior.UPDATE_SKIP_NULL_ATTRIBUTES, dynamoDB);
+    }
+
+    @Test
+    public void givenSavedSpotWhenGetByHashKeyThenReturnSpot(){
+
+        //setup
+        SpotTestModel spot = createSpot(Continent.EU, france, hossegor);
+        spotService.save(spot);
+
+        //execute
+        SpotTestModel result = spotService.getByHashKey(spot.getId());
+
+        //verify
+        assertNotNull(result);
+        assertEquals("unit test name", result.getName());
+        assertEquals(france.getCode(), result.getCountry().getCode());
+        assertNotNull(result.getGeokey());
+    }
+
+    @Test
+    public void givenSpotsWhenFindByCountryThenReturnPages(){
+
+        //setup
+        for(int i = 0; i < 5; i++){
+            spotService.save(createSpot(Continent.EU, france, hossegor));
+        }
+        spotService.save(createSpot(Continent.EU, spain, liencres));
+
+        //execute
+        ResultPage<SpotTestModel> first = spotService.findByCountry(Continent.EU, france, 3, null);
+        ResultPage<SpotTestModel> second = spotService.findByCountry(Continent.EU, france, 3, first.getNextPageToken());
+
+        //verify
+        assertEquals(3, first.getResults().size());
+        assertNotNull(first.getNextPageToken());
+        assertEquals(2, second.getResults().size());
+        Set<String> ids = new HashSet<>();
+        first.getResults().forEach(spot -> ids.add(spot.getId()));
+        second.getResults().forEach(spot -> ids.add(spot.getId()));
+        assertEquals(5, ids.size());
+    }
+
+    @Test
+    public void givenSpotsWhenFindByDistanceThenReturnNearbySpots(){
+
+        //setup
+        spotService.save(createSpot(Continent.EU, france, hossegor));
+        spotService.save(createSpot(Continent.EU, france, capbreton));
+        spotService.save(createSpot(Continent.EU, spain, liencres));
+
+        //execute
+        List<SpotTestModel> spots = spotService.findByDistance(Continent.EU, hossegor, 10, 10);
+
+        //verify
+        assertEquals(2, spots.size());
+    }
+
+    @Test
+    public void givenSpotsWhenScanThenReturnAllSpots(){
+
+        //setup
+        for(int i = 0; i < 4; i++){
+            spotService.save(createSpot(Continent.EU, france, hossegor));
+        }
+
+        //execute
+        List<SpotTestModel> spots = spotService.scan(3, 0).collect(Collectors.toList());
+
+        //verify
+        assertEquals(4, spots.size());
+    }
+
+    @Test
+    public void givenExistingFavoriteWhenCreateThenAlreadyExists(){
+
+        //setup
+        FavoriteTestModel favorite = createFavorite();
+
+        //execute
+        CreateResult created = favoriteService.create(favorite);
+        CreateResult duplicate = favoriteService.create(createFavorite());
+
+        //verify
+        assertEquals(CreateResult.CREATED, created);
+        assertEquals(CreateResult.ALREADY_EXISTS, duplicate);
+        assertNotNull(favoriteService.getByCompositeKey("user1", "spot1"));
+    }
+
+    @Test
+    public void givenSavedSpotWhenUpdateThenOnlySetAttributes(){
+
+        //setup
+        SpotTestModel spot = createSpot(Continent.EU, france, hossegor);
+        spotService.save(spot);
+        SpotTestModel conditions = new SpotTestModel();
+        conditions.setId(spot.getId());
+        conditions.setName("updated name");
+        conditions.setSwellHeight("2.5");
+
+        //execute
+        boolean updated = spotService.update(conditions, "swellHeight");
+        SpotTestModel missing = new SpotTestModel();
+        missing.setId("missing");
+        missing.setSwellHeight("1.0");
+        boolean updatedMissing = spotService.update(missing, "swellHeight");
+
+        //verify
+        assertTrue(updated);
+        assertFalse(updatedMissing);
+        SpotTestModel result = spotService.getByHashKey(spot.getId());
+        assertEquals("2.5", result.getSwellHeight());
+        assertEquals("unit test name", result.getName());
+        assertNull(spotService.getByHashKey("missing"));
+    }
+
+    @Test
+    public void givenWritesWhenReadThenConsumeCapacity(){
+
+        //setup
+        dynamoDB.resetConsumedCapacity();
+
+        //execute
+        favoriteService.save(createFavorite());
+        favoriteService.getByCompositeKey("user1", "spot1");
+
+        //verify - small items consume one write unit and half a read unit
+        assertEquals(1.0, dynamoDB.getConsumedWriteCapacity(), 0.0);
+        assertEquals(0.5, dynamoDB.getConsumedReadCapacity(), 0.0);
+    }
+
+    @Test(expected = AmazonDynamoDBException.class)
+    public void givenQueryOnRangeKeyOnlyWhenQueryThenValidationError(){
+
+        //execute
+        dynamoDB.query(new QueryRequest()
+                .withTableName("favorite_test")
+                .withKeyConditionExpression("spotId = :v")
+                .withExpressionAttributeValues(Collections.singletonMap(":v", new AttributeValue("spot1"))));
+    }
+
+    private SpotTestModel createSpot(Continent continent, Country country, Position position){
+
+        SpotTestModel spot = new SpotTestModel();
+        spot.setName("unit test name");
+        spot.setShortDescription("unit short description");
+        spot.setContinent(continent);
+        spot.setCountry(country);
+        spot.setPosition(position);
+        spot.setCronDate(new Date());
+
+        // keeps the spot service from creating a topic
+        spot.setTopicArn("arn:aws:sns:eu-central-1:000000000000:test");
+        return spot;
+    }
+
+    private FavoriteTestModel createFavorite(){
+
+        FavoriteTestModel favorite = new FavoriteTestModel();
+        favorite.setUsername("user1");
+        favorite.setSpotId("spot1");
+        return favorite;
+    }
+}
@@ -0,0 +1,119 @@
+package com.juvodu.index;
+
+import com.juvodu.database.model.Country;
+import com.juvodu.database.model.FacetResult;
+import com.juvodu.database.model.Spot;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Test suite for the FacetIndex
+ *
+ * @author Juvodu
+ */
+public class FacetIndexTest {
+
+    private final Country portugal = new Country("PT", "Portugal");
+    private final Country france = new Country("FR", "France");
+
+    private final List<Spot> spots = Arrays.asList(
+            createSpot("1", "Supertubos", "Beach", "Sand", "Intermediate", portugal),
+            createSpot("2", "Coxos", "Reef", "Rock", "Advanced", portugal),
+            createSpot("3", "Ribeira d'Ilhas", "Reef", "Rock", "Intermediate", portugal),
+            createSpot("4", "Hossegor", "Beach", "Sand", "Advanced", france),
+            createSpot("5", "Guethary", "Reef", "Rock", "Intermediate", france));
+
+    @Test
+    public void givenFiltersOfSeveralFacetsWhenFindThenReturnSpotsMatchingAll(){
+
+        //setup
+        FacetIndex facetIndex = new FacetIndex(spots);
+        Map<Facet, List<String>> filters = new EnumMap<>(Facet.class);
+        filters.put(Facet.TYPE, Collections.singletonList("reef"));
+        filters.put(Facet.EXPERIENCE, Collections.singletonList("INTERMEDIATE"));
+        filters.put(Facet.COUNTRY, Collections.singletonList("PT"));
+
+        //execute
+        FacetResult result = facetIndex.find(filters, 10);
+
+        //verify
+        assertEquals(1, result.getTotal());
+        assertEquals("3", result.getSpots().get(0).getId());
+        assertNotSame(spots.get(2), result.getSpots().get(0));
+    }
+
+    @Test
+    public void givenSeveralValuesOfOneFacetWhenFindThenReturnSpotsMatchingAnyInNameOrder(){
+
+        //setup
+        FacetIndex facetIndex = new FacetIndex(spots);
+        Map<Facet, List<String>> filters = new EnumMap<>(Facet.class);
+        filters.put(Facet.EXPERIENCE, Arrays.asList("intermediate", "advanced"));
+        filters.put(Facet.COUNTRY, Collections.singletonList("fr"));
+
+        //execute
+        FacetResult result = facetIndex.find(filters, 1);
+
+        //verify
+        assertEquals(2, result.getTotal());
+        assertEquals(1, result.getSpots().size());
+        assertEquals("5", result.getSpots().get(0).getId());
+    }
+
+    @Test
+    public void givenFilterWhenFindThenCountFacetValuesWithFiltersOfOtherFacets(){
+
+        //setup
+        FacetIndex facetIndex = new FacetIndex(spots);
+        Map<Facet, List<String>> filters = new EnumMap<>(Facet.class);
+        filters.put(Facet.TYPE, Collections.singletonList("reef"));
+
+        //execute
+        FacetResult result = facetIndex.find(filters, 10);
+
+        //verify - type counts ignore the type filter, all other counts apply it
+        assertEquals(3, result.getTotal());
+        assertEquals(Integer.valueOf(2), result.getFacets().get("type").get("beach"));
+        assertEquals(Integer.valueOf(3), result.getFacets().get("type").get("reef"));
+        assertEquals(Integer.valueOf(2), result.getFacets().get("country").get("pt"));
+        assertEquals(Integer.valueOf(1), result.getFacets().get("country").get("fr"));
+        assertFalse(result.getFacets().get("bottom").containsKey("sand"));
+    }
+
+    @Test
+    public void givenUnknownValueWhenFindThenReturnNoSpots(){
+
+        //setup
+        FacetIndex facetIndex = new FacetIndex(spots);
+        Map<Facet, List<String>> filters = new EnumMap<>(Facet.class);
+        filters.put(Facet.BOTTOM, Collections.singletonList("lava"));
+
+        //execute
+        FacetResult result = facetIndex.find(filters, 10);
+
+        //verify
+        assertEquals(0, result.getTotal());
+        assertEquals(0, result.getSpots().size());
+    }
+
+    private Spot createSpot(String id, String name, String type, String bottom, String experience, Country country){
+
+        Spot spot = new Spot();
+        spot.setId(id);
+        spot.setName(name);
+        spot.setType(type);
+        spot.setBottom(bottom);
+        spot.setExperience(experience);
+        spot.setCountry(country);
+        return spot;
+    }
+}
@@ -0,0 +1,118 @@
+package com.juvodu.index;
+
+import com.juvodu.database.model.BaseSpot;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test suite for the NameIndex
+ *
+ * @author Juvodu
+ */
+public class NameIndexTest {
+
+    private final BaseSpot hossegor = createSpot("1", "Hossegor La Graviere");
+    private final BaseSpot hossegorNord = createSpot("2", "Hossegor Nord");
+    private final BaseSpot liencres = createSpot("3", "Playa de Liencres");
+    private final BaseSpot pipeline = createSpot("4", "Pipeline");
+    private final BaseSpot graviere = createSpot("5", "La Gravi\u00e8re");
+
+    @Test
+    public void givenPrefixOfNamesWhenFindByNameThenReturnAllMatchesShorterNameFirst(){
+
+        //setup
+        NameIndex nameIndex = new NameIndex(Arrays.asList(hossegor, hossegorNord, liencres, pipeline, graviere));
+
+        //execute
+        List<BaseSpot> spots = nameIndex.findByName("hosse", 10);
+
+        //verify
+        assertEquals(2, spots.size());
+        assertEquals("2", spots.get(0).getId());
+        assertEquals("1", spots.get(1).getId());
+    }
+
+    @Test
+    public void givenExactNameWhenFindByNameThenReturnExactMatchFirst(){
+
+        //setup
+        NameIndex nameIndex = new NameIndex(Arrays.asList(hossegor, hossegorNord, liencres, pipeline, graviere));
+
+        //execute - accents and case are ignored
+        List<BaseSpot> spots = nameIndex.findByName("LA GRAVIERE", 10);
+
+        //verify
+        assertEquals("5", spots.get(0).getId());
+        assertEquals("1", spots.get(1).getId());
+    }
+
+    @Test
+    public void givenWordInsideNameWhenFindByNameThenReturnSpot(){
+
+        //setup
+        NameIndex nameIndex = new NameIndex(Arrays.asList(hossegor, hossegorNord, liencres, pipeline, graviere));
+
+        //execute
+        List<BaseSpot> spots = nameIndex.findByName("lienc", 10);
+
+        //verify
+        assertEquals(1, spots.size());
+        assertEquals("3", spots.get(0).getId());
+    }
+
+    @Test
+    public void givenMisspelledNameWhenFindByNameThenReturnSpot(){
+
+        //setup
+        NameIndex nameIndex = new NameIndex(Arrays.asList(hossegor, hossegorNord, liencres, pipeline, graviere));
+
+        //execute
+        List<BaseSpot> spots = nameIndex.findByName("pipelin", 10);
+        List<BaseSpot> misspelled = nameIndex.findByName("piepline", 10);
+
+        //verify
+        assertEquals("4", spots.get(0).getId());
+        assertTrue(!misspelled.isEmpty());
+        assertEquals("4", misspelled.get(0).getId());
+    }
+
+    @Test
+    public void givenLimitWhenFindByNameThenReturnCopiesUpToLimit(){
+
+        //setup
+        NameIndex nameIndex = new NameIndex(Arrays.asList(hossegor, hossegorNord, liencres, pipeline, graviere));
+
+        //execute
+        List<BaseSpot> spots = nameIndex.findByName("hossegor", 1);
+
+        //verify
+        assertEquals(1, spots.size());
+        assertEquals("2", spots.get(0).getId());
+        assertNotSame(hossegorNord, spots.get(0));
+    }
+
+    @Test
+    public void givenUnknownOrBlankNameWhenFindByNameThenReturnEmptyList(){
+
+        //setup
+        NameIndex nameIndex = new NameIndex(Arrays.asList(hossegor, hossegorNord, liencres, pipeline, graviere));
+
+        //execute & verify
+        assertTrue(nameIndex.findByName("xyz", 10).isEmpty());
+        assertTrue(nameIndex.findByName(" - ", 10).isEmpty());
+    }
+
+    private BaseSpot createSpot(String id, String name){
+
+        BaseSpot spot = new BaseSpot();
+        spot.setId(id);
+        spot.setName(name);
+        return spot;
+    }
+}
@@ -0,0 +1,122 @@
+package com.juvodu.index;
+
+import com.juvodu.database.model.BaseSpot;
+import com.juvodu.database.model.Position;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test suite for the SpatialIndex
+ *
+ * @author Juvodu
+ */
+public class SpatialIndexTest {
+
+    private final Position hossegor = new Position(43.671223, -1.441445);
+    private final Position hermosa = new Position(33.863329, -118.403169);
+    private final Position liencres = new Position(43.452663, -3.963651);
+
+    @Test
+    public void givenSearchRadiusAndOneSpotInRadiusWhenFindByDistanceThenReturnOneSpot(){
+
+        //setup
+        SpatialIndex spatialIndex = new SpatialIndex(Arrays.asList(createSpot("1", hossegor),
+                createSpot("2", hermosa), createSpot("3", liencres)));
+
+        //execute
+        List<BaseSpot> spots = spatialIndex.findByDistance(hossegor, 1, 100);
+
+        //verify
+        assertEquals(1, spots.size());
+        assertEquals("1", spots.get(0).getId());
+    }
+
+    @Test
+    public void givenSearchRadiusTwoSpotsInRadiusWhenFindByDistanceThenReturnSortedByDistance(){
+
+        //setup
+        BaseSpot spot = createSpot("3", liencres);
+        SpatialIndex spatialIndex = new SpatialIndex(Arrays.asList(spot, createSpot("2", hermosa), createSpot("1", hossegor)));
+
+        //execute - distance between both spots is 210km
+        List<BaseSpot> spots = spatialIndex.findByDistance(hossegor, 210, 100);
+
+        //verify
+        assertEquals(2, spots.size());
+        assertEquals("1", spots.get(0).getId());
+        assertEquals("3", spots.get(1).getId());
+        assertEquals(0, spots.get(0).getDistance());
+        assertTrue(spots.get(1).getDistance() > 200);
+        assertNotSame(spot, spots.get(1));
+        assertEquals(0, spot.getDistance());
+    }
+
+    @Test
+    public void givenLimitWhenFindByDistanceThenReturnClosestSpots(){
+
+        //setup
+        SpatialIndex spatialIndex = new SpatialIndex(Arrays.asList(createSpot("1", hossegor), createSpot("3", liencres)));
+
+        //execute
+        List<BaseSpot> spots = spatialIndex.findByDistance(hossegor, 210, 1);
+
+        //verify
+        assertEquals(1, spots.size());
+        assertEquals("1", spots.get(0).getId());
+    }
+
+    @Test
+    public void givenSpotsAcrossAntimeridianWhenFindByDistanceThenReturnBoth(){
+
+        //setup - fiji east and west of the antimeridian
+        SpatialIndex spatialIndex = new SpatialIndex(Arrays.asList(createSpot("1", new Position(-16.8, 179.9)),
+                createSpot("2", new Position(-16.8, -179.9))));
+
+        //execute
+        List<BaseSpot> spots = spatialIndex.findByDistance(new Position(-16.8, 179.95), 50, 100);
+
+        //verify
+        assertEquals(2, spots.size());
+    }
+
+    @Test
+    public void givenSpotWithoutPositionWhenCreateIndexThenSpotIsSkipped(){
+
+        //setup
+        List<BaseSpot> spots = new ArrayList<>();
+        spots.add(createSpot("1", null));
+        spots.add(createSpot("2", hossegor));
+
+        //execute
+        SpatialIndex spatialIndex = new SpatialIndex(spots);
+
+        //verify
+        assertEquals(1, spatialIndex.size());
+    }
+
+    /**
+     * Helper function to create a spot summary
+     *
+     * @param id
+     *          of the spot
+     * @param position
+     *          where the spot is located
+     *
+     * @return the created spot summary
+     */
+    private BaseSpot createSpot(String id, Position position){
+
+        BaseSpot spot = new BaseSpot();
+        spot.setId(id);
+        spot.setName("unit test name");
+        spot.setPosition(position);
+        return spot;
+    }
+}
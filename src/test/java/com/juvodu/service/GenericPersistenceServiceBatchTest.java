@@ -0,0 +1,371 @@
+package com.juvodu.service;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.juvodu.database.LatencyDynamoDB;
+import com.juvodu.database.RecordCache;
+import com.juvodu.database.memory.InMemoryDynamoDB;
+import com.juvodu.database.model.BatchWriteResult;
+import com.juvodu.service.testmodel.SpotTestModel;
+import com.juvodu.util.Constants;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test suite for the batch reads and writes, the partial updates, the asynchronous operations, the scans and the
+ * record cache of the GenericPersistenceService, runs against a local DynamoDB stand-in
+ *
+ * @author Juvodu
+ */
+public class GenericPersistenceServiceBatchTest {
+
+    private LatencyDynamoDB dynamoDB;
+    private GenericPersistenceService<SpotTestModel> persistenceService;
+
+    @Before
+    public void before(){
+
+        dynamoDB = new LatencyDynamoDB(0);
+        for(int i = 0; i < 250; i++){
+            dynamoDB.putItem(createItem("spot" + i));
+        }
+        persistenceService = new GenericPersistenceService<>(SpotTestModel.class,
+                DynamoDBMapperConfig.SaveBehavior.UPDATE, dynamoDB);
+    }
+
+    @Test
+    public void givenIdsWhenGetByIdsThenReturnRecordsInOrderOfIds(){
+
+        //setup
+        List<String> ids = Arrays.asList("spot7", "unknown", "spot3", "spot5", "spot3");
+
+        //execute
+        List<SpotTestModel> records = persistenceService.getByIds(ids);
+
+        //verify - one round trip, missing ids are skipped and duplicates kept
+        assertEquals(1, dynamoDB.getBatchGetCount());
+        assertEquals(4, records.size());
+        assertEquals("spot7", records.get(0).getId());
+        assertEquals("spot3", records.get(1).getId());
+        assertEquals("spot5", records.get(2).getId());
+        assertEquals("spot3", records.get(3).getId());
+    }
+
+    @Test
+    public void givenMoreIdsThanBatchSizeWhenGetByIdsThenLoadInChunks(){
+
+        //setup
+        List<String> ids = new ArrayList<>();
+        for(int i = 249; i >= 0; i--){
+            ids.add("spot" + i);
+        }
+
+        //execute
+        List<SpotTestModel> records = persistenceService.getByIds(ids);
+
+        //verify
+        assertEquals(3, dynamoDB.getBatchGetCount());
+        assertEquals(250, records.size());
+        assertEquals("spot249", records.get(0).getId());
+        assertEquals("spot0", records.get(249).getId());
+    }
+
+    @Test
+    public void givenThrottledRequestsWhenGetByIdsThenRetryUnprocessedKeys(){
+
+        //setup
+        dynamoDB.setThrottledRequests(2);
+
+        //execute
+        List<SpotTestModel> records = persistenceService.getByIds(Arrays.asList("spot1", "spot2", "spot3", "spot4"));
+
+        //verify - 2 of 4 keys, 1 of 2 keys and the last key
+        assertEquals(3, dynamoDB.getBatchGetCount());
+        assertEquals(4, records.size());
+        assertEquals("spot4", records.get(3).getId());
+    }
+
+    @Test
+    public void givenRecordsWhenBatchSaveThenWriteInBatchesOf25(){
+
+        //setup
+        List<SpotTestModel> records = new ArrayList<>();
+        for(int i = 250; i < 310; i++){
+            SpotTestModel record = new SpotTestModel();
+            record.setId("spot" + i);
+            records.add(record);
+        }
+
+        //execute
+        List<BatchWriteResult> results = persistenceService.batchSave(records);
+
+        //verify
+        assertEquals(3, results.size());
+        assertEquals(25, results.get(0).getItems());
+        assertEquals(10, results.get(2).getItems());
+        assertTrue(results.stream().allMatch(BatchWriteResult::isSuccessful));
+        assertEquals(3, dynamoDB.getBatchWriteCount());
+        assertEquals(310, dynamoDB.getItems().size());
+    }
+
+    @Test
+    public void givenThrottledRequestsWhenBatchDeleteThenRetryUnprocessedItems(){
+
+        //setup
+        List<SpotTestModel> records = persistenceService.getByIds(Arrays.asList("spot1", "spot2", "spot3", "spot4"));
+        dynamoDB.setThrottledRequests(2);
+
+        //execute
+        List<BatchWriteResult> results = persistenceService.batchDelete(records);
+
+        //verify - 2 of 4 items, 1 of 2 items and the last item
+        assertEquals(1, results.size());
+        assertTrue(results.get(0).isSuccessful());
+        assertEquals(3, dynamoDB.getBatchWriteCount());
+        assertEquals(246, dynamoDB.getItems().size());
+    }
+
+    @Test
+    public void givenExistingRecordWhenUpdateThenSetOnlyGivenAttributes(){
+
+        //setup
+        SpotTestModel record = new SpotTestModel();
+        record.setId("spot1");
+        record.setSwellHeight("2.1");
+        record.setDescription("not written");
+
+        //execute - null attributes are skipped
+        boolean updated = persistenceService.update(record, "swellHeight", "swellPeriod");
+
+        //verify
+        assertTrue(updated);
+        SpotTestModel result = persistenceService.getByHashKey("spot1");
+        assertEquals("2.1", result.getSwellHeight());
+        assertEquals("unit test name", result.getName());
+        assertNull(result.getDescription());
+        assertNull(result.getSwellPeriod());
+    }
+
+    @Test
+    public void givenDeletedRecordWhenUpdateThenReturnFalse(){
+
+        //setup
+        SpotTestModel record = new SpotTestModel();
+        record.setId("unknown");
+        record.setSwellHeight("2.1");
+
+        //execute
+        boolean updated = persistenceService.update(record, "swellHeight");
+
+        //verify
+        assertFalse(updated);
+        assertEquals(250, dynamoDB.getItems().size());
+    }
+
+    @Test
+    public void givenIndependentLoadsWhenGetByHashKeyAsyncThenOverlapRequests(){
+
+        //setup
+        LatencyDynamoDB slowDynamoDB = new LatencyDynamoDB(100);
+        slowDynamoDB.putItem(createItem("spot1"));
+        slowDynamoDB.putItem(createItem("spot2"));
+        GenericPersistenceService<SpotTestModel> slowService = new GenericPersistenceService<>(SpotTestModel.class,
+                DynamoDBMapperConfig.SaveBehavior.UPDATE, slowDynamoDB);
+        slowService.getByHashKey("spot1");
+        long start = System.currentTimeMillis();
+
+        //execute
+        CompletableFuture<SpotTestModel> first = slowService.getByHashKeyAsync("spot1");
+        CompletableFuture<SpotTestModel> second = slowService.getByHashKeyAsync("spot2");
+        CompletableFuture<SpotTestModel> missing = slowService.getByHashKeyAsync("unknown");
+        CompletableFuture.allOf(first, second, missing).join();
+
+        //verify - the calls take as long as the slowest one
+        assertTrue(System.currentTimeMillis() - start < 250);
+        assertEquals("spot1", first.join().getId());
+        assertEquals("spot2", second.join().getId());
+        assertNull(missing.join());
+    }
+
+    @Test
+    public void givenRecordWhenDeleteAsyncThenDeleteOnCompletion(){
+
+        //setup
+        SpotTestModel record = persistenceService.getByHashKey("spot1");
+
+        //execute
+        persistenceService.deleteAsync(record).join();
+
+        //verify
+        assertEquals(249, dynamoDB.getItems().size());
+        assertNull(persistenceService.getByHashKey("spot1"));
+    }
+
+    @Test
+    public void givenSegmentsWhenScanThenStreamAllRecords(){
+
+        //execute
+        Set<String> ids;
+        try(Stream<SpotTestModel> scan = persistenceService.scan(4, 0)){
+            ids = scan.map(SpotTestModel::getId).collect(Collectors.toSet());
+        }
+
+        //verify - every segment is paged through, 25 pages of 10 items at least
+        assertEquals(250, ids.size());
+        assertTrue(ids.contains("spot0"));
+        assertTrue(ids.contains("spot249"));
+        assertTrue(dynamoDB.getScanCount() >= 25);
+    }
+
+    @Test
+    public void givenReadCapacityLimitWhenScanThenSpreadConsumption(){
+
+        //setup - 250 items consume 125 units, the first 50 are available immediately
+        long start = System.currentTimeMillis();
+
+        //execute
+        long count;
+        try(Stream<SpotTestModel> scan = persistenceService.scan(4, 50)){
+            count = scan.count();
+        }
+
+        //verify - the remaining 75 units take 1.5 seconds
+        assertEquals(250, count);
+        assertTrue(System.currentTimeMillis() - start >= 1400);
+    }
+
+    @Test
+    public void givenReadCapacityLimitWhenScanThenSizePagesToRate(){
+
+        //execute - 2 units per second read 4 items of up to 4 KB per second
+        long count;
+        try(Stream<SpotTestModel> scan = persistenceService.scan(1, 2)){
+            count = scan.limit(3).count();
+        }
+
+        //verify
+        assertEquals(3, count);
+        assertEquals(Integer.valueOf(4), dynamoDB.getLastScanLimit());
+    }
+
+    @Test
+    public void givenProvisionedTableWhenGetScanReadCapacityThenShareOfReadCapacity(){
+
+        //setup - the test tables are provisioned with 1 read capacity unit
+        GenericPersistenceService<SpotTestModel> service = new GenericPersistenceService<>(SpotTestModel.class,
+                DynamoDBMapperConfig.SaveBehavior.UPDATE, InMemoryDynamoDB.withTables("_test"));
+
+        //execute
+        double readCapacity = service.getScanReadCapacity();
+
+        //verify
+        assertEquals(Constants.SCAN_READ_CAPACITY_FRACTION, readCapacity, 0.0001);
+    }
+
+    @Test
+    public void givenClosedStreamWhenScanThenStopWorkers() throws InterruptedException {
+
+        //execute
+        List<SpotTestModel> records;
+        try(Stream<SpotTestModel> scan = persistenceService.scan(2, 0)){
+            records = scan.limit(5).collect(Collectors.toList());
+        }
+        Thread.sleep(100);
+        int scanCount = dynamoDB.getScanCount();
+        Thread.sleep(100);
+
+        //verify - workers only read ahead a few pages and stop on close
+        assertEquals(5, records.size());
+        assertTrue(scanCount < 25);
+        assertEquals(scanCount, dynamoDB.getScanCount());
+    }
+
+    @Test
+    public void givenRecordsWhenDeleteAllThenDeleteScannedRecordsInBatches(){
+
+        //execute
+        List<BatchWriteResult> results = persistenceService.deleteAll();
+
+        //verify
+        assertEquals(10, results.size());
+        assertEquals(9, results.get(9).getBatch());
+        assertTrue(results.stream().allMatch(BatchWriteResult::isSuccessful));
+        assertEquals(0, dynamoDB.getItems().size());
+    }
+
+    @Test
+    public void givenRecordCacheWhenGetByHashKeyTwiceThenReadOnce(){
+
+        //setup
+        RecordCache recordCache = new RecordCache(10, 60000);
+        persistenceService.setRecordCache(recordCache);
+
+        //execute
+        SpotTestModel first = persistenceService.getByHashKey("spot1");
+        SpotTestModel second = persistenceService.getByHashKey("spot1");
+
+        //verify - hits are new instances
+        assertEquals(1, dynamoDB.getGetCount());
+        assertEquals("spot1", second.getId());
+        assertEquals("unit test name", second.getName());
+        assertNotSame(first, second);
+        assertEquals(1, recordCache.getHits());
+        assertEquals(1, recordCache.getMisses());
+    }
+
+    @Test
+    public void givenCachedRecordWhenDeleteThenInvalidate(){
+
+        //setup
+        persistenceService.setRecordCache(new RecordCache(10, 60000));
+        SpotTestModel record = persistenceService.getByHashKey("spot1");
+
+        //execute
+        persistenceService.delete(record);
+
+        //verify
+        assertNull(persistenceService.getByHashKey("spot1"));
+        assertEquals(2, dynamoDB.getGetCount());
+    }
+
+    @Test
+    public void givenCachedRecordsWhenBatchDeleteThenInvalidate(){
+
+        //setup
+        persistenceService.setRecordCache(new RecordCache(10, 60000));
+        List<SpotTestModel> records = Arrays.asList(persistenceService.getByHashKey("spot1"),
+                persistenceService.getByHashKey("spot2"));
+
+        //execute
+        persistenceService.batchDelete(records);
+
+        //verify
+        assertNull(persistenceService.getByHashKey("spot1"));
+        assertNull(persistenceService.getByHashKey("spot2"));
+        assertEquals(4, dynamoDB.getGetCount());
+    }
+
+    private Map<String, AttributeValue> createItem(String id){
+
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("id", new AttributeValue(id));
+        item.put("name", new AttributeValue("unit test name"));
+        return item;
+    }
+}
@@ -1,6 +1,7 @@
 package com.juvodu.service;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.juvodu.database.model.CreateResult;
 import com.juvodu.database.model.Favorite;
 import com.juvodu.database.model.User;
 import com.juvodu.service.testmodel.FavoriteTestModel;
@@ -77,6 +78,22 @@ public class GenericPersistenceServiceTest {
         assertEquals(id, recordResult.getUsername());
     }
 
+    @Test
+    public void givenSavedRecordWhenGetHashKeyConsistentThenReturnRecord(){
+
+        //setup
+        UserTestModel record = createRecordWithSimpleKey();
+        persistenceServiceSimpleKey.save(record);
+        String id = record.getUsername();
+
+        //execute
+        User recordResult = persistenceServiceSimpleKey.getByHashKey(id, true);
+
+        //verify
+        assertNotNull(recordResult);
+        assertEquals(id, recordResult.getUsername());
+    }
+
     @Test
     public void givenSavedRecordWhenGetCompositeKeyThenReturnRecord(){
 
@@ -110,6 +127,40 @@ public class GenericPersistenceServiceTest {
         assertNull(favoriteResult);
     }
 
+    @Test
+    public void givenNonExistingRecordWhenCreateThenReturnCreated(){
+
+        //setup
+        FavoriteTestModel record = new FavoriteTestModel();
+        record.setUsername("user");
+        record.setSpotId("spot");
+
+        //execute
+        CreateResult result = persistenceServiceCompositeKey.create(record);
+
+        //verify
+        assertEquals(CreateResult.CREATED, result);
+        assertNotNull(persistenceServiceCompositeKey.getByCompositeKey("user", "spot"));
+    }
+
+    @Test
+    public void givenSavedRecordWhenCreateThenReturnAlreadyExists(){
+
+        //setup
+        FavoriteTestModel record = new FavoriteTestModel();
+        record.setUsername("user");
+        record.setSpotId("spot");
+        persistenceServiceCompositeKey.save(record);
+
+        //execute
+        CreateResult result = persistenceServiceCompositeKey.create(record);
+
+        //verify - another range key of the same hash key is a different record
+        assertEquals(CreateResult.ALREADY_EXISTS, result);
+        record.setSpotId("spot2");
+        assertEquals(CreateResult.CREATED, persistenceServiceCompositeKey.create(record));
+    }
+
     @Test
     public void given2SavedRecordsWhenGetAllRecordsThenReturnBoth(){
 
@@ -0,0 +1,156 @@
+package com.juvodu.service;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.juvodu.database.DatabaseHelper;
+import com.juvodu.database.HilbertKeyEncoder;
+import com.juvodu.database.LatencyDynamoDB;
+import com.juvodu.database.model.Continent;
+import com.juvodu.database.model.Position;
+import com.juvodu.database.model.QueryCost;
+import com.juvodu.service.testmodel.SpotTestModel;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test suite for the concurrent geohash cell queries of the SpotService, runs against a local
+ * DynamoDB stand-in with injected latency
+ *
+ * @author Juvodu
+ */
+public class SpotServiceConcurrencyTest {
+
+    private static final long LATENCY_MILLIS = 50;
+
+    private final Position hossegor = new Position(43.671223, -1.441445);
+    private final Position hermosa = new Position(33.863329, -118.403169);
+    private final Position liencres = new Position(43.452663, -3.963651);
+
+    private LatencyDynamoDB dynamoDB;
+    private SpotService<SpotTestModel> spotService;
+
+    @Before
+    public void before(){
+
+        dynamoDB = new LatencyDynamoDB(LATENCY_MILLIS);
+        dynamoDB.putItem(createItem("1", Continent.EU, hossegor));
+        dynamoDB.putItem(createItem("2", Continent.NA, hermosa));
+        dynamoDB.putItem(createItem("3", Continent.EU, liencres));
+        spotService = new SpotService<>(SpotTestModel.class, dynamoDB);
+    }
+
+    @Test
+    public void givenConcurrencyBoundWhenFindByDistanceThenQueryCellsInParallel(){
+
+        //setup - warm up the mapper model cache before counting the queries
+        spotService.setQueryConcurrency(4);
+        spotService.findByDistance(Continent.EU, hossegor, 210, 100);
+        dynamoDB.resetStatistics();
+
+        //execute - distance between both spots is 210km
+        List<SpotTestModel> spots = spotService.findByDistance(Continent.EU, hossegor, 210, 100);
+
+        //verify
+        assertEquals(2, spots.size());
+        assertEquals("1", spots.get(0).getId());
+        assertEquals("3", spots.get(1).getId());
+        assertTrue(dynamoDB.getQueryCount() > 1);
+        assertTrue(dynamoDB.getMaxInFlight() > 1);
+        assertTrue(dynamoDB.getMaxInFlight() <= 4);
+    }
+
+    @Test
+    public void givenConcurrencyOfOneWhenFindByDistanceThenQueryCellsSequentially(){
+
+        //setup
+        spotService.setQueryConcurrency(1);
+
+        //execute
+        List<SpotTestModel> spots = spotService.findByDistance(Continent.EU, hossegor, 210, 100);
+
+        //verify
+        assertEquals(2, spots.size());
+        assertEquals(1, dynamoDB.getMaxInFlight());
+    }
+
+    @Test
+    public void givenGeokeyQueriesWhenFindByDistanceThenReturnSameSpotsAsGeohashQueries(){
+
+        //setup
+        QueryCost geohashCost = new QueryCost();
+        spotService.findByDistance(Continent.EU, hossegor, 210, 100, geohashCost);
+        spotService.setGeokeyQueries(true);
+        QueryCost geokeyCost = new QueryCost();
+
+        //execute
+        List<SpotTestModel> spots = spotService.findByDistance(Continent.EU, hossegor, 210, 100, geokeyCost);
+
+        //verify - planned ranges need fewer queries than single cells
+        assertEquals(2, spots.size());
+        assertEquals("1", spots.get(0).getId());
+        assertEquals("3", spots.get(1).getId());
+        assertEquals(2, geokeyCost.getItemsReturned());
+        assertTrue(geokeyCost.getItemsRead() >= 2);
+        assertTrue(geokeyCost.getQueries() <= geohashCost.getQueries());
+    }
+
+    @Test
+    public void givenLimitPerCellWhenFindByDistanceWithGeokeyQueriesThenScaleLimitOfMergedRanges(){
+
+        //setup - a range merging the cells of both spots reads one spot per cell
+        spotService.setGeokeyQueries(true);
+
+        //execute
+        List<SpotTestModel> spots = spotService.findByDistance(Continent.EU, hossegor, 210, 1);
+
+        //verify
+        assertEquals(2, spots.size());
+    }
+
+    @Test
+    public void givenHilbertKeyQueriesWhenFindByDistanceThenReturnSameSpotsAsGeohashQueries(){
+
+        //setup
+        spotService.setGeokeyQueries(true);
+        spotService.setSpatialKeyEncoder(new HilbertKeyEncoder());
+
+        //execute
+        List<SpotTestModel> spots = spotService.findByDistance(Continent.EU, hossegor, 210, 100);
+
+        //verify
+        assertEquals(2, spots.size());
+        assertEquals("1", spots.get(0).getId());
+        assertEquals("3", spots.get(1).getId());
+    }
+
+    /**
+     * Helper function to create a raw spot item as stored in the spot table
+     *
+     * @param id
+     *          of the spot
+     * @param continent
+     *          where the spot is located
+     * @param position
+     *          of the spot
+     *
+     * @return the attribute map of the item
+     */
+    private Map<String, AttributeValue> createItem(String id, Continent continent, Position position){
+
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("id", new AttributeValue(id));
+        item.put("name", new AttributeValue("unit test name"));
+        item.put("continent", new AttributeValue(continent.getCode()));
+        item.put("position", new AttributeValue(position.getLatitude() + " ; " + position.getLongitude()));
+        item.put("geohash", new AttributeValue(DatabaseHelper.createBinaryGeohash(position)));
+        item.put("geokey", new AttributeValue(DatabaseHelper.createGeokey(position)));
+        item.put("hilbertkey", new AttributeValue(new HilbertKeyEncoder().encode(position)));
+        return item;
+    }
+}
@@ -1,10 +1,16 @@
 package com.juvodu.service;
 
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.juvodu.database.DatabaseHelper;
+import com.juvodu.database.memory.InMemoryDynamoDB;
+import com.juvodu.database.model.BoundingBox;
 import com.juvodu.database.model.Continent;
 import com.juvodu.database.model.Country;
 import com.juvodu.database.model.Position;
+import com.juvodu.database.model.ResultPage;
 import com.juvodu.database.model.Spot;
 import com.juvodu.service.testmodel.SpotTestModel;
+import com.juvodu.util.Constants;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -12,10 +18,17 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test suite for the SpotService
@@ -32,6 +45,7 @@ public class SpotServiceTest {
     private final Position hossegor = new Position(43.671223, -1.441445);
     private final Position hermosa = new Position(33.863329, -118.403169);
     private final Position liencres = new Position(43.452663, -3.963651);
+    private final Position capbreton = new Position(43.644612, -1.445018);
 
     @BeforeClass
     public static void beforeClass(){
@@ -180,6 +194,55 @@ public class SpotServiceTest {
         assertEquals(id, resultSpot.getId());
     }
 
+    @Test
+    public void givenTwoSpotsInCountryWhenFindByCountryWithPageTokenThenReturnSecondPage(){
+
+        //setup
+        Spot spot1 = createSpot(Continent.EU, france, hossegor);
+        Spot spot2 = createSpot(Continent.EU, france, hossegor);
+        String id1 = spotService.save(spot1);
+        String id2 = spotService.save(spot2);
+        ResultPage<SpotTestModel> firstPage = spotService.findByCountry(Continent.EU, france, 1, null);
+
+        //execute
+        ResultPage<SpotTestModel> secondPage = spotService.findByCountry(Continent.EU, france, 1, firstPage.getNextPageToken());
+
+        //verify
+        assertNotNull(firstPage.getNextPageToken());
+        assertEquals(1, firstPage.getResults().size());
+        assertEquals(1, secondPage.getResults().size());
+        Set<String> ids = new HashSet<>();
+        ids.add(firstPage.getResults().get(0).getId());
+        ids.add(secondPage.getResults().get(0).getId());
+        assertTrue(ids.contains(id1));
+        assertTrue(ids.contains(id2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenPageTokenOfOtherCountryWhenFindByCountryThenThrow(){
+
+        //setup
+        spotService.save(createSpot(Continent.EU, france, hossegor));
+        spotService.save(createSpot(Continent.EU, france, hossegor));
+        ResultPage<SpotTestModel> firstPage = spotService.findByCountry(Continent.EU, france, 1, null);
+
+        //execute
+        spotService.findByCountry(Continent.EU, spain, 1, firstPage.getNextPageToken());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenPageTokenOfOtherIndexWhenFindByContinentThenThrow(){
+
+        //setup
+        Map<String, AttributeValue> key = new HashMap<>();
+        key.put("id", new AttributeValue().withS("spot"));
+        key.put("continent", new AttributeValue().withS(Continent.EU.getCode()));
+        key.put("geokey", new AttributeValue().withS("0"));
+
+        //execute
+        spotService.findByContinent(Continent.EU, 1, DatabaseHelper.createPageToken(key));
+    }
+
     @Test
     public void givenSpotWithCountryWhenFindByCountryThenReturnSpot(){
 
@@ -240,6 +303,181 @@ public class SpotServiceTest {
         assertEquals(2, spots.size());
     }
 
+    @Test
+    public void givenThreeSpotsWhenFindTwoNearestThenReturnClosestSpotsSortedByDistance(){
+
+        //setup
+        Spot spot1 = createSpot(Continent.EU, france, hossegor);
+        Spot spot2 = createSpot(Continent.NA, us, hermosa);
+        Spot spot3 = createSpot(Continent.EU, spain, liencres);
+        spotService.save(spot1);
+        spotService.save(spot2);
+        spotService.save(spot3);
+
+        //execute
+        List<SpotTestModel> spots = spotService.findNearest(hossegor, 2);
+
+        //verify
+        assertNotNull(spots);
+        assertEquals(2, spots.size());
+        assertEquals(spot1.getId(), spots.get(0).getId());
+        assertEquals(spot3.getId(), spots.get(1).getId());
+    }
+
+    @Test
+    public void givenMoreSpotsThanCellLimitInCenterCellWhenFindNearestThenReturnClosestSpot(){
+
+        //setup - in-memory backend, the far spots of the center cell precede the closest spot in key order
+        SpotService<SpotTestModel> memorySpotService = new SpotService<>(SpotTestModel.class,
+                InMemoryDynamoDB.withTables("_test"));
+        Position far = new Position(43.60375, -2.099375);
+        for(int i = 0; i <= Constants.NEAREST_CELL_LIMIT; i++){
+            SpotTestModel spot = createSpot(Continent.EU, france, far);
+            spot.setTopicArn("arn:aws:sns:eu-central-1:000000000000:test");
+            memorySpotService.save(spot);
+        }
+        SpotTestModel closest = createSpot(Continent.EU, france, new Position(43.672, -1.441));
+        closest.setTopicArn("arn:aws:sns:eu-central-1:000000000000:test");
+        memorySpotService.save(closest);
+
+        //execute
+        List<SpotTestModel> spots = memorySpotService.findNearest(hossegor, 1);
+
+        //verify
+        assertEquals(1, spots.size());
+        assertEquals(closest.getId(), spots.get(0).getId());
+    }
+
+    @Test
+    public void givenSpotNearExistingSpotWhenSaveThenBothListEachOtherAsNearbySpot(){
+
+        //setup
+        Spot spot1 = createSpot(Continent.EU, france, hossegor);
+        Spot spot2 = createSpot(Continent.EU, spain, liencres);
+        spotService.save(spot1);
+        spotService.save(spot2);
+        Spot spot3 = createSpot(Continent.EU, france, capbreton);
+
+        //execute
+        spotService.save(spot3);
+
+        //verify - liencres is more than 100 km away
+        Spot hossegorSpot = spotService.getByHashKey(spot1.getId());
+        assertEquals(1, hossegorSpot.getNearbySpots().size());
+        assertEquals(spot3.getId(), hossegorSpot.getNearbySpots().get(0).getId());
+        assertTrue(hossegorSpot.getNearbySpots().get(0).getDistance() < 5000);
+        Spot capbretonSpot = spotService.getByHashKey(spot3.getId());
+        assertEquals(1, capbretonSpot.getNearbySpots().size());
+        assertEquals(spot1.getId(), capbretonSpot.getNearbySpots().get(0).getId());
+    }
+
+    @Test
+    public void givenNearbySpotWhenDeleteThenRemoveFromNearbySpots(){
+
+        //setup
+        SpotTestModel spot1 = createSpot(Continent.EU, france, hossegor);
+        SpotTestModel spot2 = createSpot(Continent.EU, france, capbreton);
+        spotService.save(spot1);
+        spotService.save(spot2);
+
+        //execute
+        spotService.delete(spotService.getByHashKey(spot2.getId()));
+
+        //verify
+        assertTrue(spotService.getByHashKey(spot1.getId()).getNearbySpots().isEmpty());
+    }
+
+    @Test
+    public void givenSpotWithNearbySpotWhenSaveWithoutPositionThenKeepNearbySpots(){
+
+        //setup
+        SpotTestModel spot1 = createSpot(Continent.EU, france, hossegor);
+        SpotTestModel spot2 = createSpot(Continent.EU, france, capbreton);
+        spotService.save(spot1);
+        spotService.save(spot2);
+        SpotTestModel update = createSpot(Continent.EU, france, null);
+        update.setId(spot1.getId());
+
+        //execute
+        spotService.save(update);
+
+        //verify
+        Spot hossegorSpot = spotService.getByHashKey(spot1.getId());
+        assertEquals(hossegor, hossegorSpot.getPosition());
+        assertEquals(1, hossegorSpot.getNearbySpots().size());
+        assertEquals(spot2.getId(), hossegorSpot.getNearbySpots().get(0).getId());
+    }
+
+    @Test
+    public void givenSpotsNearbyWhenUpdateNearbySpotsThenWriteClosestSpots(){
+
+        //setup
+        SpotTestModel spot1 = createSpot(Continent.EU, france, hossegor);
+        SpotTestModel spot2 = createSpot(Continent.EU, france, capbreton);
+        spotService.save(spot1);
+        spotService.save(spot2);
+
+        //execute
+        boolean updated = spotService.updateNearbySpots(spotService.getByHashKey(spot1.getId()));
+
+        //verify
+        assertTrue(updated);
+        Spot hossegorSpot = spotService.getByHashKey(spot1.getId());
+        assertEquals(1, hossegorSpot.getNearbySpots().size());
+        assertEquals(spot2.getId(), hossegorSpot.getNearbySpots().get(0).getId());
+    }
+
+    @Test
+    public void givenSavedSpotWhenUpdateSpatialKeysThenWriteKeys(){
+
+        //setup
+        SpotTestModel spot = createSpot(Continent.EU, france, hossegor);
+        spotService.save(spot);
+        SpotTestModel stored = spotService.getByHashKey(spot.getId());
+        String geokey = stored.getGeokey();
+        stored.setGeokey(null);
+        stored.setHilbertkey(null);
+
+        //execute
+        boolean updated = spotService.updateSpatialKeys(stored);
+
+        //verify
+        assertTrue(updated);
+        assertEquals(geokey, spotService.getByHashKey(spot.getId()).getGeokey());
+    }
+
+    @Test
+    public void givenDeletedSpotWhenUpdateSpatialKeysThenReturnFalse(){
+
+        //setup
+        SpotTestModel spot = createSpot(Continent.EU, france, hossegor);
+        spotService.save(spot);
+        spotService.delete(spot);
+
+        //execute
+        boolean updated = spotService.updateSpatialKeys(spot);
+
+        //verify
+        assertFalse(updated);
+        assertNull(spotService.getByHashKey(spot.getId()));
+    }
+
+    @Test
+    public void givenBoundingBoxAroundBayOfBiscayWhenFindByBoundingBoxThenReturnSpotsInside(){
+
+        //setup
+        spotService.save(createSpot(Continent.EU, france, hossegor));
+        spotService.save(createSpot(Continent.NA, us, hermosa));
+        spotService.save(createSpot(Continent.EU, spain, liencres));
+
+        //execute
+        List<SpotTestModel> spots = spotService.findByBoundingBox(new BoundingBox(42, -5, 45, 0), 100);
+
+        //verify
+        assertNotNull(spots);
+        assertEquals(2, spots.size());
+    }
+
     @Test
     public void givenUpdatedSpotWhenFindByCronDateThenReturnEmptyList(){
 
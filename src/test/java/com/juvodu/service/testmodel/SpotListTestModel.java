@@ -0,0 +1,13 @@
+package com.juvodu.service.testmodel;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.juvodu.database.model.SpotList;
+
+/**
+ * Model representing the SpotList table for testing
+ *
+ * @author Juvodu
+ */
+@DynamoDBTable(tableName = "spotlist_test")
+public class SpotListTestModel extends SpotList{
+}
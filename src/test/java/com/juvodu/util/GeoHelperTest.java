@@ -1,9 +1,19 @@
 package com.juvodu.util;
 
+import com.juvodu.database.model.BaseSpot;
+import com.juvodu.database.model.BoundingBox;
+import com.juvodu.database.model.Continent;
 import com.juvodu.database.model.Position;
+import com.juvodu.database.model.SpotCluster;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Util class for geo calculations
@@ -20,4 +30,124 @@ public class GeoHelperTest {
         int distance = GeoHelper.getDistance(pos1, pos2);
         assertEquals(165686, distance);
     }
+
+    @Test
+    public void givenRandomCandidatesWhenFilterByDistanceThenMatchGetDistance(){
+
+        Random random = new Random(42);
+        int size = 10000;
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        for(int i = 0; i < size; i++){
+            latitudes[i] = random.nextDouble() * 180 - 90;
+            longitudes[i] = random.nextDouble() * 360 - 180;
+        }
+        int[] indexes = new int[size];
+        int[] distances = new int[size];
+
+        // centers in mid latitudes, near the antimeridian and near a pole
+        double[][] centers = {{43.671223, -1.441445}, {-16.8, 179.9}, {88.5, 10}};
+        for(double[] center : centers){
+            int maxDistance = 2000000;
+            int count = GeoHelper.filterByDistance(center[0], center[1], latitudes, longitudes, 0, size, maxDistance, indexes, distances);
+
+            int expectedCount = 0;
+            for(int i = 0; i < size; i++){
+                int distance = GeoHelper.getDistance(center[0], center[1], latitudes[i], longitudes[i]);
+                if(distance <= maxDistance){
+                    assertEquals(i, indexes[expectedCount]);
+                    assertEquals(distance, distances[expectedCount]);
+                    expectedCount++;
+                }
+            }
+            assertEquals(expectedCount, count);
+            assertTrue(count > 0);
+        }
+    }
+
+    @Test
+    public void givenCircleInEuropeWhenGetBoundingBoxesThenOnlyEuropeIntersects(){
+
+        List<BoundingBox> boxes = GeoHelper.getBoundingBoxes(new Position(43.671223, -1.441445), 50000);
+        assertEquals(1, boxes.size());
+        for(Continent continent : Continent.values()){
+            assertEquals(continent == Continent.EU, continent.intersects(boxes));
+        }
+    }
+
+    @Test
+    public void givenCircleAcrossAntimeridianWhenGetBoundingBoxesThenReturnTwoBoxes(){
+
+        List<BoundingBox> boxes = GeoHelper.getBoundingBoxes(new Position(-16.8, 179.9), 50000);
+        assertEquals(2, boxes.size());
+        assertTrue(boxes.get(0).contains(new Position(-16.8, 179.95)));
+        assertTrue(boxes.get(1).contains(new Position(-16.8, -179.95)));
+        assertTrue(Continent.OC.intersects(boxes));
+        assertFalse(Continent.SA.intersects(boxes));
+    }
+
+    @Test
+    public void givenSpotsInTwoRegionsWhenClusterByGeohashThenReturnTwoClusters(){
+
+        List<BaseSpot> spots = new ArrayList<>();
+        spots.add(createSpot(new Position(43.671223, -1.441445)));
+        spots.add(createSpot(new Position(43.452663, -3.963651)));
+        spots.add(createSpot(new Position(33.863329, -118.403169)));
+        spots.add(createSpot(null));
+
+        List<SpotCluster> clusters = GeoHelper.clusterByGeohash(spots, 6);
+
+        assertEquals(2, clusters.size());
+        int total = 0;
+        for(SpotCluster cluster : clusters){
+            assertEquals(6, cluster.getGeohash().length());
+            total += cluster.getCount();
+        }
+        assertEquals(3, total);
+        SpotCluster europe = clusters.get(0).getCount() == 2 ? clusters.get(0) : clusters.get(1);
+        assertEquals((43.671223 + 43.452663) / 2, europe.getCentroid().getLatitude(), 0.000001);
+        assertEquals((-1.441445 - 3.963651) / 2, europe.getCentroid().getLongitude(), 0.000001);
+    }
+
+    @Test
+    public void givenCircleAroundPoleWhenGetBoundingBoxesThenSpanAllLongitudes(){
+
+        List<BoundingBox> boxes = GeoHelper.getBoundingBoxes(new Position(89, 0), 500000);
+        assertEquals(1, boxes.size());
+        assertEquals(-180, boxes.get(0).getMinLongitude(), 0);
+        assertEquals(180, boxes.get(0).getMaxLongitude(), 0);
+    }
+
+    private BaseSpot createSpot(Position position){
+
+        BaseSpot spot = new BaseSpot();
+        spot.setPosition(position);
+        return spot;
+    }
+
+    @Test
+    public void givenRandomBoxesWhenGetMinDistanceThenNeverExceedDistanceToBoxPoints(){
+
+        //setup
+        Random random = new Random(7);
+
+        for(int i = 0; i < 1000; i++){
+
+            double minLat = random.nextDouble() * 160 - 80;
+            double minLon = random.nextDouble() * 340 - 170;
+            BoundingBox box = new BoundingBox(minLat, minLon, minLat + random.nextDouble() * 5, minLon + random.nextDouble() * 5);
+            Position position = new Position(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+
+            //execute
+            double minDistance = GeoHelper.getMinDistance(position, box);
+
+            //verify - no sampled point of the box is closer than the lower bound
+            for(int j = 0; j < 20; j++){
+                Position boxPoint = new Position(
+                        box.getMinLatitude() + random.nextDouble() * (box.getMaxLatitude() - box.getMinLatitude()),
+                        box.getMinLongitude() + random.nextDouble() * (box.getMaxLongitude() - box.getMinLongitude()));
+                assertTrue(minDistance <= GeoHelper.getDistance(position, boxPoint) + 1);
+            }
+        }
+    }
 }